@@ -0,0 +1,187 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import controllers.CapacityTimeline;
+import controllers.SpotAllocationStrategy;
+import controllers.SpotIntervalIndex;
+
+/**
+ * Replays the same synthetic demand against SpotIntervalIndex once per SpotAllocationStrategy
+ * and reports the acceptance rate (overall, for advance bookings, short walk-ins and long
+ * stays) and the latency of each allocation (free-spot search plus the strategy's choice),
+ * the way SmartParkingController allocates.
+ *
+ * Demand over the simulated days: advance bookings of 1-4 hours placed up to three days
+ * ahead, plus walk-ins decided at arrival - mostly 1-3 hours, some 6-10 hour long stays -
+ * peaking during the day. Requests are handled in the order they are made. The load factor
+ * scales all arrivals; around 1.0 the lot is full at peak.
+ *
+ * A plain main() harness, since the build has no JMH: every strategy gets a warm-up replay first.
+ *
+ * Usage: java benchmark.AllocationStrategySimulation [spots] [zones] [days] [load] [seed]
+ */
+public class AllocationStrategySimulation {
+
+    private enum Kind {
+        BOOKING,
+        WALK_IN,
+        LONG_STAY
+    }
+
+    /**
+     * One request for a spot over [start, end), made at decidedAt
+     */
+    private static final class Request {
+        final Kind kind;
+        final LocalDateTime decidedAt;
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        Request(Kind kind, LocalDateTime decidedAt, LocalDateTime start, LocalDateTime end) {
+            this.kind = kind;
+            this.decidedAt = decidedAt;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // Relative arrivals per hour of day
+    private static final double[] HOURLY_DEMAND = {
+        0.1, 0.05, 0.05, 0.05, 0.1, 0.3, 0.8, 1.5, 2.0, 1.8, 1.5, 1.3,
+        1.4, 1.3, 1.2, 1.2, 1.4, 1.6, 1.2, 0.8, 0.5, 0.4, 0.3, 0.2 };
+
+    public static void main(String[] args) {
+        int spots = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int zones = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int days = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        double load = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+        List<Request> demand = generateDemand(spots, days, load, new Random(seed));
+        System.out.println("Allocation simulation: " + spots + " spots in " + zones + " zones, " + days
+            + " days, load " + load + ", " + demand.size() + " requests (seed " + seed + ")");
+        System.out.printf("%-13s %9s %9s %9s %10s %10s %10s%n", "strategy", "accepted", "bookings", "walk-ins",
+            "long stays", "avg us", "p99 us");
+        for (SpotAllocationStrategy strategy : SpotAllocationStrategy.values()) {
+            replay(strategy, spots, zones, demand); // warm-up
+            replay(strategy, spots, zones, demand).print(strategy);
+        }
+    }
+
+    /**
+     * Acceptance counts and allocation latencies of one replay
+     */
+    private static final class Result {
+        final int[] requested = new int[Kind.values().length];
+        final int[] accepted = new int[Kind.values().length];
+        final long[] nanos;
+
+        Result(int requests) {
+            nanos = new long[requests];
+        }
+
+        void print(SpotAllocationStrategy strategy) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long n : sorted) {
+                total += n;
+            }
+            int allRequested = Arrays.stream(requested).sum();
+            int allAccepted = Arrays.stream(accepted).sum();
+            System.out.printf("%-13s %8.1f%% %8.1f%% %8.1f%% %9.1f%% %10.1f %10.1f%n", strategy,
+                percent(allAccepted, allRequested), percent(Kind.BOOKING), percent(Kind.WALK_IN),
+                percent(Kind.LONG_STAY), total / 1e3 / sorted.length,
+                sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1e3);
+        }
+
+        private double percent(Kind kind) {
+            return percent(accepted[kind.ordinal()], requested[kind.ordinal()]);
+        }
+
+        private static double percent(int part, int whole) {
+            return whole == 0 ? 0 : 100.0 * part / whole;
+        }
+    }
+
+    private static Result replay(SpotAllocationStrategy strategy, int spots, int zones, List<Request> demand) {
+        SpotIntervalIndex index = new SpotIntervalIndex();
+        for (int spotId = 1; spotId <= spots; spotId++) {
+            index.addSpot(spotId);
+        }
+        int spotsPerZone = (spots + zones - 1) / zones;
+        long horizonSlots = CapacityTimeline.SLOTS_PER_DAY;
+
+        Result result = new Result(demand.size());
+        for (int i = 0; i < demand.size(); i++) {
+            Request request = demand.get(i);
+            long started = System.nanoTime();
+            List<Integer> free = index.freeSpots(request.start, request.end);
+            int spotId = strategy.choose(free,
+                id -> index.gapSlots(id, request.start, request.end, horizonSlots),
+                id -> "1/" + (char) ('A' + (id - 1) / spotsPerZone));
+            result.nanos[i] = System.nanoTime() - started;
+
+            result.requested[request.kind.ordinal()]++;
+            if (spotId != -1) {
+                index.put("R" + i, spotId, request.start, request.end, SpotIntervalIndex.Kind.RESERVATION);
+                result.accepted[request.kind.ordinal()]++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Requests over the simulated days, sorted by the time they are made
+     */
+    private static List<Request> generateDemand(int spots, int days, double load, Random random) {
+        // Average stay is about 3 hours, so this many arrivals per demand unit keeps the lot full at peak
+        double arrivalsPerUnit = spots * load / 3.0 / 1.6;
+        LocalDate firstDay = LocalDate.now().plusDays(4); // later than any booking lead time
+
+        List<Request> demand = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                int arrivals = poisson(arrivalsPerUnit * HOURLY_DEMAND[hour], random);
+                for (int i = 0; i < arrivals; i++) {
+                    LocalDateTime start = firstDay.plusDays(day).atTime(hour, 15 * random.nextInt(4));
+                    double kind = random.nextDouble();
+                    if (kind < 0.5) {
+                        // Advance booking: 1-4 hours, placed 1 hour to 3 days ahead
+                        LocalDateTime end = start.plusMinutes(60 + 15 * random.nextInt(13));
+                        demand.add(new Request(Kind.BOOKING, start.minusMinutes(60 + random.nextInt(3 * 24 * 60)),
+                            start, end));
+                    } else if (kind < 0.85) {
+                        demand.add(new Request(Kind.WALK_IN, start, start, start.plusMinutes(60 + 15 * random.nextInt(9))));
+                    } else {
+                        demand.add(new Request(Kind.LONG_STAY, start, start, start.plusHours(6 + random.nextInt(5))));
+                    }
+                }
+            }
+        }
+        demand.sort(Comparator.comparing(request -> request.decidedAt));
+        return demand;
+    }
+
+    private static int poisson(double mean, Random random) {
+        if (mean > 30) {
+            // Normal approximation; Knuth's method underflows for large lots
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+}
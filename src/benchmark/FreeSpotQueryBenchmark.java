@@ -0,0 +1,161 @@
+package benchmark;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import controllers.QueryStats;
+import controllers.SchemaMigrationService;
+import controllers.SmartParkingController;
+
+/**
+ * Query count and latency of the free-spot anti-join (SmartParkingController.findFreeSpotsForWindow)
+ * against lot size: the whole-lot search and the single-spot check, which filters on the spot's
+ * primary key instead of searching the whole lot.
+ *
+ * Runs against a scratch database on localhost (the name must end in "_bench"; it is created,
+ * migrated and refilled for every lot size). A third of the spots get a preorder overlapping
+ * the window and a fifth an open session.
+ *
+ * Usage: java benchmark.FreeSpotQueryBenchmark bpark_bench password [lotSize ...]
+ */
+public class FreeSpotQueryBenchmark {
+
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 2 || !args[0].endsWith("_bench")) {
+            System.out.println("Usage: FreeSpotQueryBenchmark <database ending in _bench> <password> [lotSize ...]");
+            return;
+        }
+        String database = args[0];
+        String pass = args[1];
+        int[] lotSizes = args.length > 2
+            ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 100, 1000, 5000, 20000 };
+
+        try (Connection server = DriverManager.getConnection("jdbc:mysql://localhost/?serverTimezone=IST", "root", pass);
+             Statement stmt = server.createStatement()) {
+            stmt.execute("CREATE DATABASE IF NOT EXISTS " + database);
+        }
+        SmartParkingController controller = new SmartParkingController(database, pass);
+        if (controller.successFlag != 1 || new SchemaMigrationService(controller.getConnection()).migrate() < 0) {
+            System.out.println("❌ Could not prepare " + database);
+            return;
+        }
+
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        LocalDateTime start = tomorrow.atTime(11, 0);
+        LocalDateTime end = tomorrow.atTime(13, 0);
+
+        System.out.printf("%8s %-12s %12s %10s %10s %10s%n", "spots", "search", "stmts/call", "avg ms", "max ms", "rows");
+        for (int lotSize : lotSizes) {
+            seed(controller.getConnection(), lotSize, tomorrow);
+            // Spot 1 is reserved, spot 2 is free
+            measure(controller, lotSize, "whole lot", start, end, 0);
+            measure(controller, lotSize, "one spot", start, end, 2);
+        }
+    }
+
+    private static void measure(SmartParkingController controller, int lotSize, String label,
+                                LocalDateTime start, LocalDateTime end, int spotId) throws SQLException {
+        controller.findFreeSpotsForWindow(start, end, spotId); // warm-up
+        long totalNanos = 0;
+        long maxNanos = 0;
+        int statements = 0;
+        int rows = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            QueryStats.beginRequest("freeSpotBenchmark");
+            long started = System.nanoTime();
+            List<Integer> free = controller.findFreeSpotsForWindow(start, end, spotId);
+            long nanos = System.nanoTime() - started;
+            statements += QueryStats.endRequest().getStatementCount();
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            rows = free.size();
+        }
+        System.out.printf("%8d %-12s %12.1f %10.2f %10.2f %10d%n", lotSize, label, (double) statements / ITERATIONS,
+            totalNanos / 1e6 / ITERATIONS, maxNanos / 1e6, rows);
+    }
+
+    /**
+     * Replaces the benchmark data with lotSize spots, a preorder on every third spot and
+     * an open session on every fifth
+     */
+    private static void seed(Connection conn, int lotSize, LocalDate reservationDate) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM ParkingInfo");
+            stmt.execute("DELETE FROM Reservations");
+            stmt.execute("DELETE FROM ParkingSpot");
+            stmt.execute("DELETE FROM users WHERE UserName = 'bench'");
+            stmt.execute("INSERT INTO users (UserName, Name) VALUES ('bench', 'Benchmark')");
+        }
+        int userId;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT User_ID FROM users WHERE UserName = 'bench'");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            userId = rs.getInt(1);
+        }
+
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO ParkingSpot (ParkingSpot_ID, isOccupied) VALUES (?, ?)")) {
+                for (int spotId = 1; spotId <= lotSize; spotId++) {
+                    stmt.setInt(1, spotId);
+                    stmt.setBoolean(2, spotId % 5 == 0);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            String reservationQry = """
+                INSERT INTO Reservations
+                (User_ID, parking_ID, reservation_Date, reservation_start_time, reservation_end_time,
+                 Date_Of_Placing_Order, statusEnum, assigned_parking_spot_id)
+                VALUES (?, ?, ?, ?, ?, NOW(), 'preorder', ?)
+                """;
+            try (PreparedStatement stmt = conn.prepareStatement(reservationQry)) {
+                for (int spotId = 1; spotId <= lotSize; spotId += 3) {
+                    stmt.setInt(1, userId);
+                    stmt.setInt(2, spotId);
+                    stmt.setDate(3, Date.valueOf(reservationDate));
+                    stmt.setTime(4, Time.valueOf(LocalTime.of(10, 0)));
+                    stmt.setTime(5, Time.valueOf(LocalTime.of(14, 0)));
+                    stmt.setInt(6, spotId);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            String sessionQry = """
+                INSERT INTO ParkingInfo (ParkingSpot_ID, User_ID, Date, Code, Actual_start_time, Estimated_start_time,
+                                         Estimated_end_time)
+                VALUES (?, ?, CURDATE(), ?, CURTIME(), CURTIME(), ADDTIME(CURTIME(), '04:00:00'))
+                """;
+            try (PreparedStatement stmt = conn.prepareStatement(sessionQry)) {
+                for (int spotId = 5; spotId <= lotSize; spotId += 5) {
+                    stmt.setInt(1, spotId);
+                    stmt.setInt(2, userId);
+                    stmt.setInt(3, 100000 + spotId);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE TABLE ParkingSpot, Reservations, ParkingInfo");
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import controllers.LeaderLease;
+import controllers.SchemaMigrationService;
+
+/**
+ * Scheduler lease failover across several local JVMs sharing one database. Starts a number of
+ * node processes that each compete for the 'scheduler' lease, then repeatedly takes the leader
+ * away, alternating a crash (process killed) with a clean shutdown (lease released), and
+ * measures how long the other nodes take to elect a new one. Two nodes reporting leadership
+ * at the same time are counted as overlaps; there should be none.
+ *
+ * Runs against a scratch database on localhost (the name must end in "_bench"; it is created
+ * and migrated). A crash should fail over within TTL + TTL/3, a clean shutdown within TTL/3.
+ *
+ * Usage: java benchmark.LeaderFailoverHarness bpark_bench password [nodes] [rounds] [ttlMillis]
+ */
+public class LeaderFailoverHarness {
+
+    private static final String NODE_FLAG = "--node";
+
+    /**
+     * A child JVM running one lease
+     */
+    private static final class Node {
+        final String nodeId;
+        final Process process;
+        final Writer stdin;
+
+        Node(String nodeId, Process process) {
+            this.nodeId = nodeId;
+            this.process = process;
+            this.stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(NODE_FLAG)) {
+            runNode(args[1], args[2]);
+            return;
+        }
+        if (args.length < 2 || !args[0].endsWith("_bench")) {
+            System.out.println("Usage: LeaderFailoverHarness <database ending in _bench> <password> [nodes] [rounds] [ttlMillis]");
+            return;
+        }
+        String database = args[0];
+        String pass = args[1];
+        int nodeCount = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        long ttlMillis = args.length > 4 ? Long.parseLong(args[4]) : 3000;
+
+        try (Connection server = DriverManager.getConnection("jdbc:mysql://localhost/?serverTimezone=IST", "root", pass);
+             Statement stmt = server.createStatement()) {
+            stmt.execute("CREATE DATABASE IF NOT EXISTS " + database);
+        }
+        try (Connection conn = connect(database, pass)) {
+            if (new SchemaMigrationService(conn).migrate() < 0) {
+                System.out.println("❌ Could not migrate " + database);
+                return;
+            }
+        }
+
+        BlockingQueue<String[]> events = new LinkedBlockingQueue<>();
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        int started = 0;
+        for (; started < nodeCount; started++) {
+            Node node = startNode("node-" + started, database, pass, ttlMillis, events);
+            nodes.put(node.nodeId, node);
+        }
+
+        System.out.println("Leader failover: " + nodeCount + " JVMs, lease TTL " + ttlMillis + " ms");
+        System.out.printf("%6s %-8s %-10s %-10s %12s%n", "round", "mode", "old", "new", "failover ms");
+        String leader = null;
+        int overlaps = 0;
+        long maxCrashMillis = 0;
+        long maxCleanMillis = 0;
+        List<Node> stopped = new ArrayList<>();
+        try {
+            for (int round = 1; round <= rounds; round++) {
+                // Wait for a leader before taking it away
+                while (leader == null) {
+                    String[] event = events.poll(3 * ttlMillis, TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        System.out.println("❌ No leader elected within " + 3 * ttlMillis + " ms");
+                        return;
+                    }
+                    if (event[1].equals("ELECTED")) {
+                        leader = event[0];
+                    }
+                }
+
+                boolean crash = round % 2 == 1;
+                Node old = nodes.remove(leader);
+                long takenAt = System.currentTimeMillis();
+                if (crash) {
+                    old.process.destroyForcibly();
+                } else {
+                    old.stdin.write("stop\n");
+                    old.stdin.flush();
+                }
+                stopped.add(old);
+                leader = null;
+
+                String successor = null;
+                long failoverMillis = -1;
+                long deadline = takenAt + 3 * ttlMillis;
+                while (successor == null && System.currentTimeMillis() < deadline) {
+                    String[] event = events.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        break;
+                    }
+                    if (event[1].equals("ELECTED") && !event[0].equals(old.nodeId)) {
+                        successor = event[0];
+                        failoverMillis = Long.parseLong(event[2]) - takenAt;
+                    }
+                }
+                System.out.printf("%6d %-8s %-10s %-10s %12d%n", round, crash ? "crash" : "clean", old.nodeId,
+                    successor != null ? successor : "-", failoverMillis);
+                if (successor == null) {
+                    System.out.println("❌ No failover within " + 3 * ttlMillis + " ms");
+                    return;
+                }
+                if (crash) {
+                    maxCrashMillis = Math.max(maxCrashMillis, failoverMillis);
+                } else {
+                    maxCleanMillis = Math.max(maxCleanMillis, failoverMillis);
+                }
+                leader = successor;
+
+                // Keep the cluster size constant; any other ELECTED before the next round is an overlap
+                Node replacement = startNode("node-" + started++, database, pass, ttlMillis, events);
+                nodes.put(replacement.nodeId, replacement);
+                String[] event;
+                while ((event = events.poll(ttlMillis / 3, TimeUnit.MILLISECONDS)) != null) {
+                    if (event[1].equals("ELECTED") && !event[0].equals(leader)) {
+                        overlaps++;
+                        System.out.println("⚠️ " + event[0] + " elected while " + leader + " leads");
+                    } else if (event[1].equals("REVOKED") && event[0].equals(leader)) {
+                        leader = null;
+                    }
+                }
+            }
+        } finally {
+            for (Node node : nodes.values()) {
+                node.process.destroyForcibly();
+            }
+            for (Node node : stopped) {
+                node.process.destroyForcibly();
+            }
+        }
+
+        System.out.println("Max failover: crash " + maxCrashMillis + " ms (bound " + (ttlMillis + ttlMillis / 3)
+            + " ms), clean " + maxCleanMillis + " ms (bound " + ttlMillis / 3 + " ms)");
+        System.out.println(overlaps == 0 ? "✅ No overlapping leaders" : "❌ " + overlaps + " overlapping leaders");
+    }
+
+    private static Node startNode(String nodeId, String database, String pass, long ttlMillis,
+                                  BlockingQueue<String[]> events) throws IOException {
+        String java = System.getProperty("java.home") + "/bin/java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            "-D" + LeaderLease.NODE_ID_PROPERTY + "=" + nodeId, "-D" + LeaderLease.TTL_PROPERTY + "=" + ttlMillis,
+            LeaderFailoverHarness.class.getName(), NODE_FLAG, database, pass);
+        builder.redirectErrorStream(true);
+        Node node = new Node(nodeId, builder.start());
+
+        Thread reader = new Thread(() -> {
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(node.process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (line.equals("ELECTED") || line.equals("REVOKED")) {
+                        events.add(new String[] { nodeId, line, String.valueOf(System.currentTimeMillis()) });
+                    }
+                }
+            } catch (IOException e) {
+                // process gone
+            }
+        }, "harness-" + nodeId);
+        reader.setDaemon(true);
+        reader.start();
+        return node;
+    }
+
+    /**
+     * Child process: holds a lease until "stop" arrives on stdin, reporting leadership changes on stdout
+     */
+    private static void runNode(String database, String pass) throws IOException {
+        LeaderLease lease = new LeaderLease("scheduler", () -> connect(database, pass));
+        lease.addListener(new LeaderLease.LeadershipListener() {
+            @Override
+            public void elected() {
+                System.out.println("ELECTED");
+            }
+
+            @Override
+            public void revoked() {
+                System.out.println("REVOKED");
+            }
+        });
+        lease.start();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("stop")) {
+            // wait for the harness
+        }
+        lease.shutdown();
+    }
+
+    private static Connection connect(String database, String pass) throws SQLException {
+        return DriverManager.getConnection("jdbc:mysql://localhost/" + database + "?serverTimezone=IST", "root", pass);
+    }
+}
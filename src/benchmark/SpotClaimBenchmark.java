@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import controllers.ShardedSpotOccupancy;
+
+/**
+ * Contention benchmark for in-memory spot claims (ShardedSpotOccupancy.claimFree / setOccupied)
+ * with 1 to 64 threads. Every thread claims a free spot and releases it again, either all in
+ * one lot (worst case: one shard) or spread over all lots.
+ *
+ * A plain main() harness, since the build has no JMH: each point gets a warm-up run first and
+ * the occupancy invariants are checked after every run.
+ *
+ * Usage: java benchmark.SpotClaimBenchmark [lots] [spotsPerLot] [seconds]
+ */
+public class SpotClaimBenchmark {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    public static void main(String[] args) throws InterruptedException {
+        int lots = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int spotsPerLot = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long millis = (args.length > 2 ? Long.parseLong(args[2]) : 2) * 1000;
+
+        System.out.println("Spot claim benchmark: " + lots + " lots x " + spotsPerLot + " spots, "
+            + millis / 1000 + "s per point");
+        System.out.printf("%-8s %8s %16s %16s%n", "mode", "threads", "claims/s", "full lot/s");
+        for (boolean spread : new boolean[] { false, true }) {
+            for (int threads : THREAD_COUNTS) {
+                ShardedSpotOccupancy occupancy = newOccupancy(lots, spotsPerLot);
+                run(occupancy, lots, threads, spread, millis / 2); // warm-up
+                long[] result = run(occupancy, lots, threads, spread, millis);
+                System.out.printf("%-8s %8d %16d %16d%n", spread ? "spread" : "one-lot", threads,
+                    result[0] * 1000 / millis, result[1] * 1000 / millis);
+                if (occupancy.getFreeCount() != occupancy.getTotalSpots()) {
+                    System.out.println("❌ Occupancy out of balance after run: " + occupancy.getFreeCount()
+                        + " free of " + occupancy.getTotalSpots());
+                }
+            }
+        }
+    }
+
+    private static ShardedSpotOccupancy newOccupancy(int lots, int spotsPerLot) {
+        ShardedSpotOccupancy occupancy = new ShardedSpotOccupancy();
+        occupancy.reset(lots * spotsPerLot);
+        for (int spotId = 1; spotId <= lots * spotsPerLot; spotId++) {
+            occupancy.define(spotId, (spotId - 1) / spotsPerLot + 1, 0, "A", false);
+        }
+        occupancy.markLoaded();
+        return occupancy;
+    }
+
+    /**
+     * @return { successful claims, claims that found the lot full }
+     */
+    private static long[] run(ShardedSpotOccupancy occupancy, int lots, int threads, boolean spread, long millis)
+            throws InterruptedException {
+        LongAdder claims = new LongAdder();
+        LongAdder full = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            int lotId = spread ? i % lots + 1 : 1;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    int spotId = occupancy.claimFree(lotId);
+                    if (spotId == -1) {
+                        full.increment();
+                        continue;
+                    }
+                    claims.increment();
+                    occupancy.setOccupied(spotId, false);
+                }
+            }, "claim-bench-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new long[] { claims.sum(), full.sum() };
+    }
+}
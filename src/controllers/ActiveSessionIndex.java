@@ -0,0 +1,171 @@
+package controllers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Open parking sessions (ParkingInfo rows with no Actual_end_time), indexed by
+ * parking code, user and spot. Loaded at startup and kept current by the gate
+ * operations, so exit, extension and lost-code lookups need no SELECT.
+ * Sessions are immutable; an extension replaces the entry.
+ */
+public class ActiveSessionIndex {
+
+    /**
+     * One open ParkingInfo row
+     */
+    public static final class ActiveSession {
+        private final int parkingInfoId;
+        private final int code;
+        private final int userId;
+        private final int spotId;
+        private final LocalDate date;
+        private final LocalTime startTime;
+        private final LocalTime estimatedEndTime;
+        private final String orderType;
+        private final boolean extended;
+
+        public ActiveSession(int parkingInfoId, int code, int userId, int spotId, LocalDate date,
+                             LocalTime startTime, LocalTime estimatedEndTime, String orderType, boolean extended) {
+            this.parkingInfoId = parkingInfoId;
+            this.code = code;
+            this.userId = userId;
+            this.spotId = spotId;
+            this.date = date;
+            this.startTime = startTime;
+            this.estimatedEndTime = estimatedEndTime;
+            this.orderType = orderType;
+            this.extended = extended;
+        }
+
+        public int getParkingInfoId() {
+            return parkingInfoId;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public int getSpotId() {
+            return spotId;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public LocalTime getStartTime() {
+            return startTime;
+        }
+
+        public LocalTime getEstimatedEndTime() {
+            return estimatedEndTime;
+        }
+
+        public String getOrderType() {
+            return orderType;
+        }
+
+        public boolean isExtended() {
+            return extended;
+        }
+
+        /**
+         * Estimated end as a date-time; an end at or before the start time is on the next day
+         */
+        public LocalDateTime getEstimatedEndDateTime() {
+            LocalDateTime end = LocalDateTime.of(date, estimatedEndTime);
+            return end.isAfter(LocalDateTime.of(date, startTime)) ? end : end.plusDays(1);
+        }
+
+        /**
+         * Copy with a new estimated end, marked as extended
+         */
+        public ActiveSession withEstimatedEndTime(LocalTime newEstimatedEndTime) {
+            return new ActiveSession(parkingInfoId, code, userId, spotId, date, startTime,
+                newEstimatedEndTime, orderType, true);
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, ActiveSession> byCode = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, ActiveSession> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, ActiveSession> bySpot = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Adds a session, or replaces the one with the same code
+     */
+    public synchronized void put(ActiveSession session) {
+        ActiveSession previous = byCode.put(session.code, session);
+        if (previous != null) {
+            byUser.remove(previous.userId, previous);
+            bySpot.remove(previous.spotId, previous);
+        }
+        byUser.put(session.userId, session);
+        bySpot.put(session.spotId, session);
+    }
+
+    /**
+     * @return the removed session, or null if the code had none
+     */
+    public synchronized ActiveSession remove(int code) {
+        ActiveSession session = byCode.remove(code);
+        if (session != null) {
+            byUser.remove(session.userId, session);
+            bySpot.remove(session.spotId, session);
+        }
+        return session;
+    }
+
+    public ActiveSession getByCode(int code) {
+        return byCode.get(code);
+    }
+
+    public ActiveSession getByUser(int userId) {
+        return byUser.get(userId);
+    }
+
+    public ActiveSession getBySpot(int spotId) {
+        return bySpot.get(spotId);
+    }
+
+    /**
+     * All open sessions, oldest entry first
+     */
+    public List<ActiveSession> getAll() {
+        List<ActiveSession> sessions = new ArrayList<>(byCode.values());
+        sessions.sort(Comparator.comparing(ActiveSession::getDate).thenComparing(ActiveSession::getStartTime));
+        return sessions;
+    }
+
+    public synchronized void clear() {
+        byCode.clear();
+        byUser.clear();
+        bySpot.clear();
+        loaded = false;
+    }
+
+    /**
+     * Marks the index as complete; until then callers should query the database
+     */
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return byCode.size();
+    }
+}
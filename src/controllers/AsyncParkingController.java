@@ -0,0 +1,177 @@
+package controllers;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import entities.ParkingLot;
+import entities.ParkingOrder;
+import entities.ParkingSubscriber;
+
+/**
+ * Non-blocking facade over ParkingController.
+ * Every operation runs on a dedicated DB executor and returns a CompletableFuture,
+ * so server request threads never wait on JDBC. The server sends every client command
+ * through here, so commands reach the shared connection strictly in arrival order and
+ * no statement ever runs inside another command's transaction.
+ */
+public class AsyncParkingController {
+
+    /**
+     * ParkingController shares a single JDBC connection, so one DB thread keeps
+     * statements in submission order. The steps inside one operation are not run in
+     * parallel: they share that operation's transaction, which a second connection
+     * could not see. Raise this only together with the connection count.
+     */
+    private static final int DB_THREADS = 1;
+
+    private final ParkingController parkingController;
+    private final ExecutorService dbExecutor;
+
+    public AsyncParkingController(ParkingController parkingController) {
+        this.parkingController = parkingController;
+        this.dbExecutor = Executors.newFixedThreadPool(DB_THREADS, new DbThreadFactory());
+    }
+
+    /**
+     * Named daemon threads so a stuck query never keeps the JVM alive on exit
+     */
+    private static class DbThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "parkb-db-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    /**
+     * Runs the work on the DB executor inside its own QueryStats request scope, holding the
+     * controller's connection so background jobs can't interleave statements with it
+     */
+    private <T> CompletableFuture<T> submit(String operation, Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            QueryStats.beginRequest(operation);
+            try {
+                return parkingController.withConnection(work::get);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                QueryStats.endRequest();
+            }
+        }, dbExecutor);
+    }
+
+    public CompletableFuture<String> checkLogin(String userName, String password) {
+        return submit("checkLogin", () -> parkingController.checkLogin(userName, password));
+    }
+
+    public CompletableFuture<Void> logoutUser(String userName) {
+        return submit("logoutUser", () -> {
+            parkingController.logoutUser(userName);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Integer> getAvailableParkingSpots() {
+        return submit("getAvailableParkingSpots", () -> parkingController.getAvailableParkingSpots());
+    }
+
+    public CompletableFuture<Integer> getAvailableParkingSpots(int lotId) {
+        return submit("getAvailableParkingSpots", () -> parkingController.getAvailableParkingSpots(lotId));
+    }
+
+    public CompletableFuture<ArrayList<ParkingLot>> getParkingLots() {
+        return submit("getParkingLots", () -> parkingController.getParkingLots());
+    }
+
+    public CompletableFuture<String> registerNewSubscriber(String attendantUserName, String name, String phone,
+                                                           String email, String carNumber, String userName) {
+        return submit("registerNewSubscriber", () -> parkingController.registerNewSubscriber(
+            attendantUserName, name, phone, email, carNumber, userName));
+    }
+
+    public CompletableFuture<String> sendLostParkingCode(String userName) {
+        return submit("sendLostParkingCode", () -> parkingController.sendLostParkingCode(userName));
+    }
+
+    public CompletableFuture<ArrayList<ParkingOrder>> getActiveParkings() {
+        return submit("getActiveParkings", () -> parkingController.getActiveParkings());
+    }
+
+    public CompletableFuture<String> updateSubscriberInfo(String updateData) {
+        return submit("updateSubscriberInfo", () -> parkingController.updateSubscriberInfo(updateData));
+    }
+
+    public CompletableFuture<String> enterParking(String userName) {
+        return submit("enterParking", () -> parkingController.enterParking(userName));
+    }
+
+    public CompletableFuture<String> enterParking(String userName, int lotId) {
+        return submit("enterParking", () -> parkingController.enterParking(userName, lotId));
+    }
+
+    public CompletableFuture<String> enterParkingWithReservation(int reservationCode) {
+        return submit("enterParkingWithReservation", () -> parkingController.enterParkingWithReservation(reservationCode));
+    }
+
+    public CompletableFuture<String> exitParking(String parkingCode) {
+        return submit("exitParking", () -> parkingController.exitParking(parkingCode));
+    }
+
+    public CompletableFuture<String> makeReservation(String userName, String reservationDateTime) {
+        return submit("makeReservation", () -> parkingController.makeReservation(userName, reservationDateTime));
+    }
+
+    public CompletableFuture<String> makeReservation(String userName, String reservationDateTime, int lotId) {
+        return submit("makeReservation", () -> parkingController.makeReservation(userName, reservationDateTime, lotId));
+    }
+
+    public CompletableFuture<String> cancelReservation(int reservationCode) {
+        return submit("cancelReservation", () -> parkingController.cancelReservation(reservationCode));
+    }
+
+    public CompletableFuture<String> cancelReservation(String userName, int reservationCode) {
+        return submit("cancelReservation", () -> parkingController.cancelReservation(userName, reservationCode));
+    }
+
+    public CompletableFuture<String> activateReservation(String userName, int reservationCode) {
+        return submit("activateReservation", () -> parkingController.activateReservation(userName, reservationCode));
+    }
+
+    public CompletableFuture<String> extendParkingTime(String parkingCode, int additionalHours) {
+        return submit("extendParkingTime", () -> parkingController.extendParkingTime(parkingCode, additionalHours));
+    }
+
+    public CompletableFuture<ArrayList<ParkingOrder>> getParkingHistory(String userName) {
+        return submit("getParkingHistory", () -> parkingController.getParkingHistory(userName));
+    }
+
+    public CompletableFuture<ParkingSubscriber> getUserInfo(String userName) {
+        return submit("getUserInfo", () -> parkingController.getUserInfo(userName));
+    }
+
+    /**
+     * Stops accepting work and waits briefly for queued operations to finish
+     */
+    public void shutdown() {
+        dbExecutor.shutdown();
+        try {
+            if (!dbExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                dbExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            dbExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
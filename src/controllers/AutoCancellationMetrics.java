@@ -0,0 +1,175 @@
+package controllers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import services.ServerMetrics;
+
+/**
+ * Counters and timings of the auto-cancellation service: how long each sweep and resync
+ * takes, how many rows they read, how many reservations they cancel, failures, and how late
+ * cancellations fire relative to their deadline (start + 15 min) as a fixed-bucket histogram.
+ * Registered as autoCancel.* gauges in ServerMetrics.
+ */
+public class AutoCancellationMetrics {
+
+    // Upper bounds of the lag buckets; the last bucket is everything above
+    private static final long[] LAG_BOUNDS_MILLIS = { 1_000, 5_000, 15_000, 30_000, 60_000, 120_000, 300_000 };
+    private static final String[] LAG_LABELS = { "1s", "5s", "15s", "30s", "1m", "2m", "5m" };
+
+    private final LongAdder sweeps = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder rowsExamined = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final AtomicLong lastSweepMillis = new AtomicLong();
+    private final AtomicLong maxSweepMillis = new AtomicLong();
+    private final AtomicLong lastSweepRows = new AtomicLong();
+    private final AtomicLong lastResyncMillis = new AtomicLong();
+    private final AtomicLongArray lagBuckets = new AtomicLongArray(LAG_BOUNDS_MILLIS.length + 1);
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    /**
+     * A committed sweep: its duration, the overdue rows it read and the reservations it cancelled
+     */
+    public void recordSweep(long nanos, int rows, int cancelledCount) {
+        long millis = nanos / 1_000_000;
+        sweeps.increment();
+        rowsExamined.add(rows);
+        cancelled.add(cancelledCount);
+        lastSweepMillis.set(millis);
+        maxSweepMillis.accumulateAndGet(millis, Math::max);
+        lastSweepRows.set(rows);
+    }
+
+    /**
+     * A deadline reload: its duration and the preorder rows it read
+     */
+    public void recordResync(long nanos, int rows) {
+        resyncs.increment();
+        rowsExamined.add(rows);
+        lastResyncMillis.set(nanos / 1_000_000);
+    }
+
+    /**
+     * Time from a reservation's deadline to its cancellation being committed
+     */
+    public void recordLag(long lagMillis) {
+        long lag = Math.max(0, lagMillis);
+        int bucket = 0;
+        while (bucket < LAG_BOUNDS_MILLIS.length && lag > LAG_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        lagBuckets.incrementAndGet(bucket);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * A sweep transaction that failed and was rolled back (also counted as an error)
+     */
+    public void recordRollback() {
+        rollbacks.increment();
+        errors.increment();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100) of lags, or -1 with no data.
+     * Lags above the last bound report the observed maximum.
+     */
+    public long getLagPercentileMillis(double percentile) {
+        long total = 0;
+        for (int i = 0; i < lagBuckets.length(); i++) {
+            total += lagBuckets.get(i);
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < LAG_BOUNDS_MILLIS.length; i++) {
+            seen += lagBuckets.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(LAG_BOUNDS_MILLIS[i], maxLagMillis.get());
+            }
+        }
+        return maxLagMillis.get();
+    }
+
+    /**
+     * Bucket counts as "<=1s:4 <=5s:1 ... >5m:0"
+     */
+    public String formatLagHistogram() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LAG_LABELS.length; i++) {
+            sb.append("<=").append(LAG_LABELS[i]).append(':').append(lagBuckets.get(i)).append(' ');
+        }
+        sb.append('>').append(LAG_LABELS[LAG_LABELS.length - 1]).append(':').append(lagBuckets.get(LAG_LABELS.length));
+        return sb.toString();
+    }
+
+    public long getSweepCount() {
+        return sweeps.sum();
+    }
+
+    public long getLastSweepMillis() {
+        return lastSweepMillis.get();
+    }
+
+    public long getMaxSweepMillis() {
+        return maxSweepMillis.get();
+    }
+
+    public long getLastSweepRows() {
+        return lastSweepRows.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    public long getRowsExamined() {
+        return rowsExamined.sum();
+    }
+
+    public long getResyncCount() {
+        return resyncs.sum();
+    }
+
+    public long getLastResyncMillis() {
+        return lastResyncMillis.get();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getRollbackCount() {
+        return rollbacks.sum();
+    }
+
+    /**
+     * Publishes the metrics as autoCancel.* gauges
+     */
+    public void register() {
+        ServerMetrics.register("autoCancel.sweeps", this::getSweepCount);
+        ServerMetrics.register("autoCancel.lastSweepMillis", this::getLastSweepMillis);
+        ServerMetrics.register("autoCancel.maxSweepMillis", this::getMaxSweepMillis);
+        ServerMetrics.register("autoCancel.lastSweepRows", this::getLastSweepRows);
+        ServerMetrics.register("autoCancel.cancelled", this::getCancelledCount);
+        ServerMetrics.register("autoCancel.resyncs", this::getResyncCount);
+        ServerMetrics.register("autoCancel.lastResyncMillis", this::getLastResyncMillis);
+        ServerMetrics.register("autoCancel.rowsExamined", this::getRowsExamined);
+        ServerMetrics.register("autoCancel.errors", this::getErrorCount);
+        ServerMetrics.register("autoCancel.rollbacks", this::getRollbackCount);
+        ServerMetrics.register("autoCancel.lagMillis.p50", () -> getLagPercentileMillis(50));
+        ServerMetrics.register("autoCancel.lagMillis.p95", () -> getLagPercentileMillis(95));
+        ServerMetrics.register("autoCancel.lagMillis.max", maxLagMillis::get);
+        ServerMetrics.register("autoCancel.lagHistogram", this::formatLagHistogram);
+    }
+}
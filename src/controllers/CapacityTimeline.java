@@ -0,0 +1,212 @@
+package controllers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Number of spots in use per 15-minute slot over a rolling horizon (today + 7 days).
+ * Backed by a segment tree with lazy range-add and range-max, so adding or removing a
+ * booking and asking "peak usage in [start, end)" are both O(log n) for 768 slots.
+ * Bookings are remembered by key so they can be removed and re-applied when the
+ * horizon moves to a new day.
+ *
+ * Open sessions (session keys) count as in use until they are removed, like in
+ * SpotIntervalIndex: a car parked past its estimated end still fills the current slot.
+ */
+public class CapacityTimeline {
+
+    public static final int SLOTS_PER_DAY = 24 * 60 / SpotIntervalIndex.SLOT_MINUTES;
+    private static final int DEFAULT_DAYS = 8;
+
+    private final int size;
+    private final int[] max;
+    private final int[] lazy;
+    private final Map<String, long[]> bookings = new HashMap<>();
+    // End slot -> number of open sessions ending there, to count overstaying cars at query time
+    private final TreeMap<Long, Integer> sessionEnds = new TreeMap<>();
+    private long baseSlot;
+    private volatile boolean loaded;
+
+    public CapacityTimeline() {
+        this(DEFAULT_DAYS);
+    }
+
+    public CapacityTimeline(int days) {
+        this.size = days * SLOTS_PER_DAY;
+        this.max = new int[4 * size];
+        this.lazy = new int[4 * size];
+        this.baseSlot = SpotIntervalIndex.toSlot(LocalDate.now().atStartOfDay());
+    }
+
+    /**
+     * Adds (or replaces) a booking covering [start, end)
+     */
+    public synchronized void add(String key, LocalDateTime start, LocalDateTime end) {
+        rollToToday();
+        remove(key);
+        long startSlot = SpotIntervalIndex.toSlot(start);
+        long endSlot = Math.max(SpotIntervalIndex.toSlotCeil(end), startSlot + 1);
+        bookings.put(key, new long[] { startSlot, endSlot });
+        if (SpotIntervalIndex.isSessionKey(key)) {
+            sessionEnds.merge(endSlot, 1, Integer::sum);
+        }
+        apply(startSlot, endSlot, 1);
+    }
+
+    public synchronized boolean remove(String key) {
+        long[] booking = bookings.remove(key);
+        if (booking == null) {
+            return false;
+        }
+        if (SpotIntervalIndex.isSessionKey(key)) {
+            sessionEnds.computeIfPresent(booking[1], (slot, count) -> count > 1 ? count - 1 : null);
+        }
+        apply(booking[0], booking[1], -1);
+        return true;
+    }
+
+    /**
+     * Drops all bookings; the timeline counts as not loaded until markLoaded()
+     */
+    public synchronized void clear() {
+        loaded = false;
+        bookings.clear();
+        sessionEnds.clear();
+        Arrays.fill(max, 0);
+        Arrays.fill(lazy, 0);
+    }
+
+    /**
+     * Marks the timeline as complete; until then callers should fall back to the database
+     */
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Peak number of concurrent bookings in any slot of [start, end),
+     * counting overstaying sessions in the current slot
+     */
+    public synchronized int maxUsage(LocalDateTime start, LocalDateTime end) {
+        rollToToday();
+        int from = (int) Math.max(0, SpotIntervalIndex.toSlot(start) - baseSlot);
+        int to = (int) Math.min(size, SpotIntervalIndex.toSlotCeil(end) - baseSlot);
+        if (from >= to) {
+            return 0; // window outside the horizon
+        }
+        int peak = query(1, 0, size - 1, from, to - 1);
+        
+        long nowSlot = SpotIntervalIndex.toSlot(LocalDateTime.now());
+        int now = (int) (nowSlot - baseSlot);
+        if (now >= from && now < to) {
+            int overstaying = 0;
+            for (int count : sessionEnds.headMap(nowSlot, true).values()) {
+                overstaying += count;
+            }
+            if (overstaying > 0) {
+                peak = Math.max(peak, query(1, 0, size - 1, now, now) + overstaying);
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Bookings active in the slot containing time
+     */
+    public synchronized int usageAt(LocalDateTime time) {
+        return maxUsage(time, time.plusMinutes(SpotIntervalIndex.SLOT_MINUTES));
+    }
+
+    public synchronized int getBookingCount() {
+        return bookings.size();
+    }
+
+    /**
+     * Copy of the bookings as key -> { startSlot, endSlot }
+     */
+    public synchronized Map<String, long[]> getBookings() {
+        Map<String, long[]> copy = new HashMap<>();
+        for (Map.Entry<String, long[]> booking : bookings.entrySet()) {
+            copy.put(booking.getKey(), booking.getValue().clone());
+        }
+        return copy;
+    }
+
+    private void apply(long startSlot, long endSlot, int delta) {
+        int from = (int) Math.max(0, startSlot - baseSlot);
+        int to = (int) Math.min(size, endSlot - baseSlot);
+        if (from < to) {
+            update(1, 0, size - 1, from, to - 1, delta);
+        }
+    }
+
+    /**
+     * Moves the horizon start to today, dropping finished bookings and re-applying the rest
+     */
+    private void rollToToday() {
+        long todaySlot = SpotIntervalIndex.toSlot(LocalDate.now().atStartOfDay());
+        if (todaySlot == baseSlot) {
+            return;
+        }
+        baseSlot = todaySlot;
+        Arrays.fill(max, 0);
+        Arrays.fill(lazy, 0);
+        // Finished reservations go; open sessions stay until they are removed on exit
+        bookings.entrySet().removeIf(booking -> booking.getValue()[1] <= baseSlot
+            && !SpotIntervalIndex.isSessionKey(booking.getKey()));
+        for (long[] booking : bookings.values()) {
+            apply(booking[0], booking[1], 1);
+        }
+    }
+
+    private void update(int node, int lo, int hi, int from, int to, int delta) {
+        if (from <= lo && hi <= to) {
+            max[node] += delta;
+            lazy[node] += delta;
+            return;
+        }
+        push(node);
+        int mid = (lo + hi) >>> 1;
+        if (from <= mid) {
+            update(2 * node, lo, mid, from, to, delta);
+        }
+        if (to > mid) {
+            update(2 * node + 1, mid + 1, hi, from, to, delta);
+        }
+        max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+    }
+
+    private int query(int node, int lo, int hi, int from, int to) {
+        if (from <= lo && hi <= to) {
+            return max[node];
+        }
+        push(node);
+        int mid = (lo + hi) >>> 1;
+        int result = Integer.MIN_VALUE;
+        if (from <= mid) {
+            result = Math.max(result, query(2 * node, lo, mid, from, to));
+        }
+        if (to > mid) {
+            result = Math.max(result, query(2 * node + 1, mid + 1, hi, from, to));
+        }
+        return result;
+    }
+
+    private void push(int node) {
+        if (lazy[node] != 0) {
+            for (int child = 2 * node; child <= 2 * node + 1; child++) {
+                max[child] += lazy[node];
+                lazy[child] += lazy[node];
+            }
+            lazy[node] = 0;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hashed timer wheel for large numbers of keyed deadlines (reservation no-shows, reminders).
+ * Scheduling and cancelling are O(1); each tick only looks at one bucket, so an idle wheel
+ * costs nothing but a sleeping thread. Timeouts fire at most one tick after their deadline.
+ *
+ * Tasks run on a separate single-thread executor so a slow task never delays the wheel.
+ * Scheduling a key that is already pending replaces the earlier timeout.
+ */
+public class HashedTimerWheel {
+
+    private static final class Timeout {
+        final String key;
+        final long deadlineMillis;
+        final Runnable task;
+        long remainingRounds;
+        volatile boolean cancelled;
+
+        Timeout(String key, long deadlineMillis, Runnable task) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+            this.task = task;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<LinkedList<Timeout>> buckets;
+    private final int mask;
+    private final Map<String, Timeout> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final ExecutorService taskExecutor;
+    private final Thread worker;
+    private final long startMillis;
+    private long tick;
+    private volatile boolean running;
+
+    /**
+     * @param name       thread name prefix
+     * @param tickMillis wheel resolution
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     */
+    public HashedTimerWheel(String name, long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new LinkedList<>());
+        }
+        this.mask = size - 1;
+        this.startMillis = System.currentTimeMillis();
+        this.taskExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, name + "-tasks");
+            t.setDaemon(true);
+            return t;
+        });
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            running = true;
+            worker.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        taskExecutor.shutdown();
+    }
+
+    /**
+     * Runs task at (or within one tick after) deadlineMillis; a deadline in the past fires on the next tick
+     */
+    public void schedule(String key, long deadlineMillis, Runnable task) {
+        Timeout timeout = new Timeout(key, deadlineMillis, task);
+        Timeout previous = pending.put(key, timeout);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        newTimeouts.add(timeout);
+    }
+
+    /**
+     * @return true if a pending timeout was cancelled
+     */
+    public boolean cancel(String key) {
+        Timeout timeout = pending.remove(key);
+        if (timeout == null) {
+            return false;
+        }
+        timeout.cancelled = true;
+        return true;
+    }
+
+    public boolean isPending(String key) {
+        return pending.containsKey(key);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private void run() {
+        while (running) {
+            long nextTickMillis = startMillis + (tick + 1) * tickMillis;
+            long sleep = nextTickMillis - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+
+            transferNewTimeouts();
+            expire(buckets.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // Bucket i is expired at startMillis + (i + 1) * tickMillis
+            long ticks = Math.max(tick, (timeout.deadlineMillis - startMillis + tickMillis - 1) / tickMillis - 1);
+            timeout.remainingRounds = (ticks - tick) / buckets.size();
+            buckets.get((int) (ticks & mask)).add(timeout);
+        }
+    }
+
+    private void expire(LinkedList<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                if (pending.remove(timeout.key, timeout)) {
+                    taskExecutor.execute(() -> {
+                        try {
+                            timeout.task.run();
+                        } catch (RuntimeException e) {
+                            System.out.println("Timer task " + timeout.key + " failed: " + e.getMessage());
+                        }
+                    });
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+}
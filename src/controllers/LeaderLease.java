@@ -0,0 +1,221 @@
+package controllers;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease-based leader election over a row of the SchedulerLease table, so background jobs
+ * (auto-cancellation, overstay detection, monthly reports) run on exactly one server.
+ *
+ * Every node renews or tries to take the lease every TTL/3 with one conditional UPDATE; it
+ * succeeds only for the current owner or once the lease has expired, so the database decides
+ * and its clock is the only one that matters. A node considers itself leader only until
+ * TTL minus a safety margin after its last successful renewal, so it steps down before
+ * anyone else can take over. A clean shutdown releases the lease for immediate failover;
+ * a crashed leader is replaced within TTL + TTL/3.
+ *
+ * The lease uses its own connection, so a heartbeat never waits behind a gate transaction.
+ *
+ * Only background jobs are coordinated. Gate and booking traffic must go to a single active
+ * server: the open-session index, occupancy map and capacity timelines are per-process caches
+ * loaded at startup. Spot claims and parking codes are still checked against the database,
+ * so a client that reaches a second server cannot park in an occupied spot or reuse a live
+ * code, but reservation capacity is only enforced per server.
+ * Try failover with benchmark.LeaderFailoverHarness.
+ */
+public class LeaderLease {
+
+    public static final String NODE_ID_PROPERTY = "bpark.nodeId";
+    public static final String TTL_PROPERTY = "bpark.leaseTtlMillis";
+    private static final long DEFAULT_TTL_MILLIS = 10_000;
+
+    /**
+     * Callbacks on gaining and losing the lease; both run on the lease thread
+     */
+    public interface LeadershipListener {
+        void elected();
+
+        void revoked();
+    }
+
+    private final String leaseName;
+    private final String nodeId;
+    private final long ttlMillis;
+    private final Callable<Connection> connector;
+    private final List<LeadershipListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeat;
+    private Connection conn;
+    private boolean failing;
+    private volatile boolean leader;
+    // System.nanoTime() taken before the last successful renewal was sent
+    private volatile long renewedAtNanos;
+
+    public LeaderLease(String leaseName, Callable<Connection> connector) {
+        this.leaseName = leaseName;
+        this.connector = connector;
+        // pid@host by default, so several JVMs on one machine are distinct nodes
+        this.nodeId = System.getProperty(NODE_ID_PROPERTY, ManagementFactory.getRuntimeMXBean().getName());
+        this.ttlMillis = Long.getLong(TTL_PROPERTY, DEFAULT_TTL_MILLIS);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parkb-leader-lease");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void addListener(LeadershipListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts the heartbeat; the first attempt to take the lease runs immediately
+     */
+    public void start() {
+        System.out.println("Leader election: node " + nodeId + " competing for lease '" + leaseName + "'");
+        heartbeat.scheduleWithFixedDelay(this::heartbeat, 0, ttlMillis / 3, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the heartbeat, revokes local leadership and releases the lease so another node takes over at once
+     */
+    public void shutdown() {
+        heartbeat.shutdown();
+        try {
+            heartbeat.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (leader) {
+            stepDown();
+            release();
+        }
+        closeQuietly();
+    }
+
+    /**
+     * True while this node holds an unexpired lease. Jobs check it right before acting,
+     * which also covers a leader that was paused past its lease.
+     */
+    public boolean isLeader() {
+        return leader && System.nanoTime() - renewedAtNanos < validityNanos();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void heartbeat() {
+        long attemptNanos = System.nanoTime();
+        boolean held;
+        try {
+            held = tryAcquire();
+            if (failing) {
+                System.out.println("Leader election: database reachable again");
+                failing = false;
+            }
+        } catch (Exception e) {
+            if (!failing) {
+                System.out.println("Leader election: heartbeat failed - " + e.getMessage());
+                failing = true;
+            }
+            closeQuietly();
+            // Keep leading on a transient failure only while the lease we already hold is still valid
+            if (leader && !isLeader()) {
+                stepDown();
+            }
+            return;
+        }
+
+        if (held) {
+            renewedAtNanos = attemptNanos;
+            if (!leader) {
+                leader = true;
+                System.out.println("👑 Node " + nodeId + " is now the scheduler leader");
+                for (LeadershipListener listener : listeners) {
+                    try {
+                        listener.elected();
+                    } catch (RuntimeException e) {
+                        System.out.println("Leadership listener failed: " + e.getMessage());
+                    }
+                }
+            }
+        } else if (leader) {
+            stepDown();
+        }
+    }
+
+    /**
+     * Renews the lease if this node owns it, or takes it if it is free or expired
+     *
+     * @return true if this node holds the lease now
+     */
+    private boolean tryAcquire() throws Exception {
+        String qry = """
+            UPDATE SchedulerLease
+            SET Owner = ?, Expires_at = NOW(3) + INTERVAL ? MICROSECOND
+            WHERE Lease_name = ? AND (Owner = ? OR Owner IS NULL OR Expires_at < NOW(3))
+            """;
+        try (PreparedStatement stmt = connection().prepareStatement(qry)) {
+            stmt.setString(1, nodeId);
+            stmt.setLong(2, ttlMillis * 1000);
+            stmt.setString(3, leaseName);
+            stmt.setString(4, nodeId);
+            return stmt.executeUpdate() == 1;
+        }
+    }
+
+    private void release() {
+        String qry = "UPDATE SchedulerLease SET Owner = NULL, Expires_at = NOW(3) WHERE Lease_name = ? AND Owner = ?";
+        try (PreparedStatement stmt = connection().prepareStatement(qry)) {
+            stmt.setString(1, leaseName);
+            stmt.setString(2, nodeId);
+            stmt.executeUpdate();
+            System.out.println("Leader election: released lease '" + leaseName + "'");
+        } catch (Exception e) {
+            System.out.println("Error releasing leader lease (expires on its own): " + e.getMessage());
+        }
+    }
+
+    private void stepDown() {
+        leader = false;
+        System.out.println("Node " + nodeId + " lost the scheduler lease - stopping background jobs");
+        for (LeadershipListener listener : listeners) {
+            try {
+                listener.revoked();
+            } catch (RuntimeException e) {
+                System.out.println("Leadership listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private long validityNanos() {
+        // Step down a third of a heartbeat early, before any other node can see the lease as expired
+        return TimeUnit.MILLISECONDS.toNanos(ttlMillis - ttlMillis / 9);
+    }
+
+    private Connection connection() throws Exception {
+        if (conn == null || conn.isClosed()) {
+            conn = connector.call();
+        }
+        return conn;
+    }
+
+    private void closeQuietly() {
+        try {
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            // already broken
+        }
+        conn = null;
+    }
+}
@@ -0,0 +1,285 @@
+package controllers;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects parking sessions that run past their estimated end, at the moment they expire.
+ * Open sessions sit in a min-heap keyed by estimated end; one thread sleeps until the
+ * earliest deadline, so nothing is polled or scanned while no session is due.
+ *
+ * The gate operations feed it after commit (enter, extend, exit). An extension leaves the
+ * old heap entry behind as a stale entry that is skipped when it surfaces.
+ *
+ * Every server keeps its heap current, but only the scheduler leader notifies customers.
+ * While leading it also picks up sessions opened, extended or closed through other servers
+ * from the Updated_at index once a minute.
+ */
+public class OverstayDetectionService implements LeaderLease.LeadershipListener {
+
+    private static final int CATCH_UP_MINUTES = 1;
+    private static final long CATCH_UP_MARGIN_MILLIS = 2000;
+    // Sessions that expired longer ago than this when a server takes over are counted but not re-notified
+    private static final long NOTIFY_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final class Entry {
+        final ActiveSessionIndex.ActiveSession session;
+        final long deadlineMillis;
+        boolean overstaying;
+
+        Entry(ActiveSessionIndex.ActiveSession session) {
+            this.session = session;
+            this.deadlineMillis = session.getEstimatedEndDateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+
+    private final ParkingController parkingController;
+    // Guarded by this
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(Comparator.comparingLong(e -> e.deadlineMillis));
+    private final Map<Integer, Entry> byCode = new HashMap<>();
+    private volatile int overstayingCount;
+    private final AtomicLong detectedCount = new AtomicLong();
+    private final AtomicLong notifiedCount = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean running;
+
+    private final ScheduledExecutorService catchUpScheduler;
+    private ScheduledFuture<?> catchUpTask;
+    private Timestamp catchUpMark;
+
+    public OverstayDetectionService(ParkingController parkingController) {
+        this.parkingController = parkingController;
+        this.worker = new Thread(this::run, "parkb-overstay-detector");
+        this.worker.setDaemon(true);
+        this.catchUpScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parkb-overstay-catch-up");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            running = true;
+            worker.start();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        catchUpScheduler.shutdownNow();
+    }
+
+    /**
+     * Adds a session, or moves it to its new estimated end after an extension
+     */
+    public synchronized void track(ActiveSessionIndex.ActiveSession session) {
+        Entry entry = new Entry(session);
+        Entry previous = byCode.get(session.getCode());
+        if (previous != null) {
+            if (previous.session.getParkingInfoId() == session.getParkingInfoId()
+                    && previous.deadlineMillis == entry.deadlineMillis) {
+                return; // seen already (catch-up overlap)
+            }
+            if (previous.overstaying) {
+                overstayingCount--;
+            }
+        }
+        byCode.put(session.getCode(), entry);
+        heap.add(entry);
+        if (heap.peek() == entry) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Drops a session once it has ended
+     */
+    public synchronized void untrack(int parkingCode) {
+        Entry removed = byCode.remove(parkingCode);
+        if (removed != null && removed.overstaying) {
+            overstayingCount--;
+        }
+    }
+
+    /**
+     * Replaces the tracked set with the given open sessions. Sessions already tracked with the
+     * same estimated end keep their state, so nobody is notified twice.
+     */
+    public synchronized void reload(Collection<ActiveSessionIndex.ActiveSession> sessions) {
+        Set<Integer> open = new HashSet<>();
+        for (ActiveSessionIndex.ActiveSession session : sessions) {
+            open.add(session.getCode());
+            track(session);
+        }
+        for (Integer code : new ArrayList<>(byCode.keySet())) {
+            if (!open.contains(code)) {
+                untrack(code);
+            }
+        }
+    }
+
+    /**
+     * Vehicles currently parked past their estimated end
+     */
+    public int getOverstayingCount() {
+        return overstayingCount;
+    }
+
+    public synchronized int getTrackedCount() {
+        return byCode.size();
+    }
+
+    public long getDetectedCount() {
+        return detectedCount.get();
+    }
+
+    public long getNotifiedCount() {
+        return notifiedCount.get();
+    }
+
+    @Override
+    public void elected() {
+        synchronized (catchUpScheduler) {
+            if (catchUpTask == null) {
+                catchUpMark = null;
+                catchUpTask = catchUpScheduler.scheduleWithFixedDelay(this::catchUp, 0, CATCH_UP_MINUTES, TimeUnit.MINUTES);
+            }
+        }
+    }
+
+    @Override
+    public void revoked() {
+        synchronized (catchUpScheduler) {
+            if (catchUpTask != null) {
+                catchUpTask.cancel(false);
+                catchUpTask = null;
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            Entry due;
+            synchronized (this) {
+                Entry head = heap.peek();
+                long now = System.currentTimeMillis();
+                try {
+                    if (head == null) {
+                        wait();
+                        continue;
+                    }
+                    if (head.deadlineMillis > now) {
+                        wait(head.deadlineMillis - now);
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                heap.poll();
+                if (byCode.get(head.session.getCode()) != head) {
+                    continue; // extended or exited since
+                }
+                head.overstaying = true;
+                overstayingCount++;
+                due = head;
+            }
+            detectedCount.incrementAndGet();
+            notifyOverstay(due);
+        }
+    }
+
+    private void notifyOverstay(Entry entry) {
+        // Only one server notifies; a server that just took over skips long-expired sessions
+        if (!parkingController.isSchedulerLeader()
+                || System.currentTimeMillis() - entry.deadlineMillis > NOTIFY_GRACE_MILLIS) {
+            return;
+        }
+        try {
+            parkingController.overstayDetected(entry.session);
+            notifiedCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            System.out.println("Error notifying overstay of parking code " + entry.session.getCode() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * First run after election: reload all open sessions. Then: only rows changed since the last run.
+     */
+    private void catchUp() {
+        QueryStats.beginRequest("overstayCatchUp");
+        try {
+            // Exclusive use of the shared connection, so the reads never land inside a gate transaction
+            parkingController.withConnection(() -> {
+                Timestamp mark = databaseNow();
+                if (catchUpMark == null) {
+                    List<ActiveSessionIndex.ActiveSession> sessions = new ArrayList<>();
+                    String qry = "SELECT * FROM ParkingInfo WHERE Actual_end_time IS NULL";
+                    try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(qry);
+                         ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            sessions.add(parkingController.mapActiveSession(rs));
+                        }
+                    }
+                    reload(sessions);
+                } else {
+                    String qry = "SELECT * FROM ParkingInfo WHERE Updated_at >= ? ORDER BY Updated_at";
+                    try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(qry)) {
+                        stmt.setTimestamp(1, new Timestamp(catchUpMark.getTime() - CATCH_UP_MARGIN_MILLIS));
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                if (rs.getTime("Actual_end_time") == null) {
+                                    track(parkingController.mapActiveSession(rs));
+                                } else {
+                                    untrack(rs.getInt("Code"), rs.getInt("ParkingInfo_ID"));
+                                }
+                            }
+                        }
+                    }
+                }
+                catchUpMark = mark;
+                return null;
+            });
+        } catch (SQLException e) {
+            System.out.println("Error catching up overstay tracking: " + e.getMessage());
+        } finally {
+            QueryStats.endRequest();
+        }
+    }
+
+    /**
+     * Drops a closed row's session unless its code has been reused by a newer session
+     */
+    private synchronized void untrack(int parkingCode, int parkingInfoId) {
+        Entry entry = byCode.get(parkingCode);
+        if (entry != null && entry.session.getParkingInfoId() == parkingInfoId) {
+            untrack(parkingCode);
+        }
+    }
+
+    private Timestamp databaseNow() throws SQLException {
+        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement("SELECT NOW(3)");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+}
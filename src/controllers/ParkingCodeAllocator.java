@@ -0,0 +1,122 @@
+package controllers;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out 6-digit parking codes that are unique among active parking sessions.
+ * Live codes are tracked in a lock-free bitmap (one bit per code, ~110 KB);
+ * a code is claimed by CAS on its bit and freed again when the session exits.
+ */
+public class ParkingCodeAllocator {
+
+    public static final int MIN_CODE = 100000;
+    public static final int MAX_CODE = 999999;
+
+    private static final int CODE_RANGE = MAX_CODE - MIN_CODE + 1;
+
+    // Random probes before falling back to a scan; each probe succeeds unless the space is nearly full
+    private static final int RANDOM_PROBES = 16;
+
+    private final AtomicLongArray liveBits = new AtomicLongArray((CODE_RANGE + 63) / 64);
+    private final AtomicInteger liveCount = new AtomicInteger();
+
+    /**
+     * Claims a free code
+     *
+     * @return the code, or -1 if every code is in use
+     */
+    public int allocate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < RANDOM_PROBES; i++) {
+            int code = MIN_CODE + random.nextInt(CODE_RANGE);
+            if (tryClaim(code)) {
+                return code;
+            }
+        }
+
+        // Nearly full: scan word by word from a random position for any clear bit
+        int words = liveBits.length();
+        int start = random.nextInt(words);
+        for (int i = 0; i < words; i++) {
+            int word = (start + i) % words;
+            long bits;
+            while ((bits = liveBits.get(word)) != -1L) {
+                int bit = Long.numberOfTrailingZeros(~bits);
+                int code = MIN_CODE + word * 64 + bit;
+                if (code > MAX_CODE) {
+                    break; // padding bits of the last word
+                }
+                if (tryClaim(code)) {
+                    return code;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks an existing code as live (used when seeding from open sessions)
+     */
+    public boolean markLive(int code) {
+        return isValid(code) && tryClaim(code);
+    }
+
+    /**
+     * Frees a code after its session ended
+     */
+    public void release(int code) {
+        if (!isValid(code)) {
+            return;
+        }
+        int index = code - MIN_CODE;
+        long mask = 1L << (index & 63);
+        long prev = liveBits.getAndAccumulate(index >>> 6, mask, (bits, m) -> bits & ~m);
+        if ((prev & mask) != 0) {
+            liveCount.decrementAndGet();
+        }
+    }
+
+    public boolean isLive(int code) {
+        if (!isValid(code)) {
+            return false;
+        }
+        int index = code - MIN_CODE;
+        return (liveBits.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    public int getLiveCount() {
+        return liveCount.get();
+    }
+
+    /**
+     * Forgets every live code (before reseeding from the database)
+     */
+    public void clear() {
+        for (int i = 0; i < liveBits.length(); i++) {
+            liveBits.set(i, 0L);
+        }
+        liveCount.set(0);
+    }
+
+    private boolean tryClaim(int code) {
+        int index = code - MIN_CODE;
+        int word = index >>> 6;
+        long mask = 1L << (index & 63);
+        while (true) {
+            long bits = liveBits.get(word);
+            if ((bits & mask) != 0) {
+                return false;
+            }
+            if (liveBits.compareAndSet(word, bits, bits | mask)) {
+                liveCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    private static boolean isValid(int code) {
+        return code >= MIN_CODE && code <= MAX_CODE;
+    }
+}
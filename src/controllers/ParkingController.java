@@ -1,32 +1,52 @@
 package controllers;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Time;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
+import entities.ParkingLot;
 import entities.ParkingOrder;
 import entities.ParkingSubscriber;
 import services.EmailService; // 🆕 ADD THIS IMPORT
+import services.ServerMetrics;
 
 /**
  * Enhanced ParkingController with email notifications
  * Handles all database operations for the ParkB parking management system.
  */
 public class ParkingController {
-    protected Connection conn;
+    protected volatile Connection conn;
     public int successFlag;
-    private static final int TOTAL_PARKING_SPOTS = 100;
+    // Spots created for a ParkingLot row that has none yet
+    private static final int SPOTS_PER_NEW_LOT = 100;
     private static final double RESERVATION_THRESHOLD = 0.4;
+    
+    /**
+     * Lot used by the single-lot API (operations that don't name a lot)
+     */
+    public static final int DEFAULT_LOT_ID = 1;
     /**
      * Role-based access control for all parking operations
      */
@@ -56,23 +76,11 @@ public class ParkingController {
     }
 
     /**
-     * Get user role from database
+     * Get user role (served from the user cache when possible)
      */
     private UserRole getUserRole(String userName) {
-        String qry = "SELECT UserTypeEnum FROM users WHERE UserName = ?";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setString(1, userName);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    String userType = rs.getString("UserTypeEnum");
-                    return UserRole.fromDbValue(userType);
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error getting user role: " + e.getMessage());
-        }
-        return null;
+        ParkingSubscriber user = getUserInfo(userName);
+        return user != null ? UserRole.fromDbValue(user.getUserType()) : null;
     }
 
     /**
@@ -98,21 +106,218 @@ public class ParkingController {
     
     // Auto-cancellation service
     private SimpleAutoCancellationService autoCancellationService;
+    
+    // Pre-arrival reminders, on the same timer wheel as the no-show deadlines
+    private ReservationReminderService reminderService;
+    
+    // History reads may be served by a read replica; gate operations stay on the primary
+    private ReadReplicaRouter replicaRouter;
+    
+    // users rows keyed by UserName/User_ID - invalidated on registration and profile updates
+    private final UserCache userCache = new UserCache();
+    
+    // Gate operations run as single transactions, retried on deadlocks/lock timeouts/link failures
+    private String connectPath;
+    private String dbPassword;
+    private final SqlRetryPolicy retryPolicy = new SqlRetryPolicy(this::reconnect);
+    // Owns the shared connection: transactions, plain statements and reconnects all hold it
+    private final ReentrantLock txLock = new ReentrantLock();
+    // True while the txLock holder has a transaction open (guarded by txLock)
+    private boolean transactionOpen;
+    private final List<Runnable> pendingAfterCommit = new ArrayList<>();
+    private final List<Runnable> pendingOnRollback = new ArrayList<>();
+    
+    // Codes of open parking sessions - keeps Code lookups in exit/extend unambiguous
+    private final ParkingCodeAllocator codeAllocator = new ParkingCodeAllocator();
+    private static final int CODE_ALLOCATION_ATTEMPTS = 8;
+    
+    // Open ParkingInfo rows by code, user and spot - exit/extend/lost-code lookups skip the SELECT
+    private final ActiveSessionIndex activeSessions = new ActiveSessionIndex();
+    
+    // Write-through copy of ParkingSpot.isOccupied, sharded per lot and reconciled with the table periodically
+    private final ShardedSpotOccupancy spotOccupancy = new ShardedSpotOccupancy();
+    private static final int OCCUPANCY_RECONCILE_MINUTES = 1;
+    private ScheduledExecutorService occupancyReconciler;
+    
+    // Periodic checkpoint of occupancy, open sessions and preorder capacity; a restart maps it and replays newer rows only
+    public static final String SNAPSHOT_FILE_PROPERTY = "bpark.snapshotFile";
+    private static final int SNAPSHOT_MINUTES = 5;
+    // Replay a little before the mark so rows stamped just before a checkpoint are never missed
+    private static final long SNAPSHOT_REPLAY_MARGIN_MILLIS = 2000;
+    private final Path snapshotFile = Paths.get(System.getProperty(SNAPSHOT_FILE_PROPERTY, "parkb-runtime.snapshot"));
+    
+    // Projected spots in use per lot and 15-minute slot (preorder reservations + open sessions)
+    private final Map<Integer, CapacityTimeline> lotCapacity = new ConcurrentHashMap<>();
+    private volatile boolean capacityLoaded;
+    
+    // Reservation deadlines (no-show cancellation, reminders) - 250 ms ticks, so timeouts fire within a second
+    private final HashedTimerWheel reservationTimers = new HashedTimerWheel("parkb-reservation-timers", 250, 512);
+    
+    // Append-only log of committed state transitions, for replay and tailing consumers
+    private ParkingEventJournal eventJournal;
+    
+    // Background jobs run only on the server holding this lease. Gate and booking traffic must go to one
+    // active server: the session index, occupancy map and capacity timelines only see this process's changes
+    private LeaderLease leaderLease;
+    
+    // Min-heap of open sessions by estimated end - notifies customers the moment they overstay
+    private final OverstayDetectionService overstayDetection = new OverstayDetectionService(this);
+    
+    /**
+     * Outcome of a gate operation: the reply text plus side effects (emails)
+     * that may only run once the transaction has committed
+     */
+    private static class OperationResult {
+        final String message;
+        final Runnable afterCommit;
+        
+        OperationResult(String message) {
+            this(message, null);
+        }
+        
+        OperationResult(String message, Runnable afterCommit) {
+            this.message = message;
+            this.afterCommit = afterCommit;
+        }
+    }
+    
+    /**
+     * Carries a retryable failure out of a nested operation so the outer transaction is retried
+     */
+    private static class NestedSqlFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        NestedSqlFailure(SQLException cause) {
+            super(cause);
+        }
+    }
 
     public ParkingController(String dbname, String pass) {
-        String connectPath = "jdbc:mysql://localhost/" + dbname + "?serverTimezone=IST";
+        this.connectPath = "jdbc:mysql://localhost/" + dbname + "?serverTimezone=IST";
+        this.dbPassword = pass;
         connectToDB(connectPath, pass);
         
-        // Initialize auto-cancellation service after DB connection
+        replicaRouter = ReadReplicaRouter.fromSystemProperty(pass);
+        ServerMetrics.register("replica.lagSeconds", replicaRouter::getReplicaLagSeconds);
+        ServerMetrics.register("userCache.hits", userCache::getHitCount);
+        ServerMetrics.register("userCache.misses", userCache::getMissCount);
+        ServerMetrics.register("userCache.hitRatio", () -> String.format("%.2f", userCache.getHitRatio()));
+        ServerMetrics.register("userCache.size", userCache::size);
+        ServerMetrics.register("sql.retries", retryPolicy::getRetryCount);
+        ServerMetrics.register("sql.retriesByType", retryPolicy::formatRetriesByType);
+        ServerMetrics.register("sql.giveUps", retryPolicy::getGiveUpCount);
+        ServerMetrics.register("sql.reconnects", retryPolicy::getReconnectCount);
+        ServerMetrics.register("parkingCodes.live", codeAllocator::getLiveCount);
+        ServerMetrics.register("sessions.active", activeSessions::size);
+        ServerMetrics.register("spots.free", spotOccupancy::getFreeCount);
+        ServerMetrics.register("spots.total", spotOccupancy::getTotalSpots);
+        ServerMetrics.register("sql.statements", QueryStats::getStatementCount);
+        ServerMetrics.register("sql.slowQueries", QueryStats::getSlowQueryCount);
+        
+        try {
+            eventJournal = ParkingEventJournal.open(
+                Paths.get(System.getProperty(ParkingEventJournal.JOURNAL_DIR_PROPERTY, "journal")));
+            ServerMetrics.register("journal.lastSequence", eventJournal::getLastSequence);
+            ServerMetrics.register("journal.durableSequence", eventJournal::getDurableSequence);
+        } catch (Exception e) {
+            System.out.println("Error opening event journal - state changes will not be journaled: " + e.getMessage());
+        }
+        
+        // Initialize auto-cancellation service after DB connection; it starts once this server is elected
         if (successFlag == 1) {
+            reservationTimers.start();
             this.autoCancellationService = new SimpleAutoCancellationService(this);
-            startAutoCancellationService();
+            leaderLease = new LeaderLease("scheduler", () -> DriverManager.getConnection(connectPath, "root", dbPassword));
+            leaderLease.addListener(new LeaderLease.LeadershipListener() {
+                @Override
+                public void elected() {
+                    startAutoCancellationService();
+                }
+                
+                @Override
+                public void revoked() {
+                    stopAutoCancellationService();
+                }
+            });
+            leaderLease.addListener(overstayDetection);
+            this.reminderService = new ReservationReminderService(this);
+            leaderLease.addListener(reminderService);
+            ServerMetrics.register("reminders.sent", reminderService::getSentCount);
+            ServerMetrics.register("scheduler.leader", () -> isSchedulerLeader() ? 1 : 0);
+            
+            overstayDetection.start();
+            ServerMetrics.register("overstay.current", this::getOverstayingCount);
+            ServerMetrics.register("overstay.detected", overstayDetection::getDetectedCount);
+            ServerMetrics.register("overstay.notified", overstayDetection::getNotifiedCount);
+        }
+    }
+    
+    /**
+     * Starts competing for the scheduler lease (call once the schema is migrated)
+     */
+    public void startLeaderElection() {
+        if (leaderLease != null) {
+            leaderLease.start();
+        }
+    }
+    
+    public LeaderLease getLeaderLease() {
+        return leaderLease;
+    }
+    
+    /**
+     * Vehicles currently parked past their estimated end
+     */
+    public int getOverstayingCount() {
+        return overstayDetection.getOverstayingCount();
+    }
+    
+    /**
+     * A session just ran past its estimated end: journal it and tell the customer
+     */
+    void overstayDetected(ActiveSessionIndex.ActiveSession session) {
+        recordEvent(ParkingEvent.Type.OVERSTAY, session.getCode(), 0, session.getUserId(), session.getSpotId(),
+            "due " + session.getEstimatedEndTime());
+        System.out.println("⏰ Parking code " + session.getCode() + " (spot " + session.getSpotId()
+            + ") passed its estimated end " + session.getEstimatedEndTime());
+        
+        ParkingSubscriber user;
+        try {
+            // Runs on the overstay thread - queue behind any gate transaction on the connection
+            user = withConnection(() -> getUserInfoById(session.getUserId()));
+        } catch (SQLException e) {
+            user = null;
         }
+        if (user != null && user.getEmail() != null) {
+            EmailService.sendParkingExpiredNotification(user.getEmail(), user.getFirstName(),
+                String.valueOf(session.getSpotId()));
+        }
+    }
+    
+    /**
+     * True if this server should run background jobs right now
+     */
+    public boolean isSchedulerLeader() {
+        return leaderLease != null && leaderLease.isLeader();
     }
 
     public Connection getConnection() {
         return conn;
     }
+    
+    /**
+     * Connection for staleness-tolerant reads such as parking history
+     */
+    private Connection readConn() {
+        return replicaRouter != null ? replicaRouter.readConnection(conn) : conn;
+    }
+    
+    /**
+     * The replica router owned by this controller; share it with other controllers
+     */
+    public ReadReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
 
     public void connectToDB(String path, String pass) {
         try {
@@ -123,7 +328,7 @@ public class ParkingController {
         }
 
         try {
-            conn = DriverManager.getConnection(path, "root", pass);
+            conn = QueryStats.instrument(DriverManager.getConnection(path, "root", pass));
             System.out.println("SQL connection succeed");
             successFlag = 1;
         } catch (SQLException ex) {
@@ -134,6 +339,135 @@ public class ParkingController {
         }
     }
 
+    /**
+     * Replaces a broken connection (called by the retry policy after link failures).
+     * Holds the connection lock, so the link is never swapped under another thread's statements.
+     */
+    public void reconnect() throws SQLException {
+        txLock.lock();
+        try {
+            try {
+                if (conn != null) {
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                // The old link is already broken
+            }
+            connectToDB(connectPath, dbPassword);
+            if (successFlag != 1) {
+                throw new SQLException("Reconnect to " + connectPath + " failed", "08001");
+            }
+        } finally {
+            txLock.unlock();
+        }
+    }
+
+    /**
+     * Runs work with exclusive use of the shared connection but without opening a transaction,
+     * so plain statements never run inside (and get rolled back with) another thread's transaction
+     */
+    <T> T withConnection(SqlRetryPolicy.SqlWork<T> work) throws SQLException {
+        txLock.lock();
+        try {
+            return work.run();
+        } finally {
+            txLock.unlock();
+        }
+    }
+
+    /**
+     * True if the current thread is inside executeTransaction
+     */
+    private boolean inTransaction() {
+        return txLock.isHeldByCurrentThread() && transactionOpen;
+    }
+
+    /**
+     * Runs a unit of work in one transaction and retries it from the start on
+     * transient failures. Nested calls join the caller's transaction.
+     */
+    <T> T executeTransaction(String operation, SqlRetryPolicy.SqlWork<T> work) throws SQLException {
+        if (inTransaction()) {
+            return work.run();
+        }
+        
+        List<Runnable> afterCommit = new ArrayList<>();
+        T result = retryPolicy.execute(operation, () -> {
+            txLock.lock();
+            try {
+                transactionOpen = true;
+                pendingAfterCommit.clear();
+                pendingOnRollback.clear();
+                conn.setAutoCommit(false);
+                try {
+                    T value = work.run();
+                    conn.commit();
+                    afterCommit.clear();
+                    afterCommit.addAll(pendingAfterCommit);
+                    return value;
+                } catch (NestedSqlFailure e) {
+                    rollbackQuietly();
+                    pendingOnRollback.forEach(Runnable::run);
+                    throw (SQLException) e.getCause();
+                } catch (SQLException | RuntimeException e) {
+                    rollbackQuietly();
+                    pendingOnRollback.forEach(Runnable::run);
+                    throw e;
+                } finally {
+                    try {
+                        conn.setAutoCommit(true);
+                    } catch (SQLException e) {
+                        System.out.println("Failed to reset auto-commit: " + e.getMessage());
+                    }
+                }
+            } finally {
+                transactionOpen = false;
+                pendingAfterCommit.clear();
+                pendingOnRollback.clear();
+                txLock.unlock();
+            }
+        });
+        
+        afterCommit.forEach(Runnable::run);
+        return result;
+    }
+    
+    /**
+     * Runs a gate operation transactionally; returns failureMessage if it ultimately fails
+     */
+    private String runOperation(String operation, SqlRetryPolicy.SqlWork<OperationResult> work, String failureMessage) {
+        boolean nested = inTransaction();
+        try {
+            OperationResult result = executeTransaction(operation, work);
+            if (result.afterCommit != null) {
+                if (nested) {
+                    pendingAfterCommit.add(result.afterCommit);
+                } else {
+                    result.afterCommit.run();
+                }
+            }
+            return result.message;
+        } catch (SQLException e) {
+            if (nested && SqlRetryPolicy.classify(e).isRetryable()) {
+                throw new NestedSqlFailure(e);
+            }
+            System.out.println("Error in " + operation + ": " + e.getMessage());
+            return failureMessage;
+        }
+    }
+    
+    private void rollbackQuietly() {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            System.out.println("Failed to rollback transaction: " + e.getMessage());
+        }
+    }
+    
+    public SqlRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
     /**
      * Start the automatic reservation cancellation service
      */
@@ -161,44 +495,136 @@ public class ParkingController {
         if (autoCancellationService != null) {
             autoCancellationService.shutdown();
         }
+        if (leaderLease != null) {
+            leaderLease.shutdown();
+        }
+        overstayDetection.shutdown();
+        if (reminderService != null) {
+            reminderService.shutdown();
+        }
+        if (replicaRouter != null) {
+            replicaRouter.shutdown();
+        }
+        if (occupancyReconciler != null) {
+            occupancyReconciler.shutdownNow();
+            checkpointRuntimeState();
+        }
+        if (eventJournal != null) {
+            eventJournal.close();
+        }
+        reservationTimers.stop();
+    }
+    
+    HashedTimerWheel getReservationTimers() {
+        return reservationTimers;
+    }
+    
+    public ParkingEventJournal getEventJournal() {
+        return eventJournal;
+    }
+    
+    /**
+     * Journals a state transition once it is committed (immediately outside a transaction)
+     */
+    void recordEvent(ParkingEvent.Type type, int parkingCode, int reservationCode, int userId, int spotId, String detail) {
+        ParkingEventJournal journal = eventJournal;
+        if (journal == null) {
+            return;
+        }
+        afterCommit(() -> journal.append(type, parkingCode, reservationCode, userId, spotId, detail));
+    }
+    
+    /**
+     * Runs action once the current transaction commits, or right away outside a transaction
+     */
+    private void afterCommit(Runnable action) {
+        if (inTransaction()) {
+            pendingAfterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+    
+    /**
+     * A preorder was placed: project it into the lot's capacity and arm its reminder and no-show deadline
+     */
+    private void reservationPlaced(int reservationCode, int spotID, LocalDateTime start, LocalDateTime end) {
+        bookCapacity(SpotIntervalIndex.reservationKey(reservationCode), spotID, start, end);
+        afterCommit(() -> {
+            if (autoCancellationService != null) {
+                autoCancellationService.scheduleDeadline(reservationCode, start);
+            }
+            if (reminderService != null) {
+                reminderService.scheduleReminder(reservationCode, start);
+            }
+        });
+    }
+    
+    /**
+     * A preorder left the preorder state (activated, cancelled or finished)
+     */
+    void reservationSettled(int reservationCode) {
+        releaseCapacity(SpotIntervalIndex.reservationKey(reservationCode));
+        afterCommit(() -> {
+            if (autoCancellationService != null) {
+                autoCancellationService.removeDeadline(reservationCode);
+            }
+            if (reminderService != null) {
+                reminderService.cancelReminder(reservationCode);
+            }
+        });
     }
 
     // ========== ALL YOUR EXISTING METHODS ==========
     
     public String checkLogin(String userName, String password) {
-        String qry = "SELECT UserTypeEnum FROM users WHERE UserName = ?";
+        ParkingSubscriber user = getUserInfo(userName);
+        return user != null ? user.getUserType() : "None";
+    }
+
+    /**
+     * Gets user information by userName (cached)
+     */
+    public ParkingSubscriber getUserInfo(String userName) {
+        ParkingSubscriber cached = userCache.getByUserName(userName);
+        if (cached != null) {
+            return cached;
+        }
+        
+        String qry = "SELECT * FROM users WHERE UserName = ?";
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
             stmt.setString(1, userName);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getString("UserTypeEnum");
+                    ParkingSubscriber user = mapUser(rs);
+                    userCache.put(user);
+                    return user;
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Error checking login: " + e.getMessage());
+            System.out.println("Error getting user info: " + e.getMessage());
         }
-        return "None";
+        return null;
     }
-
+    
     /**
-     * Gets user information by userName
+     * Gets user information by User_ID (cached)
      */
-    public ParkingSubscriber getUserInfo(String userName) {
-        String qry = "SELECT * FROM users WHERE UserName = ?";
+    private ParkingSubscriber getUserInfoById(int userID) {
+        ParkingSubscriber cached = userCache.getByUserId(userID);
+        if (cached != null) {
+            return cached;
+        }
+        
+        String qry = "SELECT * FROM users WHERE User_ID = ?";
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setString(1, userName);
+            stmt.setInt(1, userID);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    ParkingSubscriber user = new ParkingSubscriber();
-                    user.setSubscriberID(rs.getInt("User_ID"));
-                    user.setFirstName(rs.getString("Name"));
-                    user.setPhoneNumber(rs.getString("Phone"));
-                    user.setEmail(rs.getString("Email"));
-                    user.setCarNumber(rs.getString("CarNum"));
-                    user.setSubscriberCode(userName);
-                    user.setUserType(rs.getString("UserTypeEnum"));
+                    ParkingSubscriber user = mapUser(rs);
+                    userCache.put(user);
                     return user;
                 }
             }
@@ -207,11 +633,31 @@ public class ParkingController {
         }
         return null;
     }
+    
+    private ParkingSubscriber mapUser(ResultSet rs) throws SQLException {
+        ParkingSubscriber user = new ParkingSubscriber();
+        user.setSubscriberID(rs.getInt("User_ID"));
+        user.setFirstName(rs.getString("Name"));
+        user.setPhoneNumber(rs.getString("Phone"));
+        user.setEmail(rs.getString("Email"));
+        user.setCarNumber(rs.getString("CarNum"));
+        user.setSubscriberCode(rs.getString("UserName"));
+        user.setUserType(rs.getString("UserTypeEnum"));
+        return user;
+    }
+    
+    public UserCache getUserCache() {
+        return userCache;
+    }
 
     /**
      * Gets the number of available parking spots
      */
     public int getAvailableParkingSpots() {
+        if (spotOccupancy.isLoaded()) {
+            return spotOccupancy.getFreeCount();
+        }
+        
         String qry = "SELECT COUNT(*) as available FROM ParkingSpot WHERE isOccupied = false";
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
@@ -226,12 +672,99 @@ public class ParkingController {
         return 0;
     }
 
+    /**
+     * Gets the number of available parking spots in one lot
+     */
+    public int getAvailableParkingSpots(int lotId) {
+        if (spotOccupancy.isLoaded()) {
+            return spotOccupancy.getFreeCount(lotId);
+        }
+        
+        String qry = "SELECT COUNT(*) as available FROM ParkingSpot WHERE Lot_ID = ? AND isOccupied = false";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, lotId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("available");
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error getting available spots: " + e.getMessage());
+        }
+        return 0;
+    }
+    
+    /**
+     * Lists all parking lots with their current availability
+     */
+    public ArrayList<ParkingLot> getParkingLots() {
+        ArrayList<ParkingLot> lots = new ArrayList<>();
+        String qry = "SELECT Lot_ID, Name, Address, Levels FROM ParkingLot ORDER BY Lot_ID";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ParkingLot lot = new ParkingLot(rs.getInt("Lot_ID"), rs.getString("Name"),
+                        rs.getString("Address"), rs.getInt("Levels"));
+                    lot.setTotalSpots(getTotalSpots(lot.getLotID()));
+                    lot.setAvailableSpots(getAvailableParkingSpots(lot.getLotID()));
+                    lots.add(lot);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error getting parking lots: " + e.getMessage());
+        }
+        return lots;
+    }
+
     /**
      * Checks if reservation is possible (40% of spots must be available)
      */
     public boolean canMakeReservation() {
-        int availableSpots = getAvailableParkingSpots();
-        return availableSpots >= (TOTAL_PARKING_SPOTS * RESERVATION_THRESHOLD);
+        return canMakeReservation(DEFAULT_LOT_ID);
+    }
+    
+    /**
+     * Checks if reservation is possible in a lot (40% of its spots must be available)
+     */
+    public boolean canMakeReservation(int lotId) {
+        int availableSpots = getAvailableParkingSpots(lotId);
+        return availableSpots >= (getTotalSpots(lotId) * RESERVATION_THRESHOLD);
+    }
+    
+    /**
+     * Number of spots in a lot, counted in the database until the occupancy map is loaded
+     */
+    public int getTotalSpots(int lotId) {
+        if (spotOccupancy.isLoaded()) {
+            return spotOccupancy.getTotalSpots(lotId);
+        }
+        
+        String qry = "SELECT COUNT(*) FROM ParkingSpot WHERE Lot_ID = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, lotId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.out.println("Error counting parking spots: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    /**
+     * 40% rule for a specific window: at least 40% of the lot's spots must stay free in every
+     * 15-minute slot of [start, end), counting preorder reservations and open sessions.
+     * Falls back to the current-occupancy check until the capacity timelines are loaded.
+     */
+    public boolean canMakeReservation(int lotId, LocalDateTime start, LocalDateTime end) {
+        if (!capacityLoaded || !spotOccupancy.isLoaded()) {
+            return canMakeReservation(lotId);
+        }
+        int totalSpots = spotOccupancy.getTotalSpots(lotId);
+        int projectedFree = totalSpots - capacityOf(lotId).maxUsage(start, end);
+        return projectedFree >= (totalSpots * RESERVATION_THRESHOLD);
     }
 
     /**
@@ -239,14 +772,18 @@ public class ParkingController {
      * Format: "YYYY-MM-DD HH:MM" or "YYYY-MM-DD HH:MM:SS"
      */
     public String makeReservation(String userName, String reservationDateTimeStr) {
-        // Check if reservation is possible (40% rule)
-        if (!canMakeReservation()) {
-            return "Not enough available spots for reservation (need 40% available)";
-        }
-
+        return makeReservation(userName, reservationDateTimeStr, DEFAULT_LOT_ID);
+    }
+    
+    /**
+     * Makes a parking reservation in a specific lot
+     */
+    public String makeReservation(String userName, String reservationDateTimeStr, int lotId) {
+        LocalDateTime reservationDateTime;
+        ParkingSubscriber user;
         try {
             // Parse the datetime string
-            LocalDateTime reservationDateTime = parseDateTime(reservationDateTimeStr);
+            reservationDateTime = parseDateTime(reservationDateTimeStr);
             
             // Validate reservation is within allowed time range (24 hours to 7 days)
             LocalDateTime now = LocalDateTime.now();
@@ -257,21 +794,33 @@ public class ParkingController {
                 return "Reservation cannot be more than 7 days in advance";
             }
 
-            // Get user ID
-            int userID = getUserID(userName);
-            if (userID == -1) {
+            // Get user (one cached lookup serves both the ID and the confirmation email)
+            user = getUserInfo(userName);
+            if (user == null) {
                 return "User not found";
             }
+        } catch (Exception e) {
+            System.out.println("Error making reservation: " + e.getMessage());
+            return "Reservation failed: " + e.getMessage();
+        }
+        int userID = user.getSubscriberID();
 
+        // Calculate end time (default 4 hours)
+        LocalDateTime estimatedEndTime = reservationDateTime.plusHours(4);
+
+        return runOperation("makeReservation", () -> {
+            // Check if reservation is possible (40% rule) - inside the transaction so concurrent
+            // reservations cannot both pass against the same projection
+            if (!canMakeReservation(lotId, reservationDateTime, estimatedEndTime)) {
+                return new OperationResult("Not enough available spots for reservation (need 40% available)");
+            }
+            
             // Find available parking spot
-            int parkingSpotID = getAvailableParkingSpotID();
+            int parkingSpotID = getAvailableParkingSpotID(lotId);
             if (parkingSpotID == -1) {
-                return "No available parking spots";
+                return new OperationResult("No available parking spots");
             }
 
-            // Calculate end time (default 4 hours)
-            LocalDateTime estimatedEndTime = reservationDateTime.plusHours(4);
-
             // Create reservation with DATETIME
             String qry = """
                 INSERT INTO Reservations 
@@ -293,31 +842,31 @@ public class ParkingController {
                 try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         int reservationCode = generatedKeys.getInt(1);
-                        System.out.println("New preorder reservation created: " + reservationCode + 
-                                         " for " + reservationDateTime + " (15-min auto-cancel rule applies)");
-                        
-                        // Send email confirmation
-                        ParkingSubscriber user = getUserInfo(userName);
-                        if (user != null && user.getEmail() != null) {
-                            String formattedDateTime = reservationDateTime.format(
-                                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-                            EmailService.sendReservationConfirmation(
-                                user.getEmail(), user.getFirstName(), 
-                                String.valueOf(reservationCode), formattedDateTime, "Spot " + parkingSpotID
-                            );
-                        }
+                        recordEvent(ParkingEvent.Type.RESERVE, 0, reservationCode, userID, parkingSpotID,
+                            reservationDateTime.toString());
+                        reservationPlaced(reservationCode, parkingSpotID, reservationDateTime, estimatedEndTime);
+                        String formattedDateTime = reservationDateTime.format(
+                            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
                         
-                        return "Reservation confirmed for " + reservationDateTime.format(
-                            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) + 
-                            ". Confirmation code: " + reservationCode;
+                        return new OperationResult(
+                            "Reservation confirmed for " + formattedDateTime + ". Confirmation code: " + reservationCode,
+                            () -> {
+                                System.out.println("New preorder reservation created: " + reservationCode + 
+                                                 " for " + reservationDateTime + " (15-min auto-cancel rule applies)");
+                                
+                                // Send email confirmation
+                                if (user.getEmail() != null) {
+                                    EmailService.sendReservationConfirmation(
+                                        user.getEmail(), user.getFirstName(), 
+                                        String.valueOf(reservationCode), formattedDateTime, spotOccupancy.describe(parkingSpotID)
+                                    );
+                                }
+                            });
                     }
                 }
             }
-        } catch (Exception e) {
-            System.out.println("Error making reservation: " + e.getMessage());
-            return "Reservation failed: " + e.getMessage();
-        }
-        return "Reservation failed";
+            return new OperationResult("Reservation failed");
+        }, "Reservation failed");
     }
 
     /**
@@ -350,6 +899,13 @@ public class ParkingController {
      * Handles parking entry with subscriber code (immediate parking)
      */
     public String enterParking(String userName) {
+        return enterParking(userName, DEFAULT_LOT_ID);
+    }
+    
+    /**
+     * Handles immediate parking entry at a specific lot
+     */
+    public String enterParking(String userName, int lotId) {
         // Get user ID
         int userID = getUserID(userName);
         if (userID == -1) {
@@ -357,111 +913,84 @@ public class ParkingController {
         }
 
         // Check if spots are available
-        if (getAvailableParkingSpots() <= 0) {
+        if (getAvailableParkingSpots(lotId) <= 0) {
             return "No parking spots available";
         }
 
-        // Find available parking spot
-        int spotID = getAvailableParkingSpotID();
-        if (spotID == -1) {
-            return "No available parking spot found";
-        }
-
-        // Generate unique parking code
-        int parkingCode = generateParkingCode();
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime estimatedEnd = now.plusHours(4); // Default 4 hours
+        return runOperation("enterParking", () -> {
+            // Atomically claim an available parking spot
+            int spotID = claimAvailableSpot(lotId);
+            if (spotID == -1) {
+                return new OperationResult("No available parking spot found");
+            }
 
-        // Create parking info record
-        String qry = "INSERT INTO ParkingInfo (ParkingSpot_ID, User_ID, Date, Code, Actual_start_time, Estimated_start_time, Estimated_end_time, IsOrderedEnum, IsLate, IsExtended) VALUES (?, ?, ?, ?, ?, ?, ?, 'not ordered', false, false)";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setInt(1, spotID);
-            stmt.setInt(2, userID);
-            stmt.setDate(3, Date.valueOf(now.toLocalDate()));
-            stmt.setInt(4, parkingCode);
-            stmt.setTime(5, Time.valueOf(now.toLocalTime()));
-            stmt.setTime(6, Time.valueOf(now.toLocalTime()));
-            stmt.setTime(7, Time.valueOf(estimatedEnd.toLocalTime()));
-            stmt.executeUpdate();
+            // Generate unique parking code
+            int parkingCode = generateParkingCode();
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime estimatedEnd = now.plusHours(4); // Default 4 hours
 
-            // Mark parking spot as occupied
-            updateParkingSpotStatus(spotID, true);
+            // Create parking info record
+            insertParkingSession(spotID, userID, parkingCode, now, estimatedEnd, "not ordered", false);
             
-            return "Entry successful. Parking code: " + parkingCode + ". Spot: " + spotID;
-        } catch (SQLException e) {
-            System.out.println("Error handling entry: " + e.getMessage());
-            return "Entry failed";
-        }
+            return new OperationResult("Entry successful. Parking code: " + parkingCode + ". Spot: " + spotOccupancy.describe(spotID));
+        }, "Entry failed");
     }
 
     /**
      * Handles parking entry with reservation code - NOW SUPPORTS PREORDER->ACTIVE
      */
     public String enterParkingWithReservation(int reservationCode) {
-        // Check if reservation exists and is in preorder status
-        String checkQry = "SELECT r.*, u.User_ID FROM Reservations r JOIN users u ON r.User_ID = u.User_ID WHERE r.Reservation_code = ? AND r.statusEnum = 'preorder'";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
-            stmt.setInt(1, reservationCode);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Date reservationDate = rs.getDate("reservation_Date");
-                    int userID = rs.getInt("User_ID");
-                    int parkingSpotID = rs.getInt("assigned_parking_spot_id");
-                    
-                    // Check if reservation is for today
-                    LocalDate today = LocalDate.now();
-                    if (!reservationDate.toLocalDate().equals(today)) {
-                        if (reservationDate.toLocalDate().isBefore(today)) {
-                            // Cancel expired reservation
-                            cancelReservation(reservationCode);
-                            return "Reservation expired";
-                        } else {
-                            return "Reservation is for future date";
+        return runOperation("enterParkingWithReservation", () -> {
+            // Check if reservation exists and is in preorder status
+            String checkQry = "SELECT r.*, u.User_ID FROM Reservations r JOIN users u ON r.User_ID = u.User_ID WHERE r.Reservation_code = ? AND r.statusEnum = 'preorder'";
+            
+            try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
+                stmt.setInt(1, reservationCode);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        Date reservationDate = rs.getDate("reservation_Date");
+                        int userID = rs.getInt("User_ID");
+                        int parkingSpotID = rs.getInt("assigned_parking_spot_id");
+                        
+                        // Check if reservation is for today
+                        LocalDate today = LocalDate.now();
+                        if (!reservationDate.toLocalDate().equals(today)) {
+                            if (reservationDate.toLocalDate().isBefore(today)) {
+                                // Cancel expired reservation
+                                cancelReservation(reservationCode);
+                                return new OperationResult("Reservation expired");
+                            } else {
+                                return new OperationResult("Reservation is for future date");
+                            }
                         }
-                    }
 
-                    // Check if spot is still available
-                    if (!isParkingSpotAvailable(parkingSpotID)) {
-                        // Find another available spot
-                        parkingSpotID = getAvailableParkingSpotID();
-                        if (parkingSpotID == -1) {
-                            return "No available parking spots found";
+                        // Claim the reserved spot, or another one if it was taken meanwhile
+                        if (!claimSpot(parkingSpotID)) {
+                            parkingSpotID = claimAvailableSpot(lotOfSpot(parkingSpotID));
+                            if (parkingSpotID == -1) {
+                                return new OperationResult("No available parking spots found");
+                            }
                         }
-                    }
 
-                    // Generate parking code
-                    int parkingCode = generateParkingCode();
-                    LocalDateTime now = LocalDateTime.now();
-                    LocalDateTime estimatedEnd = now.plusHours(4);
+                        // Generate parking code
+                        int parkingCode = generateParkingCode();
+                        LocalDateTime now = LocalDateTime.now();
+                        LocalDateTime estimatedEnd = now.plusHours(4);
 
-                    // Create parking info record
-                    String insertQry = "INSERT INTO ParkingInfo (ParkingSpot_ID, User_ID, Date, Code, Actual_start_time, Estimated_start_time, Estimated_end_time, IsOrderedEnum, IsLate, IsExtended) VALUES (?, ?, ?, ?, ?, ?, ?, 'ordered', false, false)";
-                    
-                    try (PreparedStatement insertStmt = conn.prepareStatement(insertQry)) {
-                        insertStmt.setInt(1, parkingSpotID);
-                        insertStmt.setInt(2, userID);
-                        insertStmt.setDate(3, Date.valueOf(now.toLocalDate()));
-                        insertStmt.setInt(4, parkingCode);
-                        insertStmt.setTime(5, Time.valueOf(now.toLocalTime()));
-                        insertStmt.setTime(6, Time.valueOf(now.toLocalTime()));
-                        insertStmt.setTime(7, Time.valueOf(estimatedEnd.toLocalTime()));
-                        insertStmt.executeUpdate();
+                        // Create parking info record
+                        insertParkingSession(parkingSpotID, userID, parkingCode, now, estimatedEnd, "ordered", false);
 
-                        // Mark parking spot as occupied and change reservation to active
-                        updateParkingSpotStatus(parkingSpotID, true);
+                        // Change reservation to active
                         updateReservationStatus(reservationCode, "active");
                         
-                        System.out.println("Reservation " + reservationCode + " activated (preorder → active)");
-                        return "Entry successful! Reservation activated. Parking code: " + parkingCode + ". Spot: " + parkingSpotID;
+                        return new OperationResult(
+                            "Entry successful! Reservation activated. Parking code: " + parkingCode + ". Spot: " + spotOccupancy.describe(parkingSpotID),
+                            () -> System.out.println("Reservation " + reservationCode + " activated (preorder → active)"));
                     }
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Error handling reservation entry: " + e.getMessage());
-        }
-        return "Invalid reservation code or reservation not in preorder status";
+            return new OperationResult("Invalid reservation code or reservation not in preorder status");
+        }, "Invalid reservation code or reservation not in preorder status");
     }
     
     /**
@@ -515,15 +1044,19 @@ public class ParkingController {
         // Insert new subscriber
         String insertQry = "INSERT INTO users (UserName, Name, Phone, Email, CarNum, UserTypeEnum) VALUES (?, ?, ?, ?, ?, 'sub')";
         
-        try (PreparedStatement stmt = conn.prepareStatement(insertQry)) {
-            stmt.setString(1, userName);
-            stmt.setString(2, name);
-            stmt.setString(3, phone);
-            stmt.setString(4, email);
-            stmt.setString(5, carNumber);
-            
-            int rowsInserted = stmt.executeUpdate();
+        try {
+            int rowsInserted = executeTransaction("registerSubscriber", () -> {
+                try (PreparedStatement stmt = conn.prepareStatement(insertQry)) {
+                    stmt.setString(1, userName);
+                    stmt.setString(2, name);
+                    stmt.setString(3, phone);
+                    stmt.setString(4, email);
+                    stmt.setString(5, carNumber);
+                    return stmt.executeUpdate();
+                }
+            });
             if (rowsInserted > 0) {
+                userCache.invalidate(userName);
                 System.out.println("New subscriber registered: " + userName);
                 
                 // 🆕 SEND EMAIL NOTIFICATIONS
@@ -568,59 +1101,64 @@ public class ParkingController {
      * Handles parking exit - NOW SUPPORTS FINISHING RESERVATIONS
      */
     public String exitParking(String parkingCodeStr) {
+        int parkingCode;
         try {
-            int parkingCode = Integer.parseInt(parkingCodeStr);
-            String qry = "SELECT pi.*, ps.ParkingSpot_ID FROM ParkingInfo pi JOIN ParkingSpot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID WHERE pi.Code = ? AND pi.Actual_end_time IS NULL";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-                stmt.setInt(1, parkingCode);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        int parkingInfoID = rs.getInt("ParkingInfo_ID");
-                        int spotID = rs.getInt("ParkingSpot_ID");
-                        Time estimatedEndTime = rs.getTime("Estimated_end_time");
-                        int userID = rs.getInt("User_ID");
-                        String orderType = rs.getString("IsOrderedEnum");
-                        
-                        LocalTime now = LocalTime.now();
-                        LocalTime estimatedEnd = estimatedEndTime.toLocalTime();
-                        
-                        // Check if parking exceeded estimated time
-                        boolean isLate = now.isAfter(estimatedEnd);
-                        
-                        // Update parking info with exit time
-                        String updateQry = "UPDATE ParkingInfo SET Actual_end_time = ?, IsLate = ? WHERE ParkingInfo_ID = ?";
-                        
-                        try (PreparedStatement updateStmt = conn.prepareStatement(updateQry)) {
-                            updateStmt.setTime(1, Time.valueOf(now));
-                            updateStmt.setBoolean(2, isLate);
-                            updateStmt.setInt(3, parkingInfoID);
-                            updateStmt.executeUpdate();
-                            
-                            // Free the parking spot
-                            updateParkingSpotStatus(spotID, false);
-                            
-                            // If this was from a reservation, finish the reservation
-                            if ("ordered".equals(orderType)) {
-                                finishReservationBySpotAndUser(spotID, userID);
-                            }
-                            
-                            if (isLate) {
-                                sendLateExitNotification(userID);
-                                return "Exit successful. You were late - please arrive on time for future reservations";
-                            }
-                            
-                            return "Exit successful. Thank you for using ParkB!";
-                        }
-                    }
-                }
-            }
+            parkingCode = Integer.parseInt(parkingCodeStr);
         } catch (NumberFormatException e) {
             return "Invalid parking code format";
-        } catch (SQLException e) {
-            System.out.println("Error handling exit: " + e.getMessage());
         }
-        return "Invalid parking code or already exited";
+        
+        return runOperation("exitParking", () -> {
+            ActiveSessionIndex.ActiveSession session = findActiveSession(parkingCode);
+            if (session == null) {
+                return new OperationResult("Invalid parking code or already exited");
+            }
+            
+            int spotID = session.getSpotId();
+            int userID = session.getUserId();
+            LocalTime now = LocalTime.now();
+            
+            // Check if parking exceeded estimated time
+            boolean isLate = now.isAfter(session.getEstimatedEndTime());
+            
+            // Update parking info with exit time
+            String updateQry = "UPDATE ParkingInfo SET Actual_end_time = ?, IsLate = ? WHERE ParkingInfo_ID = ? AND Actual_end_time IS NULL";
+            
+            try (PreparedStatement updateStmt = conn.prepareStatement(updateQry)) {
+                updateStmt.setTime(1, Time.valueOf(now));
+                updateStmt.setBoolean(2, isLate);
+                updateStmt.setInt(3, session.getParkingInfoId());
+                if (updateStmt.executeUpdate() == 0) {
+                    // Closed behind our back - drop the stale entry
+                    activeSessions.remove(parkingCode);
+                    overstayDetection.untrack(parkingCode);
+                    return new OperationResult("Invalid parking code or already exited");
+                }
+            }
+            untrackSession(parkingCode);
+            recordEvent(ParkingEvent.Type.EXIT, parkingCode, 0, userID, spotID, isLate ? "late" : "");
+            releaseCapacity(SpotIntervalIndex.sessionKey(parkingCode));
+            
+            // Free the parking spot
+            updateParkingSpotStatus(spotID, false);
+            
+            // If this was from a reservation, finish the reservation
+            if ("ordered".equals(session.getOrderType())) {
+                finishReservationBySpotAndUser(spotID, userID);
+            }
+            
+            if (isLate) {
+                return new OperationResult(
+                    "Exit successful. You were late - please arrive on time for future reservations",
+                    () -> {
+                        codeAllocator.release(parkingCode);
+                        sendLateExitNotification(userID);
+                    });
+            }
+            
+            return new OperationResult("Exit successful. Thank you for using ParkB!",
+                () -> codeAllocator.release(parkingCode));
+        }, "Invalid parking code or already exited");
     }
 
     /**
@@ -631,70 +1169,76 @@ public class ParkingController {
             return "Can only extend parking by 1-4 hours";
         }
         
+        int parkingCode;
         try {
-            int parkingCode = Integer.parseInt(parkingCodeStr);
+            parkingCode = Integer.parseInt(parkingCodeStr);
+        } catch (NumberFormatException e) {
+            return "Invalid parking code format";
+        }
+        
+        return runOperation("extendParkingTime", () -> {
+            ActiveSessionIndex.ActiveSession session = findActiveSession(parkingCode);
+            if (session == null) {
+                return new OperationResult("Invalid parking code or parking session not active");
+            }
             
-            // 🔧 FIXED: Get user info for email notification
-            String getUserQry = "SELECT pi.*, u.Email, u.Name FROM ParkingInfo pi JOIN users u ON pi.User_ID = u.User_ID WHERE pi.Code = ? AND pi.Actual_end_time IS NULL";
+            LocalTime newEstimatedEnd = session.getEstimatedEndTime().plusHours(additionalHours);
             
-            try (PreparedStatement stmt = conn.prepareStatement(getUserQry)) {
-                stmt.setInt(1, parkingCode);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        Time currentEstimatedEnd = rs.getTime("Estimated_end_time");
-                        String userEmail = rs.getString("Email");
-                        String userName = rs.getString("Name");
-                        
-                        LocalTime newEstimatedEnd = currentEstimatedEnd.toLocalTime().plusHours(additionalHours);
-                        
-                        String updateQry = "UPDATE ParkingInfo SET Estimated_end_time = ?, IsExtended = true WHERE Code = ?";
-                        
-                        try (PreparedStatement updateStmt = conn.prepareStatement(updateQry)) {
-                            updateStmt.setTime(1, Time.valueOf(newEstimatedEnd));
-                            updateStmt.setInt(2, parkingCode);
-                            updateStmt.executeUpdate();
-                            
-                            // 🆕 SEND EMAIL NOTIFICATION
-                            if (userEmail != null && userName != null) {
-                                EmailService.sendExtensionConfirmation(
-                                    userEmail, userName, parkingCodeStr, 
-                                    additionalHours, newEstimatedEnd.toString()
-                                );
-                            }
-                            
-                            return "Parking time extended by " + additionalHours + " hours until " + newEstimatedEnd;
-                        }
-                    }
+            String updateQry = "UPDATE ParkingInfo SET Estimated_end_time = ?, IsExtended = true WHERE ParkingInfo_ID = ? AND Actual_end_time IS NULL";
+            
+            try (PreparedStatement updateStmt = conn.prepareStatement(updateQry)) {
+                updateStmt.setTime(1, Time.valueOf(newEstimatedEnd));
+                updateStmt.setInt(2, session.getParkingInfoId());
+                if (updateStmt.executeUpdate() == 0) {
+                    activeSessions.remove(parkingCode);
+                    overstayDetection.untrack(parkingCode);
+                    return new OperationResult("Invalid parking code or parking session not active");
                 }
             }
-        } catch (NumberFormatException e) {
-            return "Invalid parking code format";
-        } catch (SQLException e) {
-            System.out.println("Error extending parking time: " + e.getMessage());
-        }
-        return "Invalid parking code or parking session not active";
+            trackSession(session.withEstimatedEndTime(newEstimatedEnd));
+            extendSessionCapacity(session, newEstimatedEnd);
+            recordEvent(ParkingEvent.Type.EXTEND, parkingCode, 0, session.getUserId(), session.getSpotId(),
+                "until " + newEstimatedEnd);
+            
+            // 🔧 FIXED: Get user info for email notification
+            ParkingSubscriber user = getUserInfoById(session.getUserId());
+            String userEmail = user != null ? user.getEmail() : null;
+            String userName = user != null ? user.getFirstName() : null;
+            
+            return new OperationResult(
+                "Parking time extended by " + additionalHours + " hours until " + newEstimatedEnd,
+                () -> {
+                    // 🆕 SEND EMAIL NOTIFICATION
+                    if (userEmail != null && userName != null) {
+                        EmailService.sendExtensionConfirmation(
+                            userEmail, userName, parkingCodeStr, 
+                            additionalHours, newEstimatedEnd.toString()
+                        );
+                    }
+                });
+        }, "Invalid parking code or parking session not active");
     }
 
     /**
      * Sends lost parking code to user - 🔧 FIXED COMPILATION ERRORS
      */
     public String sendLostParkingCode(String userName) {
-        String qry = "SELECT pi.Code, u.Email, u.Phone, u.Name FROM ParkingInfo pi JOIN users u ON pi.User_ID = u.User_ID WHERE u.UserName = ? AND pi.Actual_end_time IS NULL";
+        ParkingSubscriber user = getUserInfo(userName);
+        if (user == null) {
+            return "No active parking session found";
+        }
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setString(1, userName);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int parkingCode = rs.getInt("Code");
-                    String email = rs.getString("Email");
-                    String phone = rs.getString("Phone");
-                    String name = rs.getString("Name"); // 🔧 FIXED: Now getting name from query
-                    
-                    // 🆕 SEND EMAIL NOTIFICATION
-                    EmailService.sendParkingCodeRecovery(email, name, String.valueOf(parkingCode));
-                    
-                    return String.valueOf(parkingCode);
-                }
+        try {
+            ActiveSessionIndex.ActiveSession session = activeSessions.isLoaded()
+                ? activeSessions.getByUser(user.getSubscriberID())
+                : queryActiveSession("pi.User_ID = ?", user.getSubscriberID());
+            if (session != null) {
+                String parkingCode = String.valueOf(session.getCode());
+                
+                // 🆕 SEND EMAIL NOTIFICATION
+                EmailService.sendParkingCodeRecovery(user.getEmail(), user.getFirstName(), parkingCode);
+                
+                return parkingCode;
             }
         } catch (SQLException e) {
             System.out.println("Error sending lost code: " + e.getMessage());
@@ -709,7 +1253,7 @@ public class ParkingController {
         ArrayList<ParkingOrder> history = new ArrayList<>();
         String qry = "SELECT pi.*, ps.ParkingSpot_ID FROM ParkingInfo pi JOIN users u ON pi.User_ID = u.User_ID JOIN ParkingSpot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID WHERE u.UserName = ? ORDER BY pi.Date DESC, pi.Actual_start_time DESC";
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+        try (PreparedStatement stmt = readConn().prepareStatement(qry)) {
             stmt.setString(1, userName);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -717,7 +1261,7 @@ public class ParkingController {
                     order.setOrderID(rs.getInt("ParkingInfo_ID"));
                     order.setParkingCode(String.valueOf(rs.getInt("Code")));
                     order.setOrderType(rs.getString("IsOrderedEnum"));
-                    order.setSpotNumber("Spot " + rs.getInt("ParkingSpot_ID"));
+                    order.setSpotNumber(spotOccupancy.describe(rs.getInt("ParkingSpot_ID")));
                     
                     // Convert SQL Date and Time to LocalDateTime
                     Date date = rs.getDate("Date");
@@ -752,6 +1296,25 @@ public class ParkingController {
      * Gets all active parking sessions (for attendant view)
      */
     public ArrayList<ParkingOrder> getActiveParkings() {
+        if (activeSessions.isLoaded()) {
+            ArrayList<ParkingOrder> activeParkings = new ArrayList<>();
+            for (ActiveSessionIndex.ActiveSession session : activeSessions.getAll()) {
+                ParkingSubscriber user = getUserInfoById(session.getUserId());
+                
+                ParkingOrder order = new ParkingOrder();
+                order.setOrderID(session.getParkingInfoId());
+                order.setParkingCode(String.valueOf(session.getCode()));
+                order.setOrderType(session.getOrderType());
+                order.setSubscriberName(user != null ? user.getFirstName() : null);
+                order.setSpotNumber(spotOccupancy.describe(session.getSpotId()));
+                order.setEntryTime(LocalDateTime.of(session.getDate(), session.getStartTime()));
+                order.setExpectedExitTime(LocalDateTime.of(session.getDate(), session.getEstimatedEndTime()));
+                order.setStatus("Active");
+                activeParkings.add(order);
+            }
+            return activeParkings;
+        }
+        
         ArrayList<ParkingOrder> activeParkings = new ArrayList<>();
         String qry = "SELECT pi.*, u.Name, ps.ParkingSpot_ID FROM ParkingInfo pi JOIN users u ON pi.User_ID = u.User_ID JOIN ParkingSpot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID WHERE pi.Actual_end_time IS NULL ORDER BY pi.Actual_start_time";
         
@@ -763,7 +1326,7 @@ public class ParkingController {
                     order.setParkingCode(String.valueOf(rs.getInt("Code")));
                     order.setOrderType(rs.getString("IsOrderedEnum"));
                     order.setSubscriberName(rs.getString("Name"));
-                    order.setSpotNumber("Spot " + rs.getInt("ParkingSpot_ID"));
+                    order.setSpotNumber(spotOccupancy.describe(rs.getInt("ParkingSpot_ID")));
                     
                     // Convert SQL Date and Time to LocalDateTime
                     Date date = rs.getDate("Date");
@@ -801,65 +1364,67 @@ public class ParkingController {
         String phone = data[1];
         String email = data[2];
         
-        String qry = "UPDATE users SET Phone = ?, Email = ? WHERE UserName = ?";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setString(1, phone);
-            stmt.setString(2, email);
-            stmt.setString(3, userName);
+        return runOperation("updateSubscriberInfo", () -> {
+            String qry = "UPDATE users SET Phone = ?, Email = ? WHERE UserName = ?";
             
-            int rowsUpdated = stmt.executeUpdate();
-            if (rowsUpdated > 0) {
-                return "Subscriber information updated successfully";
+            try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+                stmt.setString(1, phone);
+                stmt.setString(2, email);
+                stmt.setString(3, userName);
+                
+                int rowsUpdated = stmt.executeUpdate();
+                userCache.invalidate(userName);
+                if (rowsUpdated > 0) {
+                    return new OperationResult("Subscriber information updated successfully");
+                }
             }
-        } catch (SQLException e) {
-            System.out.println("Error updating subscriber info: " + e.getMessage());
-        }
-        return "Failed to update subscriber information";
+            return new OperationResult("Failed to update subscriber information");
+        }, "Failed to update subscriber information");
     }
 
     /**
      * Cancels a reservation - 🔧 FIXED COMPILATION ERRORS
      */
     public String cancelReservation(int reservationCode) {
-        // 🔧 FIXED: Get user info before cancelling for email notification
-        String getUserQry = "SELECT u.Email, u.Name FROM Reservations r JOIN users u ON r.User_ID = u.User_ID WHERE r.Reservation_code = ?";
-        String userEmail = null;
-        String userName = null;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(getUserQry)) {
-            stmt.setInt(1, reservationCode);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    userEmail = rs.getString("Email");
-                    userName = rs.getString("Name");
+        return runOperation("cancelReservation", () -> {
+            // 🔧 FIXED: Get user info before cancelling for email notification
+            String getUserQry = "SELECT u.Email, u.Name FROM Reservations r JOIN users u ON r.User_ID = u.User_ID WHERE r.Reservation_code = ?";
+            String userEmail = null;
+            String userName = null;
+            
+            try (PreparedStatement stmt = conn.prepareStatement(getUserQry)) {
+                stmt.setInt(1, reservationCode);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        userEmail = rs.getString("Email");
+                        userName = rs.getString("Name");
+                    }
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Error getting user info for cancellation: " + e.getMessage());
-        }
-        
-        String qry = "UPDATE Reservations SET statusEnum = 'cancelled' WHERE Reservation_code = ? AND statusEnum IN ('preorder', 'active')";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setInt(1, reservationCode);
-            int rowsUpdated = stmt.executeUpdate();
             
-            if (rowsUpdated > 0) {
-                // Also free up the spot if it was assigned
-                freeSpotForReservation(reservationCode);
+            String qry = "UPDATE Reservations SET statusEnum = 'cancelled' WHERE Reservation_code = ? AND statusEnum IN ('preorder', 'active')";
+            
+            try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+                stmt.setInt(1, reservationCode);
+                int rowsUpdated = stmt.executeUpdate();
                 
-                // 🆕 SEND EMAIL NOTIFICATION
-                if (userEmail != null && userName != null) {
-                    EmailService.sendReservationCancelled(userEmail, userName, String.valueOf(reservationCode));
+                if (rowsUpdated > 0) {
+                    recordEvent(ParkingEvent.Type.CANCEL, 0, reservationCode, 0, 0, "cancelled");
+                    // The spot stays as it is: a preorder never occupied it and an active one's car is still parked
+                    reservationSettled(reservationCode);
+                    
+                    String email = userEmail;
+                    String name = userName;
+                    return new OperationResult("Reservation cancelled successfully", () -> {
+                        // 🆕 SEND EMAIL NOTIFICATION
+                        if (email != null && name != null) {
+                            EmailService.sendReservationCancelled(email, name, String.valueOf(reservationCode));
+                        }
+                    });
                 }
-                
-                return "Reservation cancelled successfully";
             }
-        } catch (SQLException e) {
-            System.out.println("Error cancelling reservation: " + e.getMessage());
-        }
-        return "Reservation not found or already cancelled/finished";
+            return new OperationResult("Reservation not found or already cancelled/finished");
+        }, "Reservation not found or already cancelled/finished");
     }
 
     /**
@@ -874,56 +1439,623 @@ public class ParkingController {
      */
     public void initializeParkingSpots() {
         try {
-            // Check if spots already exist
-            String checkQry = "SELECT COUNT(*) FROM ParkingSpot";
+            // Lots without any spots yet
+            String checkQry = """
+                SELECT l.Lot_ID, COUNT(s.ParkingSpot_ID) AS spots
+                FROM ParkingLot l
+                LEFT JOIN ParkingSpot s ON s.Lot_ID = l.Lot_ID
+                GROUP BY l.Lot_ID
+                """;
+            List<Integer> emptyLots = new ArrayList<>();
+            int existing = 0;
             try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
                 try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next() && rs.getInt(1) == 0) {
-                        // Initialize parking spots - AUTO_INCREMENT will handle ParkingSpot_ID
-                        String insertQry = "INSERT INTO ParkingSpot (isOccupied) VALUES (false)";
-                        try (PreparedStatement insertStmt = conn.prepareStatement(insertQry)) {
-                            for (int i = 1; i <= TOTAL_PARKING_SPOTS; i++) {
-                                insertStmt.executeUpdate();
-                            }
+                    while (rs.next()) {
+                        if (rs.getInt("spots") == 0) {
+                            emptyLots.add(rs.getInt("Lot_ID"));
                         }
-                        System.out.println("Successfully initialized " + TOTAL_PARKING_SPOTS + " parking spots with AUTO_INCREMENT");
-                    } else {
-                        System.out.println("Parking spots already exist: " + rs.getInt(1) + " spots found");
+                        existing += rs.getInt("spots");
                     }
                 }
             }
+            
+            // AUTO_INCREMENT will handle ParkingSpot_ID
+            String insertQry = "INSERT INTO ParkingSpot (isOccupied, Lot_ID) VALUES (false, ?)";
+            try (PreparedStatement insertStmt = conn.prepareStatement(insertQry)) {
+                for (int lotId : emptyLots) {
+                    for (int i = 1; i <= SPOTS_PER_NEW_LOT; i++) {
+                        insertStmt.setInt(1, lotId);
+                        insertStmt.addBatch();
+                    }
+                    insertStmt.executeBatch();
+                    System.out.println("Successfully initialized " + SPOTS_PER_NEW_LOT + " parking spots in lot " + lotId);
+                }
+            }
+            if (existing > 0) {
+                System.out.println("Parking spots already exist: " + existing + " spots found");
+            }
         } catch (SQLException e) {
             System.out.println("Error initializing parking spots: " + e.getMessage());
         }
     }
 
-    // ========== HELPER METHODS ==========
+    /**
+     * Loads in-memory state derived from the database; call after schema migration
+     */
+    public void loadRuntimeState() {
+        if (!restoreRuntimeState()) {
+            loadActiveParkingCodes();
+            loadSpotOccupancy();
+            loadCapacityTimelines();
+        }
+        overstayDetection.reload(activeSessions.getAll());
+        
+        if (occupancyReconciler == null) {
+            occupancyReconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "parkb-occupancy-reconciler");
+                t.setDaemon(true);
+                return t;
+            });
+            occupancyReconciler.scheduleAtFixedRate(this::reconcileSpotOccupancy,
+                OCCUPANCY_RECONCILE_MINUTES, OCCUPANCY_RECONCILE_MINUTES, TimeUnit.MINUTES);
+            occupancyReconciler.scheduleAtFixedRate(this::checkpointRuntimeState,
+                SNAPSHOT_MINUTES, SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+        }
+    }
     
-    private int generateParkingCode() {
-        Random random = new Random();
-        return 100000 + random.nextInt(900000);
+    /**
+     * Writes occupancy, open sessions and preorder bookings to the snapshot file, stamped with the database clock
+     */
+    void checkpointRuntimeState() {
+        if (!spotOccupancy.isLoaded() || !activeSessions.isLoaded() || !capacityLoaded) {
+            return;
+        }
+        
+        RuntimeSnapshot snapshot;
+        // Holding the transaction lock guarantees the copy matches committed rows up to the mark
+        txLock.lock();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW(3)");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            long highWaterMillis = rs.getTimestamp(1).getTime();
+            
+            List<RuntimeSnapshot.SpotState> spots = new ArrayList<>();
+            for (ShardedSpotOccupancy.SpotLocation location : spotOccupancy.getLocations()) {
+                spots.add(new RuntimeSnapshot.SpotState(location.getSpotId(), location.getLotId(),
+                    location.getLevel(), location.getZone(), !spotOccupancy.isFree(location.getSpotId())));
+            }
+            List<RuntimeSnapshot.CapacityBooking> bookings = new ArrayList<>();
+            for (Map.Entry<Integer, CapacityTimeline> lot : lotCapacity.entrySet()) {
+                for (Map.Entry<String, long[]> booking : lot.getValue().getBookings().entrySet()) {
+                    if (!SpotIntervalIndex.isSessionKey(booking.getKey())) {
+                        bookings.add(new RuntimeSnapshot.CapacityBooking(lot.getKey(),
+                            SpotIntervalIndex.reservationCodeOf(booking.getKey()), booking.getValue()[0],
+                            booking.getValue()[1]));
+                    }
+                }
+            }
+            snapshot = new RuntimeSnapshot(highWaterMillis, spots, activeSessions.getAll(), bookings);
+        } catch (SQLException e) {
+            System.out.println("Error checkpointing runtime state: " + e.getMessage());
+            return;
+        } finally {
+            txLock.unlock();
+        }
+        
+        try {
+            snapshot.write(snapshotFile);
+        } catch (Exception e) {
+            System.out.println("Error writing runtime snapshot: " + e.getMessage());
+        }
     }
-
-    private int getUserID(String userName) {
-        String qry = "SELECT User_ID FROM users WHERE UserName = ?";
+    
+    /**
+     * Loads occupancy, open sessions and capacity timelines from the snapshot file plus the rows changed since its mark
+     *
+     * @return false if there is no usable snapshot and a full load is needed
+     */
+    private boolean restoreRuntimeState() {
+        long started = System.nanoTime();
+        RuntimeSnapshot snapshot = RuntimeSnapshot.read(snapshotFile);
+        if (snapshot == null) {
+            return false;
+        }
+        Timestamp since = new Timestamp(snapshot.getHighWaterMillis() - SNAPSHOT_REPLAY_MARGIN_MILLIS);
         
+        txLock.lock();
+        try {
+            TreeMap<Integer, RuntimeSnapshot.SpotState> spots = new TreeMap<>();
+            for (RuntimeSnapshot.SpotState spot : snapshot.getSpots()) {
+                spots.put(spot.getSpotId(), spot);
+            }
+            Map<Integer, ActiveSessionIndex.ActiveSession> sessions = new LinkedHashMap<>();
+            for (ActiveSessionIndex.ActiveSession session : snapshot.getSessions()) {
+                sessions.put(session.getParkingInfoId(), session);
+            }
+            
+            int replayed = 0;
+            String spotsQry = "SELECT ParkingSpot_ID, Lot_ID, Level, Zone, isOccupied FROM ParkingSpot WHERE Updated_at >= ?";
+            try (PreparedStatement stmt = conn.prepareStatement(spotsQry)) {
+                stmt.setTimestamp(1, since);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int spotId = rs.getInt("ParkingSpot_ID");
+                        spots.put(spotId, new RuntimeSnapshot.SpotState(spotId, rs.getInt("Lot_ID"),
+                            rs.getInt("Level"), rs.getString("Zone"), rs.getBoolean("isOccupied")));
+                        replayed++;
+                    }
+                }
+            }
+            String sessionsQry = "SELECT * FROM ParkingInfo WHERE Updated_at >= ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sessionsQry)) {
+                stmt.setTimestamp(1, since);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getTime("Actual_end_time") == null) {
+                            sessions.put(rs.getInt("ParkingInfo_ID"), mapActiveSession(rs));
+                        } else {
+                            sessions.remove(rs.getInt("ParkingInfo_ID"));
+                        }
+                        replayed++;
+                    }
+                }
+            }
+            
+            int maxSpotId = spots.isEmpty() ? 0 : spots.lastKey();
+            spotOccupancy.reset(maxSpotId);
+            for (RuntimeSnapshot.SpotState spot : spots.values()) {
+                spotOccupancy.define(spot.getSpotId(), spot.getLotId(), spot.getLevel(), spot.getZone(), spot.isOccupied());
+            }
+            spotOccupancy.markLoaded();
+            registerLotGauges();
+            
+            codeAllocator.clear();
+            activeSessions.clear();
+            for (ActiveSessionIndex.ActiveSession session : sessions.values()) {
+                codeAllocator.markLive(session.getCode());
+                activeSessions.put(session);
+            }
+            activeSessions.markLoaded();
+            
+            capacityLoaded = false;
+            for (CapacityTimeline timeline : lotCapacity.values()) {
+                timeline.clear();
+            }
+            for (RuntimeSnapshot.CapacityBooking booking : snapshot.getBookings()) {
+                capacityOf(booking.getLotId()).add(SpotIntervalIndex.reservationKey(booking.getReservationCode()),
+                    SpotIntervalIndex.fromSlot(booking.getStartSlot()), SpotIntervalIndex.fromSlot(booking.getEndSlot()));
+            }
+            String reservationsQry = """
+                SELECT Reservation_code, COALESCE(assigned_parking_spot_id, parking_ID) AS spot_id, statusEnum,
+                       reservation_Date, reservation_start_time, reservation_end_time
+                FROM Reservations
+                WHERE Updated_at >= ?
+                """;
+            try (PreparedStatement stmt = conn.prepareStatement(reservationsQry)) {
+                stmt.setTimestamp(1, since);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    LocalDate horizonStart = LocalDate.now().minusDays(1);
+                    while (rs.next()) {
+                        String key = SpotIntervalIndex.reservationKey(rs.getInt("Reservation_code"));
+                        for (CapacityTimeline timeline : lotCapacity.values()) {
+                            timeline.remove(key);
+                        }
+                        if ("preorder".equals(rs.getString("statusEnum"))
+                                && !rs.getDate("reservation_Date").toLocalDate().isBefore(horizonStart)) {
+                            bookReservationRow(rs);
+                        }
+                        replayed++;
+                    }
+                }
+            }
+            bookOpenSessions();
+            capacityLoaded = true;
+            
+            System.out.println("Restored runtime state from " + snapshotFile + " (" + spotOccupancy.getTotalSpots()
+                + " spots, " + activeSessions.size() + " open sessions, " + snapshot.getBookings().size()
+                + " preorders, " + replayed + " rows replayed) in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms");
+            return true;
+        } catch (SQLException e) {
+            // e.g. Updated_at missing because migrations failed - fall back to a full load
+            System.out.println("Error restoring runtime snapshot: " + e.getMessage());
+            return false;
+        } finally {
+            txLock.unlock();
+        }
+    }
+    
+    /**
+     * Rebuilds the occupancy map from the ParkingSpot table
+     */
+    private void loadSpotOccupancy() {
+        String qry = "SELECT ParkingSpot_ID, Lot_ID, Level, Zone, isOccupied FROM ParkingSpot ORDER BY ParkingSpot_ID DESC";
+        
+        txLock.lock();
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setString(1, userName);
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("User_ID");
+                boolean first = true;
+                while (rs.next()) {
+                    if (first) {
+                        // Highest ID comes first and sizes the map
+                        spotOccupancy.reset(rs.getInt("ParkingSpot_ID"));
+                        first = false;
+                    }
+                    spotOccupancy.define(rs.getInt("ParkingSpot_ID"), rs.getInt("Lot_ID"), rs.getInt("Level"),
+                        rs.getString("Zone"), rs.getBoolean("isOccupied"));
+                }
+                if (first) {
+                    spotOccupancy.reset(0);
                 }
+                spotOccupancy.markLoaded();
+                registerLotGauges();
+                System.out.println("Loaded occupancy for " + spotOccupancy.getTotalSpots() + " parking spots in "
+                    + spotOccupancy.getLotIds().size() + " lots (" + spotOccupancy.getFreeCount() + " free)");
             }
         } catch (SQLException e) {
-            System.out.println("Error getting user ID: " + e.getMessage());
+            System.out.println("Error loading spot occupancy: " + e.getMessage());
+        } finally {
+            txLock.unlock();
         }
-        return -1;
+    }
+    
+    /**
+     * Rebuilds the per-lot capacity timelines from preorder reservations and the open-session index
+     */
+    private void loadCapacityTimelines() {
+        String qry = """
+            SELECT Reservation_code, COALESCE(assigned_parking_spot_id, parking_ID) AS spot_id,
+                   reservation_Date, reservation_start_time, reservation_end_time
+            FROM Reservations
+            WHERE statusEnum = 'preorder'
+            AND reservation_Date >= CURDATE() - INTERVAL 1 DAY
+            """;
+        
+        txLock.lock();
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            capacityLoaded = false;
+            for (CapacityTimeline timeline : lotCapacity.values()) {
+                timeline.clear();
+            }
+            
+            int reservations = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    bookReservationRow(rs);
+                    reservations++;
+                }
+            }
+            bookOpenSessions();
+            capacityLoaded = true;
+            System.out.println("Loaded capacity timelines: " + reservations + " preorder reservations, "
+                + activeSessions.size() + " open sessions");
+        } catch (SQLException e) {
+            System.out.println("Error loading capacity timelines: " + e.getMessage());
+        } finally {
+            txLock.unlock();
+        }
+    }
+    
+    /**
+     * Adds a preorder row (Reservation_code, spot_id, date and times) to its lot's timeline
+     */
+    private void bookReservationRow(ResultSet rs) throws SQLException {
+        int spotID = rs.getInt("spot_id");
+        LocalDate date = rs.getDate("reservation_Date").toLocalDate();
+        Time startTime = rs.getTime("reservation_start_time");
+        Time endTime = rs.getTime("reservation_end_time");
+        
+        LocalDateTime start;
+        LocalDateTime end;
+        if (startTime == null) {
+            // Date-only reservation holds the whole day
+            start = date.atStartOfDay();
+            end = start.plusDays(1);
+        } else {
+            start = LocalDateTime.of(date, startTime.toLocalTime());
+            end = endTime != null ? LocalDateTime.of(date, endTime.toLocalTime()) : start.plusHours(4);
+            if (!end.isAfter(start)) {
+                end = end.plusDays(1); // crosses midnight
+            }
+        }
+        capacityOf(lotOfSpot(spotID)).add(SpotIntervalIndex.reservationKey(rs.getInt("Reservation_code")), start, end);
+    }
+    
+    /**
+     * Adds every open session in the index to its lot's timeline
+     */
+    private void bookOpenSessions() {
+        for (ActiveSessionIndex.ActiveSession session : activeSessions.getAll()) {
+            LocalDateTime[] window = sessionWindow(session, session.getEstimatedEndTime());
+            capacityOf(lotOfSpot(session.getSpotId())).add(SpotIntervalIndex.sessionKey(session.getCode()),
+                window[0], window[1]);
+        }
+    }
+    
+    private CapacityTimeline capacityOf(int lotId) {
+        return lotCapacity.computeIfAbsent(lotId, id -> new CapacityTimeline());
+    }
+    
+    /**
+     * Adds a booking to its lot's timeline; removed again if the transaction rolls back
+     */
+    private void bookCapacity(String key, int spotID, LocalDateTime start, LocalDateTime end) {
+        CapacityTimeline timeline = capacityOf(lotOfSpot(spotID));
+        timeline.add(key, start, end);
+        if (inTransaction()) {
+            pendingOnRollback.add(() -> timeline.remove(key));
+        }
+    }
+    
+    /**
+     * Removes a booking once the transaction commits (until then it still counts, erring on the safe side)
+     */
+    private void releaseCapacity(String key) {
+        afterCommit(() -> {
+            for (CapacityTimeline timeline : lotCapacity.values()) {
+                timeline.remove(key);
+            }
+        });
+    }
+    
+    private void extendSessionCapacity(ActiveSessionIndex.ActiveSession session, LocalTime newEstimatedEnd) {
+        String key = SpotIntervalIndex.sessionKey(session.getCode());
+        LocalDateTime[] previous = sessionWindow(session, session.getEstimatedEndTime());
+        LocalDateTime[] extended = sessionWindow(session, newEstimatedEnd);
+        bookCapacity(key, session.getSpotId(), extended[0], extended[1]);
+        if (inTransaction()) {
+            // Runs after bookCapacity's undo, restoring the original window
+            CapacityTimeline timeline = capacityOf(lotOfSpot(session.getSpotId()));
+            pendingOnRollback.add(() -> timeline.add(key, previous[0], previous[1]));
+        }
+    }
+    
+    /**
+     * [start, estimated end) of a session; an end at or before the start time crosses midnight
+     */
+    private static LocalDateTime[] sessionWindow(ActiveSessionIndex.ActiveSession session, LocalTime estimatedEnd) {
+        LocalDateTime start = LocalDateTime.of(session.getDate(), session.getStartTime());
+        LocalDateTime end = LocalDateTime.of(session.getDate(), estimatedEnd);
+        if (!end.isAfter(start)) {
+            end = end.plusDays(1);
+        }
+        return new LocalDateTime[] { start, end };
+    }
+    
+    private void registerLotGauges() {
+        for (int lotId : spotOccupancy.getLotIds()) {
+            ServerMetrics.register("spots.total.lot" + lotId, () -> spotOccupancy.getTotalSpots(lotId));
+            ServerMetrics.register("spots.free.lot" + lotId, () -> spotOccupancy.getFreeCount(lotId));
+        }
+    }
+    
+    /**
+     * Compares the occupancy map with the table and repairs any drift (e.g. manual DB edits)
+     */
+    void reconcileSpotOccupancy() {
+        String qry = "SELECT ParkingSpot_ID, Lot_ID, isOccupied FROM ParkingSpot";
+        
+        // Holding the transaction lock guarantees no gate operation is mid-flight
+        txLock.lock();
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                int drift = 0;
+                int rows = 0;
+                boolean unknownSpot = false;
+                while (rs.next()) {
+                    rows++;
+                    int spotId = rs.getInt("ParkingSpot_ID");
+                    ShardedSpotOccupancy.SpotLocation location = spotOccupancy.getLocation(spotId);
+                    if (location == null || location.getLotId() != rs.getInt("Lot_ID")) {
+                        unknownSpot = true;
+                        break;
+                    }
+                    if (spotOccupancy.setOccupied(spotId, rs.getBoolean("isOccupied"))) {
+                        drift++;
+                    }
+                }
+                
+                if (unknownSpot || (rows != spotOccupancy.getTotalSpots())) {
+                    System.out.println("Parking spots were added, moved or removed - reloading occupancy map");
+                    loadSpotOccupancy();
+                } else if (drift > 0) {
+                    System.out.println("⚠️ Occupancy reconciliation corrected " + drift + " spots");
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Error reconciling spot occupancy: " + e.getMessage());
+        } finally {
+            txLock.unlock();
+        }
+    }
+    
+    /**
+     * Seeds the code allocator and the session index with all open parking sessions
+     */
+    private void loadActiveParkingCodes() {
+        String qry = "SELECT * FROM ParkingInfo WHERE Actual_end_time IS NULL";
+        
+        txLock.lock();
+        codeAllocator.clear();
+        activeSessions.clear();
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                int duplicates = 0;
+                while (rs.next()) {
+                    if (!codeAllocator.markLive(rs.getInt("Code"))) {
+                        duplicates++;
+                    }
+                    activeSessions.put(mapActiveSession(rs));
+                }
+                activeSessions.markLoaded();
+                System.out.println("Loaded " + codeAllocator.getLiveCount() + " active parking codes");
+                if (duplicates > 0) {
+                    System.out.println("⚠️ " + duplicates + " open parking sessions share a code with another session");
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading active parking codes: " + e.getMessage());
+        } finally {
+            txLock.unlock();
+        }
+    }
+
+    // ========== HELPER METHODS ==========
+    
+    /**
+     * Inserts an open ParkingInfo row and adds it to the session index
+     */
+    private void insertParkingSession(int spotID, int userID, int parkingCode, LocalDateTime start,
+                                      LocalDateTime estimatedEnd, String orderType, boolean isLate) throws SQLException {
+        String qry = "INSERT INTO ParkingInfo (ParkingSpot_ID, User_ID, Date, Code, Actual_start_time, Estimated_start_time, Estimated_end_time, IsOrderedEnum, IsLate, IsExtended) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, false)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(qry, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, spotID);
+            stmt.setInt(2, userID);
+            stmt.setDate(3, Date.valueOf(start.toLocalDate()));
+            stmt.setInt(4, parkingCode);
+            stmt.setTime(5, Time.valueOf(start.toLocalTime()));
+            stmt.setTime(6, Time.valueOf(start.toLocalTime()));
+            stmt.setTime(7, Time.valueOf(estimatedEnd.toLocalTime()));
+            stmt.setString(8, orderType);
+            stmt.setBoolean(9, isLate);
+            stmt.executeUpdate();
+            recordEvent(ParkingEvent.Type.ENTER, parkingCode, 0, userID, spotID, orderType);
+            bookCapacity(SpotIntervalIndex.sessionKey(parkingCode), spotID, start, estimatedEnd);
+            
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    // Times are stored at second precision
+                    trackSession(new ActiveSessionIndex.ActiveSession(keys.getInt(1), parkingCode, userID, spotID,
+                        start.toLocalDate(), Time.valueOf(start.toLocalTime()).toLocalTime(),
+                        Time.valueOf(estimatedEnd.toLocalTime()).toLocalTime(), orderType, false));
+                }
+            }
+        }
+    }
+    
+    /**
+     * The open session with this code, from the index or (before it is loaded) the database
+     */
+    private ActiveSessionIndex.ActiveSession findActiveSession(int parkingCode) throws SQLException {
+        if (activeSessions.isLoaded()) {
+            return activeSessions.getByCode(parkingCode);
+        }
+        return queryActiveSession("pi.Code = ?", parkingCode);
+    }
+    
+    private ActiveSessionIndex.ActiveSession queryActiveSession(String condition, int value) throws SQLException {
+        String qry = "SELECT pi.* FROM ParkingInfo pi WHERE " + condition + " AND pi.Actual_end_time IS NULL";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, value);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapActiveSession(rs) : null;
+            }
+        }
+    }
+    
+    ActiveSessionIndex.ActiveSession mapActiveSession(ResultSet rs) throws SQLException {
+        return new ActiveSessionIndex.ActiveSession(
+            rs.getInt("ParkingInfo_ID"),
+            rs.getInt("Code"),
+            rs.getInt("User_ID"),
+            rs.getInt("ParkingSpot_ID"),
+            rs.getDate("Date").toLocalDate(),
+            rs.getTime("Actual_start_time").toLocalTime(),
+            rs.getTime("Estimated_end_time").toLocalTime(),
+            rs.getString("IsOrderedEnum"),
+            rs.getBoolean("IsExtended"));
+    }
+    
+    /**
+     * Adds or replaces a session in the index; undone if the transaction rolls back.
+     * The overstay detector only sees it once committed.
+     */
+    private void trackSession(ActiveSessionIndex.ActiveSession session) {
+        ActiveSessionIndex.ActiveSession previous = activeSessions.getByCode(session.getCode());
+        activeSessions.put(session);
+        afterCommit(() -> overstayDetection.track(session));
+        if (inTransaction()) {
+            pendingOnRollback.add(() -> {
+                if (previous != null) {
+                    activeSessions.put(previous);
+                } else {
+                    activeSessions.remove(session.getCode());
+                }
+            });
+        }
+    }
+    
+    /**
+     * Removes a session from the index; restored if the transaction rolls back.
+     * The overstay detector drops it once committed.
+     */
+    private void untrackSession(int parkingCode) {
+        ActiveSessionIndex.ActiveSession removed = activeSessions.remove(parkingCode);
+        afterCommit(() -> overstayDetection.untrack(parkingCode));
+        if (removed != null && inTransaction()) {
+            pendingOnRollback.add(() -> activeSessions.put(removed));
+        }
+    }
+    
+    /**
+     * Claims a code no open session uses; it is released again if the transaction rolls back.
+     * The bitmap only knows this server's sessions, so the code is also checked against open
+     * ParkingInfo rows, which covers sessions started on another server. Codes skipped that
+     * way are released when the search ends, since this server does not own them.
+     */
+    private int generateParkingCode() throws SQLException {
+        List<Integer> skipped = new ArrayList<>();
+        try {
+            for (int attempt = 0; attempt < CODE_ALLOCATION_ATTEMPTS; attempt++) {
+                int code = codeAllocator.allocate();
+                if (code == -1) {
+                    break;
+                }
+                if (isCodeOpenInDatabase(code)) {
+                    // Held until the search ends so this loop does not draw it again
+                    System.out.println("⚠️ Parking code " + code + " is open on another server - picking another");
+                    skipped.add(code);
+                    continue;
+                }
+                if (inTransaction()) {
+                    pendingOnRollback.add(() -> codeAllocator.release(code));
+                }
+                return code;
+            }
+            throw new SQLException("No free parking codes left");
+        } finally {
+            for (int code : skipped) {
+                codeAllocator.release(code);
+            }
+        }
+    }
+    
+    private boolean isCodeOpenInDatabase(int code) throws SQLException {
+        String qry = "SELECT 1 FROM ParkingInfo WHERE Code = ? AND Actual_end_time IS NULL LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, code);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private int getUserID(String userName) {
+        ParkingSubscriber user = getUserInfo(userName);
+        return user != null ? user.getSubscriberID() : -1;
     }
 
-    private int getAvailableParkingSpotID() {
-        String qry = "SELECT ParkingSpot_ID FROM ParkingSpot WHERE isOccupied = false LIMIT 1";
+    private int getAvailableParkingSpotID(int lotId) {
+        if (spotOccupancy.isLoaded()) {
+            return spotOccupancy.firstFree(lotId);
+        }
+        
+        String qry = "SELECT ParkingSpot_ID FROM ParkingSpot WHERE Lot_ID = ? AND isOccupied = false LIMIT 1";
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, lotId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     return rs.getInt("ParkingSpot_ID");
@@ -934,8 +2066,17 @@ public class ParkingController {
         }
         return -1;
     }
+    
+    private int lotOfSpot(int spotID) {
+        ShardedSpotOccupancy.SpotLocation location = spotOccupancy.getLocation(spotID);
+        return location != null ? location.getLotId() : DEFAULT_LOT_ID;
+    }
 
     private boolean isParkingSpotAvailable(int spotID) {
+        if (spotOccupancy.isLoaded()) {
+            return spotOccupancy.isFree(spotID);
+        }
+        
         String qry = "SELECT isOccupied FROM ParkingSpot WHERE ParkingSpot_ID = ?";
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
@@ -951,27 +2092,96 @@ public class ParkingController {
         return false;
     }
 
-    private void updateParkingSpotStatus(int spotID, boolean isOccupied) {
+    /**
+     * Atomically claims any free spot in a lot and marks it occupied
+     *
+     * @return the spot ID, or -1 if the lot is full
+     */
+    private int claimAvailableSpot(int lotId) throws SQLException {
+        while (true) {
+            int spotID = spotOccupancy.isLoaded() ? spotOccupancy.claimFree(lotId) : getAvailableParkingSpotID(lotId);
+            if (spotID == -1 || occupyClaimedSpot(spotID)) {
+                return spotID;
+            }
+            // Another server took it first; the map now has it occupied, so try the next free one
+        }
+    }
+    
+    /**
+     * Atomically claims a specific spot (e.g. the one assigned to a reservation)
+     *
+     * @return false if the spot is already occupied
+     */
+    private boolean claimSpot(int spotID) throws SQLException {
+        boolean claimed = spotOccupancy.isLoaded() ? spotOccupancy.claim(spotID) : isParkingSpotAvailable(spotID);
+        return claimed && occupyClaimedSpot(spotID);
+    }
+    
+    /**
+     * Persists a claim with a conditional UPDATE, so two servers can never both occupy a spot.
+     * The in-memory claim is released if the transaction rolls back.
+     *
+     * @return false if the row was already occupied (taken through another server); the map
+     *         then keeps the spot occupied, matching the table
+     */
+    private boolean occupyClaimedSpot(int spotID) throws SQLException {
+        String qry = "UPDATE ParkingSpot SET isOccupied = TRUE WHERE ParkingSpot_ID = ? AND isOccupied = FALSE";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, spotID);
+            if (stmt.executeUpdate() == 0) {
+                spotOccupancy.setOccupied(spotID, true);
+                return false;
+            }
+        }
+        
+        if (spotOccupancy.isLoaded() && inTransaction()) {
+            pendingOnRollback.add(() -> spotOccupancy.setOccupied(spotID, false));
+        }
+        return true;
+    }
+
+    /**
+     * Updates a spot in the table and, write-through, in the occupancy map
+     * (the map change is undone if the surrounding transaction rolls back)
+     */
+    void updateParkingSpotStatus(int spotID, boolean isOccupied) throws SQLException {
         String qry = "UPDATE ParkingSpot SET isOccupied = ? WHERE ParkingSpot_ID = ?";
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
             stmt.setBoolean(1, isOccupied);
             stmt.setInt(2, spotID);
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println("Error updating parking spot status: " + e.getMessage());
+        }
+        
+        if (spotOccupancy.setOccupied(spotID, isOccupied) && inTransaction()) {
+            pendingOnRollback.add(() -> spotOccupancy.setOccupied(spotID, !isOccupied));
         }
     }
 
-    private void updateReservationStatus(int reservationCode, String status) {
+    private void updateReservationStatus(int reservationCode, String status) throws SQLException {
         String qry = "UPDATE Reservations SET statusEnum = ? WHERE Reservation_code = ?";
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
             stmt.setString(1, status);
             stmt.setInt(2, reservationCode);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println("Error updating reservation status: " + e.getMessage());
+            if (stmt.executeUpdate() > 0) {
+                // Only preorders are projected; once active the session's own booking takes over
+                reservationSettled(reservationCode);
+                switch (status) {
+                    case "active":
+                        recordEvent(ParkingEvent.Type.ACTIVATE, 0, reservationCode, 0, 0, "");
+                        break;
+                    case "cancelled":
+                        recordEvent(ParkingEvent.Type.CANCEL, 0, reservationCode, 0, 0, "");
+                        break;
+                    case "finished":
+                        recordEvent(ParkingEvent.Type.FINISH, 0, reservationCode, 0, 0, "");
+                        break;
+                    default:
+                        break;
+                }
+            }
         }
     }
 
@@ -979,22 +2189,10 @@ public class ParkingController {
      * Send late exit notification - 🔧 FIXED: Now uses EmailService
      */
     private void sendLateExitNotification(int userID) {
-        String qry = "SELECT Email, Phone, Name FROM users WHERE User_ID = ?";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setInt(1, userID);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    String email = rs.getString("Email");
-                    String phone = rs.getString("Phone");
-                    String name = rs.getString("Name");
-                    
-                    // 🆕 SEND EMAIL NOTIFICATION
-                    EmailService.sendLatePickupNotification(email, name);
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error sending late notification: " + e.getMessage());
+        ParkingSubscriber user = getUserInfoById(userID);
+        if (user != null) {
+            // 🆕 SEND EMAIL NOTIFICATION
+            EmailService.sendLatePickupNotification(user.getEmail(), user.getFirstName());
         }
     }
     
@@ -1015,7 +2213,7 @@ public class ParkingController {
         return false;
     }
     
-    private void finishReservationBySpotAndUser(int spotID, int userID) {
+    private void finishReservationBySpotAndUser(int spotID, int userID) throws SQLException {
         String query = """
             UPDATE Reservations 
             SET statusEnum = 'finished'
@@ -1028,107 +2226,74 @@ public class ParkingController {
             int updated = stmt.executeUpdate();
             
             if (updated > 0) {
+                recordEvent(ParkingEvent.Type.FINISH, 0, 0, userID, spotID, "");
                 System.out.println("Reservation finished for user " + userID + " at spot " + spotID);
             }
-        } catch (SQLException e) {
-            System.out.println("Error finishing reservation: " + e.getMessage());
         }
     }
     
-    private void freeSpotForReservation(int reservationCode) {
-        String query = """
-            UPDATE ParkingSpot ps
-            SET ps.isOccupied = FALSE
-            WHERE ps.ParkingSpot_ID = (
-                SELECT r.assigned_parking_spot_id 
-                FROM Reservations r 
-                WHERE r.Reservation_code = ?
-            )
-            """;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, reservationCode);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println("Error freeing spot for reservation: " + e.getMessage());
-        }
-    }
     /**
      * Activate reservation when customer arrives (PREORDER → ACTIVE)
      */
     public String activateReservation(String subscriberUserName, int reservationCode) {
-        // Check if reservation exists and is in preorder status
-        String checkQry = """
-            SELECT r.*, u.UserName, r.assigned_parking_spot_id,
-                   TIMESTAMPDIFF(MINUTE, 
-                       CONCAT(r.reservation_Date, ' ', r.reservation_start_time), 
-                       NOW()) as minutes_since_start
-            FROM Reservations r 
-            JOIN users u ON r.User_ID = u.User_ID 
-            WHERE r.Reservation_code = ? AND r.statusEnum = 'preorder'
-            """;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
-            stmt.setInt(1, reservationCode);
+        return runOperation("activateReservation", () -> {
+            // Check if reservation exists and is in preorder status
+            String checkQry = """
+                SELECT r.*, u.UserName, r.assigned_parking_spot_id,
+                       TIMESTAMPDIFF(MINUTE, 
+                           CONCAT(r.reservation_Date, ' ', r.reservation_start_time), 
+                           NOW()) as minutes_since_start
+                FROM Reservations r 
+                JOIN users u ON r.User_ID = u.User_ID 
+                WHERE r.Reservation_code = ? AND r.statusEnum = 'preorder'
+                """;
             
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int minutesSinceStart = rs.getInt("minutes_since_start");
-                    int spotId = rs.getInt("assigned_parking_spot_id");
-                    
-                    // Check if within 15-minute grace period
-                    if (minutesSinceStart > 15) {
-                        // Too late - auto-cancel
-                        cancelReservation(subscriberUserName, reservationCode);
-                        return "Reservation cancelled due to late arrival (over 15 minutes). Please make a new reservation.";
-                    }
-                    
-                    // Generate parking code and create parking session
-                    int parkingCode = generateParkingCode();
-                    LocalDateTime now = LocalDateTime.now();
-                    LocalDateTime estimatedEnd = now.plusHours(4); // Default 4 hours
-                    
-                    // Create parking info record
-                    String insertQry = """
-                        INSERT INTO ParkingInfo 
-                        (ParkingSpot_ID, User_ID, Date, Code, Actual_start_time, Estimated_start_time, 
-                         Estimated_end_time, IsOrderedEnum, IsLate, IsExtended) 
-                        VALUES (?, ?, ?, ?, ?, ?, ?, 'ordered', ?, false)
-                        """;
-                    
-                    try (PreparedStatement insertStmt = conn.prepareStatement(insertQry)) {
-                        insertStmt.setInt(1, spotId);
-                        insertStmt.setInt(2, rs.getInt("User_ID"));
-                        insertStmt.setDate(3, Date.valueOf(now.toLocalDate()));
-                        insertStmt.setInt(4, parkingCode);
-                        insertStmt.setTime(5, Time.valueOf(now.toLocalTime()));
-                        insertStmt.setTime(6, Time.valueOf(now.toLocalTime()));
-                        insertStmt.setTime(7, Time.valueOf(estimatedEnd.toLocalTime()));
-                        insertStmt.setBoolean(8, minutesSinceStart > 0); // Mark as late if any delay
-                        insertStmt.executeUpdate();
+            try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
+                stmt.setInt(1, reservationCode);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        int minutesSinceStart = rs.getInt("minutes_since_start");
+                        int spotId = rs.getInt("assigned_parking_spot_id");
+                        
+                        // Check if within 15-minute grace period
+                        if (minutesSinceStart > 15) {
+                            // Too late - auto-cancel
+                            cancelReservation(subscriberUserName, reservationCode);
+                            return new OperationResult("Reservation cancelled due to late arrival (over 15 minutes). Please make a new reservation.");
+                        }
+                        
+                        // Claim the assigned spot, or another one if it was taken meanwhile
+                        if (!claimSpot(spotId)) {
+                            spotId = claimAvailableSpot(lotOfSpot(spotId));
+                            if (spotId == -1) {
+                                return new OperationResult("No available parking spots found");
+                            }
+                        }
+                        
+                        // Generate parking code and create parking session
+                        int parkingCode = generateParkingCode();
+                        LocalDateTime now = LocalDateTime.now();
+                        LocalDateTime estimatedEnd = now.plusHours(4); // Default 4 hours
+                        
+                        // Create parking info record, marked as late if any delay
+                        insertParkingSession(spotId, rs.getInt("User_ID"), parkingCode, now, estimatedEnd,
+                            "ordered", minutesSinceStart > 0);
                         
                         // Update reservation status to ACTIVE
                         updateReservationStatus(reservationCode, "active");
                         
-                        // Mark parking spot as occupied
-                        updateParkingSpotStatus(spotId, true);
-                        
                         String lateMessage = minutesSinceStart > 0 ? 
                             " (Note: " + minutesSinceStart + " minutes late)" : "";
                         
-                        System.out.println("Reservation " + reservationCode + " activated (preorder → active)" + lateMessage);
-                        
-                        return "Reservation activated! Parking code: " + parkingCode + 
-                               ". Spot: " + spotId + lateMessage;
+                        return new OperationResult(
+                            "Reservation activated! Parking code: " + parkingCode + ". Spot: " + spotOccupancy.describe(spotId) + lateMessage,
+                            () -> System.out.println("Reservation " + reservationCode + " activated (preorder → active)" + lateMessage));
                     }
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Error activating reservation: " + e.getMessage());
-            return "Failed to activate reservation";
-        }
-        
-        return "Reservation not found or already activated";
+            return new OperationResult("Reservation not found or already activated");
+        }, "Failed to activate reservation");
     }
 
     /**
@@ -1142,59 +2307,58 @@ public class ParkingController {
      * Internal cancellation method (used by auto-cancel and manual cancel)
      */
     private String cancelReservationInternal(int reservationCode, String reason) {
-        // Get reservation info first for email notification
-        String getUserQry = """
-            SELECT u.Email, u.Name, r.statusEnum, r.assigned_parking_spot_id
-            FROM Reservations r 
-            JOIN users u ON r.User_ID = u.User_ID 
-            WHERE r.Reservation_code = ?
-            """;
-        
-        String userEmail = null;
-        String userName = null;
-        String currentStatus = null;
-        Integer spotId = null;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(getUserQry)) {
-            stmt.setInt(1, reservationCode);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    userEmail = rs.getString("Email");
-                    userName = rs.getString("Name");
-                    currentStatus = rs.getString("statusEnum");
-                    spotId = rs.getObject("assigned_parking_spot_id", Integer.class);
+        return runOperation("cancelReservation", () -> {
+            // Get reservation info first for email notification
+            String getUserQry = """
+                SELECT u.Email, u.Name, r.statusEnum, r.assigned_parking_spot_id
+                FROM Reservations r 
+                JOIN users u ON r.User_ID = u.User_ID 
+                WHERE r.Reservation_code = ?
+                """;
+            
+            String userEmail = null;
+            String userName = null;
+            String currentStatus = null;
+            Integer spotId = null;
+            
+            try (PreparedStatement stmt = conn.prepareStatement(getUserQry)) {
+                stmt.setInt(1, reservationCode);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        userEmail = rs.getString("Email");
+                        userName = rs.getString("Name");
+                        currentStatus = rs.getString("statusEnum");
+                        spotId = rs.getObject("assigned_parking_spot_id", Integer.class);
+                    }
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Error getting reservation info for cancellation: " + e.getMessage());
-        }
-        
-        // Update reservation status to cancelled
-        String qry = "UPDATE Reservations SET statusEnum = 'cancelled' WHERE Reservation_code = ? AND statusEnum IN ('preorder', 'active')";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setInt(1, reservationCode);
-            int rowsUpdated = stmt.executeUpdate();
             
-            if (rowsUpdated > 0) {
-                // Free up the spot if it was assigned
-                if (spotId != null) {
-                    updateParkingSpotStatus(spotId, false);
-                }
+            // Update reservation status to cancelled
+            String qry = "UPDATE Reservations SET statusEnum = 'cancelled' WHERE Reservation_code = ? AND statusEnum IN ('preorder', 'active')";
+            
+            try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+                stmt.setInt(1, reservationCode);
+                int rowsUpdated = stmt.executeUpdate();
                 
-                // Send email notification
-                if (userEmail != null && userName != null) {
-                    EmailService.sendReservationCancelled(userEmail, userName, String.valueOf(reservationCode));
+                if (rowsUpdated > 0) {
+                    recordEvent(ParkingEvent.Type.CANCEL, 0, reservationCode, 0, spotId != null ? spotId : 0, reason);
+                    // Only the session exit that claimed a spot releases it - see cancelReservation
+                    reservationSettled(reservationCode);
+                    
+                    String email = userEmail;
+                    String name = userName;
+                    String previousStatus = currentStatus;
+                    return new OperationResult("Reservation cancelled successfully", () -> {
+                        // Send email notification
+                        if (email != null && name != null) {
+                            EmailService.sendReservationCancelled(email, name, String.valueOf(reservationCode));
+                        }
+                        System.out.println("Reservation " + reservationCode + " cancelled (" + previousStatus + " → cancelled) - " + reason);
+                    });
                 }
-                
-                System.out.println("Reservation " + reservationCode + " cancelled (" + currentStatus + " → cancelled) - " + reason);
-                return "Reservation cancelled successfully";
             }
-        } catch (SQLException e) {
-            System.out.println("Error cancelling reservation: " + e.getMessage());
-        }
-        
-        return "Reservation not found or already cancelled/finished";
+            return new OperationResult("Reservation not found or already cancelled/finished");
+        }, "Reservation not found or already cancelled/finished");
     }
 
     /**
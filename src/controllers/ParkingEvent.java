@@ -0,0 +1,132 @@
+package controllers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * One state transition recorded in the ParkingEventJournal.
+ * Codes and IDs that do not apply to a transition are 0.
+ */
+public final class ParkingEvent {
+
+    public enum Type {
+        ENTER,
+        EXIT,
+        EXTEND,
+        RESERVE,
+        ACTIVATE,
+        CANCEL,
+        FINISH,
+        OVERSTAY
+    }
+
+    private static final int FIXED_BYTES = 8 + 8 + 1 + 4 + 4 + 4 + 4 + 2;
+    private static final int MAX_DETAIL_BYTES = 0xFFFF;
+
+    private final long sequence;
+    private final long timestampMillis;
+    private final Type type;
+    private final int parkingCode;
+    private final int reservationCode;
+    private final int userId;
+    private final int spotId;
+    private final String detail;
+
+    public ParkingEvent(long sequence, long timestampMillis, Type type, int parkingCode, int reservationCode,
+                        int userId, int spotId, String detail) {
+        this.sequence = sequence;
+        this.timestampMillis = timestampMillis;
+        this.type = type;
+        this.parkingCode = parkingCode;
+        this.reservationCode = reservationCode;
+        this.userId = userId;
+        this.spotId = spotId;
+        this.detail = detail != null ? detail : "";
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getParkingCode() {
+        return parkingCode;
+    }
+
+    public int getReservationCode() {
+        return reservationCode;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getSpotId() {
+        return spotId;
+    }
+
+    /**
+     * Free text such as a cancellation reason or the new end time of an extension
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Encoded size, without the journal's frame header
+     */
+    int encodedSize() {
+        return FIXED_BYTES + detailBytes().length;
+    }
+
+    void encode(ByteBuffer buffer) {
+        byte[] detailBytes = detailBytes();
+        buffer.putLong(sequence)
+              .putLong(timestampMillis)
+              .put((byte) type.ordinal())
+              .putInt(parkingCode)
+              .putInt(reservationCode)
+              .putInt(userId)
+              .putInt(spotId)
+              .putShort((short) detailBytes.length)
+              .put(detailBytes);
+    }
+
+    static ParkingEvent decode(ByteBuffer buffer) {
+        long sequence = buffer.getLong();
+        long timestampMillis = buffer.getLong();
+        Type type = Type.values()[buffer.get()];
+        int parkingCode = buffer.getInt();
+        int reservationCode = buffer.getInt();
+        int userId = buffer.getInt();
+        int spotId = buffer.getInt();
+        byte[] detailBytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(detailBytes);
+        return new ParkingEvent(sequence, timestampMillis, type, parkingCode, reservationCode, userId, spotId,
+            new String(detailBytes, StandardCharsets.UTF_8));
+    }
+
+    private byte[] detailBytes() {
+        byte[] bytes = detail.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_DETAIL_BYTES) {
+            bytes = Arrays.copyOf(bytes, MAX_DETAIL_BYTES);
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + Instant.ofEpochMilli(timestampMillis) + " " + type
+            + " code=" + parkingCode + " reservation=" + reservationCode
+            + " user=" + userId + " spot=" + spotId + (detail.isEmpty() ? "" : " " + detail);
+    }
+}
@@ -0,0 +1,374 @@
+package controllers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of parking state transitions.
+ *
+ * append() only queues the event and returns its sequence number. A single writer thread
+ * drains the queue every few milliseconds, writes the batch sequentially and calls
+ * force() once for the whole batch (group fsync), so a burst of gate operations costs one
+ * disk sync. Listeners are notified only after their events are durable.
+ *
+ * The log is split into segments of at most SEGMENT_BYTES named after their first sequence
+ * number. Each record is framed as [length][crc32][event]; a torn record at the end of the
+ * last segment (crash mid-write) is truncated when the journal is reopened.
+ */
+public class ParkingEventJournal implements AutoCloseable {
+
+    public static final String JOURNAL_DIR_PROPERTY = "bpark.journalDir";
+    private static final long SEGMENT_BYTES = 16L * 1024 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 5;
+    private static final int FRAME_HEADER_BYTES = 4 + 4;
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final Object appendLock = new Object();
+    private final Object durableLock = new Object();
+    private final List<Consumer<ParkingEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread writer;
+
+    // Guarded by appendLock
+    private List<ParkingEvent> pending = new ArrayList<>();
+    private long nextSequence;
+    private boolean closed;
+
+    // Only touched by the writer thread (and open())
+    private FileChannel segment;
+    private long segmentSize;
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    // Guarded by durableLock
+    private long durableSequence;
+
+    private ParkingEventJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        recover();
+        this.writer = new Thread(this::writeLoop, "parkb-event-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens (or creates) the journal in a directory
+     */
+    public static ParkingEventJournal open(Path directory) throws IOException {
+        return new ParkingEventJournal(directory);
+    }
+
+    /**
+     * Queues an event; it becomes durable with the next group fsync
+     *
+     * @return the event's sequence number, or -1 if the journal is closed
+     */
+    public long append(ParkingEvent.Type type, int parkingCode, int reservationCode, int userId, int spotId,
+                       String detail) {
+        synchronized (appendLock) {
+            if (closed) {
+                return -1;
+            }
+            long sequence = nextSequence++;
+            pending.add(new ParkingEvent(sequence, System.currentTimeMillis(), type, parkingCode, reservationCode,
+                userId, spotId, detail));
+            return sequence;
+        }
+    }
+
+    /**
+     * Blocks until the event with this sequence number has been fsynced
+     *
+     * @return false on timeout
+     */
+    public boolean awaitDurable(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (durableLock) {
+            while (durableSequence < sequence) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                durableLock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    public long getDurableSequence() {
+        synchronized (durableLock) {
+            return durableSequence;
+        }
+    }
+
+    public long getLastSequence() {
+        synchronized (appendLock) {
+            return nextSequence - 1;
+        }
+    }
+
+    /**
+     * Reads durable events with sequence >= fromSequence, in order
+     *
+     * @return the last sequence number delivered, or fromSequence - 1 if none
+     */
+    public long replay(long fromSequence, Consumer<ParkingEvent> consumer) throws IOException {
+        return replay(fromSequence, getDurableSequence(), consumer);
+    }
+
+    /**
+     * Replays history from fromSequence and then keeps delivering new events as they become
+     * durable, with no gap or duplicate between the two
+     */
+    public void subscribe(long fromSequence, Consumer<ParkingEvent> listener) throws IOException {
+        synchronized (durableLock) {
+            replay(fromSequence, durableSequence, listener);
+            listeners.add(listener);
+        }
+    }
+
+    public void unsubscribe(Consumer<ParkingEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    public List<Path> getSegments() throws IOException {
+        return listSegments();
+    }
+
+    /**
+     * Flushes queued events and stops the writer thread
+     */
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            closed = true;
+            appendLock.notifyAll();
+        }
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long replay(long fromSequence, long upToSequence, Consumer<ParkingEvent> consumer) throws IOException {
+        long last = fromSequence - 1;
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            // Skip whole segments that end before fromSequence
+            if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            ByteBuffer data = readSegment(segments.get(i));
+            ParkingEvent event;
+            while ((event = nextEvent(data)) != null) {
+                if (event.getSequence() > upToSequence) {
+                    return last;
+                }
+                if (event.getSequence() >= fromSequence) {
+                    consumer.accept(event);
+                    last = event.getSequence();
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Finds the next sequence number and truncates a torn tail left by a crash
+     */
+    private void recover() throws IOException {
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            openSegment(1);
+            durableSequence = 0;
+            return;
+        }
+
+        Path lastSegment = segments.get(segments.size() - 1);
+        ByteBuffer data = readSegment(lastSegment);
+        long lastSequence = firstSequenceOf(lastSegment) - 1;
+        ParkingEvent event;
+        while ((event = nextEvent(data)) != null) {
+            lastSequence = event.getSequence();
+        }
+        long validBytes = data.position();
+
+        segment = FileChannel.open(lastSegment, StandardOpenOption.WRITE);
+        if (validBytes < segment.size()) {
+            System.out.println("⚠️ Event journal: dropping " + (segment.size() - validBytes)
+                + " bytes of a torn record in " + lastSegment.getFileName());
+            segment.truncate(validBytes);
+            segment.force(true);
+        }
+        segment.position(validBytes);
+        segmentSize = validBytes;
+        nextSequence = lastSequence + 1;
+        durableSequence = lastSequence;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<ParkingEvent> batch;
+            boolean stopping;
+            synchronized (appendLock) {
+                if (pending.isEmpty() && !closed) {
+                    try {
+                        appendLock.wait(FLUSH_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                stopping = closed;
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    writeBatch(batch);
+                    publish(batch);
+                } catch (IOException e) {
+                    System.out.println("Error writing event journal: " + e.getMessage());
+                }
+            }
+            if (stopping) {
+                break;
+            }
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            System.out.println("Error closing event journal: " + e.getMessage());
+        }
+    }
+
+    private void writeBatch(List<ParkingEvent> batch) throws IOException {
+        writeBuffer.clear();
+        for (ParkingEvent event : batch) {
+            int frameBytes = FRAME_HEADER_BYTES + event.encodedSize();
+            if (segmentSize + writeBuffer.position() + frameBytes > SEGMENT_BYTES && segmentSize + writeBuffer.position() > 0) {
+                drain();
+                segment.force(false);
+                segment.close();
+                openSegment(event.getSequence());
+            }
+            if (writeBuffer.remaining() < frameBytes) {
+                drain();
+                if (writeBuffer.capacity() < frameBytes) {
+                    writeBuffer = ByteBuffer.allocateDirect(frameBytes);
+                }
+            }
+            int frameStart = writeBuffer.position();
+            writeBuffer.position(frameStart + FRAME_HEADER_BYTES);
+            event.encode(writeBuffer);
+            int payloadBytes = writeBuffer.position() - frameStart - FRAME_HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(writeBuffer.duplicate().position(frameStart + FRAME_HEADER_BYTES).limit(writeBuffer.position()));
+            writeBuffer.putInt(frameStart, payloadBytes);
+            writeBuffer.putInt(frameStart + 4, (int) crc.getValue());
+        }
+        drain();
+        // One fsync for the whole batch
+        segment.force(false);
+    }
+
+    private void drain() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            segmentSize += segment.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void publish(List<ParkingEvent> batch) {
+        synchronized (durableLock) {
+            durableSequence = batch.get(batch.size() - 1).getSequence();
+            for (ParkingEvent event : batch) {
+                for (Consumer<ParkingEvent> listener : listeners) {
+                    try {
+                        listener.accept(event);
+                    } catch (RuntimeException e) {
+                        System.out.println("Event journal listener failed: " + e.getMessage());
+                    }
+                }
+            }
+            durableLock.notifyAll();
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentSize = segment.size();
+        segment.position(segmentSize);
+    }
+
+    /**
+     * Decodes the frame at the buffer's position
+     *
+     * @return the event, or null at the end of the data or at a torn/corrupt frame
+     */
+    private static ParkingEvent nextEvent(ByteBuffer data) {
+        int start = data.position();
+        if (data.remaining() < FRAME_HEADER_BYTES) {
+            return null;
+        }
+        int payloadBytes = data.getInt();
+        int expectedCrc = data.getInt();
+        if (payloadBytes <= 0 || payloadBytes > data.remaining()) {
+            data.position(start);
+            return null;
+        }
+        ByteBuffer payload = data.slice().limit(payloadBytes);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            data.position(start);
+            return null;
+        }
+        data.position(data.position() + payloadBytes);
+        return ParkingEvent.decode(payload);
+    }
+
+    private static ByteBuffer readSegment(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // keep reading
+            }
+            data.flip();
+            return data;
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                segments.add(file);
+            }
+        }
+        // Zero-padded names sort in sequence order
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,315 @@
+package controllers;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Instrumented JDBC layer. Connections returned by instrument() hand out statements
+ * that time every execute call per SQL template, count rows read from their result sets,
+ * and count statements per request so N+1 query patterns show up in the logs.
+ * Statements slower than the threshold (system property bpark.slowQueryMillis) are logged.
+ */
+public class QueryStats {
+
+    public static final String SLOW_QUERY_PROPERTY = "bpark.slowQueryMillis";
+
+    private static final long SLOW_QUERY_MILLIS = Long.getLong(SLOW_QUERY_PROPERTY, 200);
+
+    // A request issuing more statements than this is reported as a likely N+1 pattern
+    private static final int STATEMENTS_PER_REQUEST_WARN = 20;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.)*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static final Map<String, TemplateStats> templates = new ConcurrentHashMap<>();
+    private static final ThreadLocal<RequestScope> currentRequest = new ThreadLocal<>();
+    private static final LongAdder statements = new LongAdder();
+    private static final LongAdder slowQueries = new LongAdder();
+
+    /**
+     * Aggregated timings for one SQL template
+     */
+    public static class TemplateStats {
+        private final String sql;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        TemplateStats(String sql) {
+            this.sql = sql;
+        }
+
+        void recordExecution(long nanos) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getRowsReturned() {
+            return rows.sum();
+        }
+
+        public double getAverageMillis() {
+            long count = executions.sum();
+            return count == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Statement and row counts for the request handled by the current thread
+     */
+    public static class RequestScope {
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private int statementCount;
+        private long rowCount;
+
+        RequestScope(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getStatementCount() {
+            return statementCount;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+    }
+
+    /**
+     * Starts counting statements for a client request on this thread
+     */
+    public static void beginRequest(String name) {
+        currentRequest.set(new RequestScope(name));
+    }
+
+    /**
+     * Ends the current request scope and reports it if it issued suspiciously many statements
+     */
+    public static RequestScope endRequest() {
+        RequestScope scope = currentRequest.get();
+        currentRequest.remove();
+        if (scope != null && scope.statementCount > STATEMENTS_PER_REQUEST_WARN) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scope.startNanos);
+            System.out.println("⚠️ Request " + scope.name + " issued " + scope.statementCount
+                    + " statements (" + scope.rowCount + " rows, " + millis + " ms) - possible N+1 query");
+        }
+        return scope;
+    }
+
+    /**
+     * Wraps a connection so all statements it creates are measured
+     */
+    public static Connection instrument(Connection conn) {
+        if (conn == null || Proxy.isProxyClass(conn.getClass())) {
+            return conn;
+        }
+        return (Connection) Proxy.newProxyInstance(QueryStats.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler(conn));
+    }
+
+    /**
+     * Collapses whitespace and replaces literals so equivalent queries share one template
+     */
+    static String toTemplate(String sql) {
+        String template = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        template = STRING_LITERAL.matcher(template).replaceAll("?");
+        return NUMBER_LITERAL.matcher(template).replaceAll("?");
+    }
+
+    private static TemplateStats statsFor(String sql) {
+        return templates.computeIfAbsent(toTemplate(sql), TemplateStats::new);
+    }
+
+    private static void recordExecution(TemplateStats stats, long nanos) {
+        stats.recordExecution(nanos);
+        statements.increment();
+
+        RequestScope scope = currentRequest.get();
+        if (scope != null) {
+            scope.statementCount++;
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (millis >= SLOW_QUERY_MILLIS) {
+            slowQueries.increment();
+            System.out.println("🐢 SLOW QUERY (" + millis + " ms"
+                    + (scope != null ? ", request " + scope.name : "") + "): " + stats.sql);
+        }
+    }
+
+    private static void recordRow(TemplateStats stats) {
+        stats.rows.increment();
+        RequestScope scope = currentRequest.get();
+        if (scope != null) {
+            scope.rowCount++;
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isExecute(Method method) {
+        return method.getName().startsWith("execute");
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryStats.invoke(target, method, args);
+            String name = method.getName();
+
+            if (result instanceof PreparedStatement && args != null && args[0] instanceof String) {
+                // prepareStatement / prepareCall: the SQL is fixed up front
+                Class<?> type = result instanceof java.sql.CallableStatement
+                        ? java.sql.CallableStatement.class : PreparedStatement.class;
+                return Proxy.newProxyInstance(QueryStats.class.getClassLoader(), new Class<?>[] { type },
+                        new StatementHandler((Statement) result, statsFor((String) args[0])));
+            }
+            if (result instanceof Statement && "createStatement".equals(name)) {
+                return Proxy.newProxyInstance(QueryStats.class.getClassLoader(), new Class<?>[] { Statement.class },
+                        new StatementHandler((Statement) result, null));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final TemplateStats preparedStats;
+
+        StatementHandler(Statement target, TemplateStats preparedStats) {
+            this.target = target;
+            this.preparedStats = preparedStats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!isExecute(method)) {
+                Object result = QueryStats.invoke(target, method, args);
+                if (result instanceof ResultSet && preparedStats != null) {
+                    // getResultSet / getGeneratedKeys
+                    return wrapResultSet((ResultSet) result, preparedStats);
+                }
+                return result;
+            }
+
+            // Plain statements carry their SQL on each execute call
+            TemplateStats stats = preparedStats;
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                stats = statsFor((String) args[0]);
+            }
+
+            long start = System.nanoTime();
+            try {
+                Object result = QueryStats.invoke(target, method, args);
+                if (result instanceof ResultSet && stats != null) {
+                    return wrapResultSet((ResultSet) result, stats);
+                }
+                return result;
+            } finally {
+                if (stats != null) {
+                    recordExecution(stats, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    private static ResultSet wrapResultSet(ResultSet rs, TemplateStats stats) {
+        return (ResultSet) Proxy.newProxyInstance(QueryStats.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    Object result = invoke(rs, method, args);
+                    if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                        recordRow(stats);
+                    }
+                    return result;
+                });
+    }
+
+    public static long getStatementCount() {
+        return statements.sum();
+    }
+
+    public static long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    public static long getSlowQueryThresholdMillis() {
+        return SLOW_QUERY_MILLIS;
+    }
+
+    /**
+     * Templates ordered by total time spent, most expensive first
+     */
+    public static List<TemplateStats> getTopTemplates(int limit) {
+        List<TemplateStats> sorted = new ArrayList<>(templates.values());
+        sorted.sort(Comparator.comparingDouble(TemplateStats::getTotalMillis).reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * One line per template: executions, avg/max latency, rows, SQL
+     */
+    public static String format(int limit) {
+        StringBuilder sb = new StringBuilder();
+        for (TemplateStats stats : getTopTemplates(limit)) {
+            sb.append(String.format("%6d x  avg %7.2f ms  max %7.2f ms  rows %7d  %s%n",
+                    stats.getExecutions(), stats.getAverageMillis(), stats.getMaxMillis(),
+                    stats.getRowsReturned(), stats.getSql()));
+        }
+        return sb.toString();
+    }
+
+    public static void reset() {
+        templates.clear();
+    }
+}
@@ -0,0 +1,179 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes read-only, staleness-tolerant queries (reports, history) to a read replica.
+ * Gate-critical reads and all writes keep using the caller's primary connection.
+ * The replica is used only while it is reachable and its lag is within MAX_LAG_SECONDS.
+ * One router (one replica connection, one lag monitor) is shared by all controllers.
+ */
+public class ReadReplicaRouter {
+
+    /**
+     * System property holding the replica JDBC URL, e.g. jdbc:mysql://replica-host/bpark?serverTimezone=IST
+     */
+    public static final String REPLICA_URL_PROPERTY = "bpark.replica.url";
+    public static final String REPLICA_USER_PROPERTY = "bpark.replica.user";
+    public static final String REPLICA_PASSWORD_PROPERTY = "bpark.replica.password";
+
+    private static final long MAX_LAG_SECONDS = 30;
+    private static final int LAG_CHECK_INTERVAL_SECONDS = 10;
+
+    private final String replicaUrl;
+    private final String user;
+    private final String pass;
+    private Connection replica;
+    private volatile long replicaLagSeconds = -1; // -1 = unknown / replication not running
+    private ScheduledExecutorService lagMonitor;
+
+    public ReadReplicaRouter(String replicaUrl, String user, String pass) {
+        this.replicaUrl = replicaUrl;
+        this.user = user;
+        this.pass = pass;
+
+        if (isReplicaConfigured()) {
+            connectReplica();
+            lagMonitor = Executors.newSingleThreadScheduledExecutor();
+            lagMonitor.scheduleAtFixedRate(this::measureLag, 0, LAG_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Creates a router from the bpark.replica.* system properties (URL, user, password).
+     * User and password default to root and the primary's password.
+     */
+    public static ReadReplicaRouter fromSystemProperty(String primaryPass) {
+        return new ReadReplicaRouter(System.getProperty(REPLICA_URL_PROPERTY),
+            System.getProperty(REPLICA_USER_PROPERTY, "root"),
+            System.getProperty(REPLICA_PASSWORD_PROPERTY, primaryPass));
+    }
+
+    public boolean isReplicaConfigured() {
+        return replicaUrl != null && !replicaUrl.trim().isEmpty();
+    }
+
+    /**
+     * Connection for staleness-tolerant reads: the replica when healthy, otherwise the given primary.
+     * The replica is pinged first, so a dropped link falls back to the primary on the first read
+     * instead of failing reads until the next lag poll.
+     */
+    public synchronized Connection readConnection(Connection primary) {
+        if (replica != null && replicaLagSeconds >= 0 && replicaLagSeconds <= MAX_LAG_SECONDS) {
+            if (isAlive(replica)) {
+                return replica;
+            }
+            System.out.println("Read replica connection lost - routing reads to primary until it reconnects");
+            closeReplica();
+            replicaLagSeconds = -1;
+        }
+        return primary;
+    }
+
+    /**
+     * Last measured replication lag in seconds, or -1 if unknown/not replicating
+     */
+    public long getReplicaLagSeconds() {
+        return replicaLagSeconds;
+    }
+
+    public synchronized boolean isUsingReplica() {
+        return replica != null && replicaLagSeconds >= 0 && replicaLagSeconds <= MAX_LAG_SECONDS;
+    }
+
+    private static boolean isAlive(Connection connection) {
+        try {
+            return connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private synchronized void closeReplica() {
+        try {
+            replica.close();
+        } catch (SQLException e) {
+            // already broken
+        }
+        replica = null;
+    }
+
+    private synchronized void connectReplica() {
+        try {
+            replica = QueryStats.instrument(DriverManager.getConnection(replicaUrl, user, pass));
+            replica.setReadOnly(true);
+            System.out.println("Read replica connection succeed: " + replicaUrl);
+        } catch (SQLException e) {
+            replica = null;
+            System.out.println("Read replica connection failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads Seconds_Behind_Source/Master from the replica. Newer MySQL versions use
+     * SHOW REPLICA STATUS, older ones only understand SHOW SLAVE STATUS.
+     */
+    private void measureLag() {
+        try {
+            synchronized (this) {
+                if (replica == null || !replica.isValid(2)) {
+                    connectReplica();
+                }
+                if (replica == null) {
+                    replicaLagSeconds = -1;
+                    return;
+                }
+            }
+
+            Long lag = queryLag("SHOW REPLICA STATUS", "Seconds_Behind_Source");
+            if (lag == null) {
+                lag = queryLag("SHOW SLAVE STATUS", "Seconds_Behind_Master");
+            }
+            replicaLagSeconds = lag != null ? lag : -1;
+
+            if (replicaLagSeconds > MAX_LAG_SECONDS) {
+                System.out.println("Read replica lagging " + replicaLagSeconds + "s - routing reads to primary");
+            }
+        } catch (Exception e) {
+            replicaLagSeconds = -1;
+            System.out.println("Error measuring replica lag: " + e.getMessage());
+        }
+    }
+
+    private Long queryLag(String statusQuery, String column) {
+        try (PreparedStatement stmt = replica.prepareStatement(statusQuery)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    long lag = rs.getLong(column);
+                    return rs.wasNull() ? null : lag;
+                }
+            }
+        } catch (SQLException e) {
+            // Statement not supported by this server version
+        }
+        return null;
+    }
+
+    public void shutdown() {
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
+        }
+        synchronized (this) {
+            if (replica != null) {
+                try {
+                    replica.close();
+                } catch (SQLException e) {
+                    System.out.println("Error closing replica connection: " + e.getMessage());
+                }
+                replica = null;
+            }
+        }
+    }
+}
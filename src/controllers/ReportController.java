@@ -9,8 +9,15 @@ import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import entities.ParkingReport;
+import services.ServerMetrics;
 
 /**
  * ReportController handles report generation for the ParkB parking management system.
@@ -19,15 +26,68 @@ import entities.ParkingReport;
 public class ReportController {
     protected Connection conn;
     public int successFlag;
+    
+    // Report aggregates scan all of ParkingInfo - keep them off the primary when a replica exists
+    private ReadReplicaRouter replicaRouter;
+    // False when the router is shared with (and shut down by) the ParkingController
+    private final boolean ownsReplicaRouter;
+    
+    // Month-end report job - only the server holding the scheduler lease runs it
+    private static final int MONTHLY_CHECK_HOURS = 6;
+    private ScheduledExecutorService monthlyReportScheduler;
+    
+    // Client report requests run here, so a full-table aggregate never holds the server's message handler
+    private final ExecutorService reportExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "parkb-reports");
+        t.setDaemon(true);
+        return t;
+    });
 
     public ReportController(String dbname, String pass) {
+        this(dbname, pass, null);
+    }
+    
+    /**
+     * @param sharedRouter replica router to reuse (e.g. the ParkingController's), or null to create one
+     */
+    public ReportController(String dbname, String pass, ReadReplicaRouter sharedRouter) {
         String connectPath = "jdbc:mysql://localhost/" + dbname + "?serverTimezone=IST";
         connectToDB(connectPath, pass);
+        
+        ownsReplicaRouter = sharedRouter == null;
+        replicaRouter = ownsReplicaRouter ? ReadReplicaRouter.fromSystemProperty(pass) : sharedRouter;
+        if (ownsReplicaRouter) {
+            ServerMetrics.register("replica.lagSeconds", replicaRouter::getReplicaLagSeconds);
+        }
     }
 
     public Connection getConnection() {
         return conn;
     }
+    
+    /**
+     * Connection for report/statistics reads (replica when healthy, otherwise primary)
+     */
+    private Connection readConn() {
+        return replicaRouter != null ? replicaRouter.readConnection(conn) : conn;
+    }
+    
+    public ReadReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+    
+    /**
+     * Cleanup method - call when shutting down the controller
+     */
+    public void shutdown() {
+        reportExecutor.shutdownNow();
+        if (monthlyReportScheduler != null) {
+            monthlyReportScheduler.shutdownNow();
+        }
+        if (replicaRouter != null && ownsReplicaRouter) {
+            replicaRouter.shutdown();
+        }
+    }
 
     /**
      * Establishes connection to the MySQL database
@@ -41,7 +101,7 @@ public class ReportController {
         }
 
         try {
-            conn = DriverManager.getConnection(path, "root", pass);
+            conn = QueryStats.instrument(DriverManager.getConnection(path, "root", pass));
             System.out.println("SQL connection succeed");
             successFlag = 1;
         } catch (SQLException ex) {
@@ -79,6 +139,34 @@ public class ReportController {
         return reports;
     }
 
+    /**
+     * getParkingReports on the report executor
+     */
+    public CompletableFuture<ArrayList<ParkingReport>> getParkingReportsAsync(String reportType) {
+        return submit("getParkingReports", () -> getParkingReports(reportType));
+    }
+    
+    /**
+     * generateMonthlyReports on the report executor
+     */
+    public CompletableFuture<ArrayList<ParkingReport>> generateMonthlyReportsAsync(String monthYear) {
+        return submit("generateMonthlyReports", () -> generateMonthlyReports(monthYear));
+    }
+    
+    /**
+     * Runs the work on the report executor inside its own QueryStats request scope
+     */
+    private <T> CompletableFuture<T> submit(String operation, Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            QueryStats.beginRequest(operation);
+            try {
+                return work.get();
+            } finally {
+                QueryStats.endRequest();
+            }
+        }, reportExecutor);
+    }
+
     /**
      * Generates monthly reports automatically at the end of each month
      * @param monthYear Format: "YYYY-MM"
@@ -135,7 +223,7 @@ public class ReportController {
             WHERE Date >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
             """;
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+        try (PreparedStatement stmt = readConn().prepareStatement(qry)) {
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     report.setTotalParkings(rs.getInt("total_parkings"));
@@ -178,7 +266,7 @@ public class ReportController {
         
         try {
             // Get active subscribers
-            try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
+            try (PreparedStatement stmt = readConn().prepareStatement(activeSubQry)) {
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
                         report.setActiveSubscribers(rs.getInt("active_subscribers"));
@@ -187,7 +275,7 @@ public class ReportController {
             }
             
             // Get order statistics
-            try (PreparedStatement stmt = conn.prepareStatement(ordersQry)) {
+            try (PreparedStatement stmt = readConn().prepareStatement(ordersQry)) {
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
                         report.setTotalOrders(rs.getInt("total_orders"));
@@ -199,7 +287,7 @@ public class ReportController {
             }
             
             // Get cancelled reservations
-            try (PreparedStatement stmt = conn.prepareStatement(cancelledQry)) {
+            try (PreparedStatement stmt = readConn().prepareStatement(cancelledQry)) {
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
                         report.setCancelledReservations(rs.getInt("cancelled_reservations"));
@@ -232,7 +320,7 @@ public class ReportController {
             WHERE YEAR(Date) = ? AND MONTH(Date) = ?
             """;
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+        try (PreparedStatement stmt = readConn().prepareStatement(qry)) {
             stmt.setInt(1, reportDate.getYear());
             stmt.setInt(2, reportDate.getMonthValue());
             
@@ -280,7 +368,7 @@ public class ReportController {
         
         try {
             // Get active subscribers
-            try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
+            try (PreparedStatement stmt = readConn().prepareStatement(activeSubQry)) {
                 stmt.setInt(1, reportDate.getYear());
                 stmt.setInt(2, reportDate.getMonthValue());
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -291,7 +379,7 @@ public class ReportController {
             }
             
             // Get order statistics
-            try (PreparedStatement stmt = conn.prepareStatement(ordersQry)) {
+            try (PreparedStatement stmt = readConn().prepareStatement(ordersQry)) {
                 stmt.setInt(1, reportDate.getYear());
                 stmt.setInt(2, reportDate.getMonthValue());
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -305,7 +393,7 @@ public class ReportController {
             }
             
             // Get cancelled reservations
-            try (PreparedStatement stmt = conn.prepareStatement(cancelledQry)) {
+            try (PreparedStatement stmt = readConn().prepareStatement(cancelledQry)) {
                 stmt.setInt(1, reportDate.getYear());
                 stmt.setInt(2, reportDate.getMonthValue());
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -324,6 +412,44 @@ public class ReportController {
         return null;
     }
 
+    /**
+     * Generates last month's reports once the month is over. Checked every few hours and
+     * skipped unless this server is the scheduler leader, so with several servers the
+     * reports are stored once.
+     */
+    public void scheduleMonthlyReports(LeaderLease leaderLease) {
+        monthlyReportScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parkb-monthly-reports");
+            t.setDaemon(true);
+            return t;
+        });
+        monthlyReportScheduler.scheduleWithFixedDelay(() -> {
+            if (leaderLease != null && !leaderLease.isLeader()) {
+                return;
+            }
+            QueryStats.beginRequest("monthlyReportJob");
+            try {
+                if (!monthlyReportsStoredThisMonth()) {
+                    String lastMonth = LocalDate.now().minusMonths(1).format(DateTimeFormatter.ofPattern("yyyy-MM"));
+                    System.out.println("Generating monthly reports for " + lastMonth);
+                    generateMonthlyReports(lastMonth);
+                }
+            } catch (SQLException e) {
+                System.out.println("Error in monthly report job: " + e.getMessage());
+            } finally {
+                QueryStats.endRequest();
+            }
+        }, 1, MONTHLY_CHECK_HOURS * 60, TimeUnit.MINUTES);
+    }
+    
+    private boolean monthlyReportsStoredThisMonth() throws SQLException {
+        String qry = "SELECT 1 FROM Reports WHERE Generated_Date >= DATE_FORMAT(CURDATE(), '%Y-%m-01') LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(qry);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next();
+        }
+    }
+
     /**
      * Stores monthly reports in the database
      */
@@ -350,7 +476,7 @@ public class ReportController {
         
         String qry = "SELECT * FROM Reports WHERE Report_Type = ? AND DATE(Generated_Date) BETWEEN ? AND ? ORDER BY Generated_Date DESC";
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+        try (PreparedStatement stmt = readConn().prepareStatement(qry)) {
             stmt.setString(1, reportType);
             stmt.setString(2, fromDate.toString());
             stmt.setString(3, toDate.toString());
@@ -389,7 +515,7 @@ public class ReportController {
             LIMIT 5
             """;
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+        try (PreparedStatement stmt = readConn().prepareStatement(qry)) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     int hour = rs.getInt("entry_hour");
@@ -422,7 +548,7 @@ public class ReportController {
             ORDER BY Date DESC
             """;
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+        try (PreparedStatement stmt = readConn().prepareStatement(qry)) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     String date = rs.getDate("Date").toString();
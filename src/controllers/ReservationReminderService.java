@@ -0,0 +1,242 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import services.EmailService;
+
+/**
+ * Emails subscribers a reminder N minutes before their reservation starts, so fewer of them
+ * miss the 15-minute grace window and lose the spot to auto-cancellation.
+ *
+ * Reminders share the reservation timer wheel with the no-show deadlines: armed when a
+ * preorder is placed, disarmed when it is activated or cancelled. Only the scheduler leader
+ * sends them; on election it loads every unsent reminder from the database, and each one is
+ * claimed with Reminder_sent before the email goes out, so a restart or failover never sends
+ * a reminder twice.
+ */
+public class ReservationReminderService implements LeaderLease.LeadershipListener {
+
+    public static final String REMINDER_MINUTES_PROPERTY = "bpark.reminderMinutes";
+    private static final int DEFAULT_REMINDER_MINUTES = 30;
+    private static final int RESYNC_HOURS = 1;
+    private static final int CATCH_UP_MINUTES = 1;
+
+    private final ParkingController parkingController;
+    private final HashedTimerWheel timers;
+    private final int reminderMinutes;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong sentCount = new AtomicLong();
+    private volatile boolean running;
+    private ScheduledFuture<?> resyncTask;
+    private ScheduledFuture<?> catchUpTask;
+    // Highest Reservation_code loaded so far - reservations placed on other servers are above it
+    private volatile int lastLoadedCode;
+
+    public ReservationReminderService(ParkingController parkingController) {
+        this.parkingController = parkingController;
+        this.timers = parkingController.getReservationTimers();
+        this.reminderMinutes = Integer.getInteger(REMINDER_MINUTES_PROPERTY, DEFAULT_REMINDER_MINUTES);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parkb-reminder-loader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Arms the reminder of a preorder (replaces an earlier one); nothing if it has already started
+     */
+    public void scheduleReminder(int reservationCode, LocalDateTime reservationStart) {
+        if (!reservationStart.isAfter(LocalDateTime.now())) {
+            return;
+        }
+        // A reminder whose time has passed (e.g. after downtime) fires on the next tick
+        LocalDateTime remindAt = reservationStart.minusMinutes(reminderMinutes);
+        timers.schedule(reminderKey(reservationCode), remindAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+            () -> sendReminder(reservationCode));
+    }
+
+    public void cancelReminder(int reservationCode) {
+        timers.cancel(reminderKey(reservationCode));
+    }
+
+    private static String reminderKey(int reservationCode) {
+        return "remind-" + reservationCode;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    @Override
+    public synchronized void elected() {
+        if (running) {
+            return;
+        }
+        running = true;
+        resyncTask = scheduler.scheduleAtFixedRate(() -> {
+            QueryStats.beginRequest("reminderResync");
+            try {
+                parkingController.withConnection(() -> {
+                    loadReminders();
+                    return null;
+                });
+            } catch (Exception e) {
+                System.out.println("Error loading reservation reminders: " + e.getMessage());
+            } finally {
+                QueryStats.endRequest();
+            }
+        }, 0, RESYNC_HOURS, TimeUnit.HOURS);
+        catchUpTask = scheduler.scheduleWithFixedDelay(() -> {
+            QueryStats.beginRequest("reminderCatchUp");
+            try {
+                parkingController.withConnection(() -> {
+                    loadNewReminders();
+                    return null;
+                });
+            } catch (Exception e) {
+                System.out.println("Error loading reservation reminders: " + e.getMessage());
+            } finally {
+                QueryStats.endRequest();
+            }
+        }, CATCH_UP_MINUTES, CATCH_UP_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public synchronized void revoked() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        resyncTask.cancel(false);
+        catchUpTask.cancel(false);
+    }
+
+    public void shutdown() {
+        revoked();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * (Re)arms the unsent reminders of all preorders up to the end of the booking horizon
+     */
+    private void loadReminders() throws SQLException {
+        // Read the high mark first, so a reservation placed during the load is caught up later
+        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(
+                "SELECT COALESCE(MAX(Reservation_code), 0) FROM Reservations");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                lastLoadedCode = Math.max(lastLoadedCode, rs.getInt(1));
+            }
+        }
+
+        String query = """
+            SELECT Reservation_code, reservation_Date, reservation_start_time
+            FROM Reservations
+            WHERE statusEnum = 'preorder'
+            AND reservation_Date BETWEEN CURDATE() AND CURDATE() + INTERVAL 8 DAY
+            AND reservation_start_time IS NOT NULL
+            AND Reminder_sent = FALSE
+            """;
+        int loaded;
+        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            loaded = scheduleReminders(rs);
+        }
+        System.out.println("Reservation reminders: " + loaded + " pending (" + reminderMinutes + " min before start)");
+    }
+
+    /**
+     * Arms reminders of preorders placed since the last load, including through another server
+     */
+    private void loadNewReminders() throws SQLException {
+        String query = """
+            SELECT Reservation_code, reservation_Date, reservation_start_time
+            FROM Reservations
+            WHERE Reservation_code > ?
+            AND statusEnum = 'preorder'
+            AND reservation_start_time IS NOT NULL
+            AND Reminder_sent = FALSE
+            """;
+        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query)) {
+            stmt.setInt(1, lastLoadedCode);
+            try (ResultSet rs = stmt.executeQuery()) {
+                scheduleReminders(rs);
+            }
+        }
+    }
+
+    private int scheduleReminders(ResultSet rs) throws SQLException {
+        int loaded = 0;
+        while (rs.next()) {
+            int reservationCode = rs.getInt("Reservation_code");
+            scheduleReminder(reservationCode, LocalDateTime.of(rs.getDate("reservation_Date").toLocalDate(),
+                rs.getTime("reservation_start_time").toLocalTime()));
+            lastLoadedCode = Math.max(lastLoadedCode, reservationCode);
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Claims the reminder (still a preorder, not sent yet) and emails the subscriber
+     */
+    private void sendReminder(int reservationCode) {
+        if (!running || !parkingController.isSchedulerLeader()) {
+            return;
+        }
+        QueryStats.beginRequest("reservationReminder");
+        try {
+            String[] reminder = parkingController.executeTransaction("reservationReminder", () -> {
+                Connection conn = parkingController.getConnection();
+                String claimQry = """
+                    UPDATE Reservations SET Reminder_sent = TRUE
+                    WHERE Reservation_code = ? AND statusEnum = 'preorder' AND Reminder_sent = FALSE
+                    """;
+                try (PreparedStatement stmt = conn.prepareStatement(claimQry)) {
+                    stmt.setInt(1, reservationCode);
+                    if (stmt.executeUpdate() == 0) {
+                        return null; // activated, cancelled or reminded already
+                    }
+                }
+                String userQry = """
+                    SELECT u.Email, u.Name, r.reservation_start_time, r.assigned_parking_spot_id
+                    FROM Reservations r
+                    JOIN users u ON r.User_ID = u.User_ID
+                    WHERE r.Reservation_code = ?
+                    """;
+                try (PreparedStatement stmt = conn.prepareStatement(userQry)) {
+                    stmt.setInt(1, reservationCode);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return null;
+                        }
+                        return new String[] { rs.getString("Email"), rs.getString("Name"),
+                            rs.getTime("reservation_start_time").toLocalTime().toString(),
+                            String.valueOf(rs.getInt("assigned_parking_spot_id")) };
+                    }
+                }
+            });
+
+            if (reminder != null && reminder[0] != null) {
+                EmailService.sendReservationReminder(reminder[0], reminder[1], String.valueOf(reservationCode),
+                    reminder[2], reminder[3]);
+                sentCount.incrementAndGet();
+            }
+        } catch (SQLException e) {
+            System.out.println("Error sending reminder for reservation " + reservationCode + ": " + e.getMessage());
+        } finally {
+            QueryStats.endRequest();
+        }
+    }
+}
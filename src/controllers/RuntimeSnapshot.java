@@ -0,0 +1,281 @@
+package controllers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint of the server's in-memory state (spot occupancy, open sessions and the
+ * preorder bookings of the capacity timelines) in a memory-mapped file, so a restart
+ * can map it and replay only the rows changed since.
+ *
+ * Layout: magic, version, DB high-water mark (epoch millis), payload length, CRC32 of
+ * the payload, then the payload: spot count + spots, session count + sessions,
+ * booking count + bookings.
+ * Files are written to a temp file and atomically moved into place, so a crash
+ * mid-write leaves the previous checkpoint intact.
+ */
+public class RuntimeSnapshot {
+
+    private static final int MAGIC = 0x504B4253; // "PKBS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 8;
+
+    /**
+     * A spot's location and occupancy at checkpoint time
+     */
+    public static final class SpotState {
+        private final int spotId;
+        private final int lotId;
+        private final int level;
+        private final String zone;
+        private final boolean occupied;
+
+        public SpotState(int spotId, int lotId, int level, String zone, boolean occupied) {
+            this.spotId = spotId;
+            this.lotId = lotId;
+            this.level = level;
+            this.zone = zone;
+            this.occupied = occupied;
+        }
+
+        public int getSpotId() {
+            return spotId;
+        }
+
+        public int getLotId() {
+            return lotId;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public String getZone() {
+            return zone;
+        }
+
+        public boolean isOccupied() {
+            return occupied;
+        }
+    }
+
+    /**
+     * A preorder's [startSlot, endSlot) in its lot's capacity timeline; open sessions are
+     * rebuilt from the sessions instead
+     */
+    public static final class CapacityBooking {
+        private final int lotId;
+        private final int reservationCode;
+        private final long startSlot;
+        private final long endSlot;
+
+        public CapacityBooking(int lotId, int reservationCode, long startSlot, long endSlot) {
+            this.lotId = lotId;
+            this.reservationCode = reservationCode;
+            this.startSlot = startSlot;
+            this.endSlot = endSlot;
+        }
+
+        public int getLotId() {
+            return lotId;
+        }
+
+        public int getReservationCode() {
+            return reservationCode;
+        }
+
+        public long getStartSlot() {
+            return startSlot;
+        }
+
+        public long getEndSlot() {
+            return endSlot;
+        }
+    }
+
+    private final long highWaterMillis;
+    private final List<SpotState> spots;
+    private final List<ActiveSessionIndex.ActiveSession> sessions;
+    private final List<CapacityBooking> bookings;
+
+    public RuntimeSnapshot(long highWaterMillis, List<SpotState> spots, List<ActiveSessionIndex.ActiveSession> sessions,
+                           List<CapacityBooking> bookings) {
+        this.highWaterMillis = highWaterMillis;
+        this.spots = spots;
+        this.sessions = sessions;
+        this.bookings = bookings;
+    }
+
+    /**
+     * Database time at which the checkpoint was consistent; rows updated at or after it must be replayed
+     */
+    public long getHighWaterMillis() {
+        return highWaterMillis;
+    }
+
+    public List<SpotState> getSpots() {
+        return spots;
+    }
+
+    public List<ActiveSessionIndex.ActiveSession> getSessions() {
+        return sessions;
+    }
+
+    public List<CapacityBooking> getBookings() {
+        return bookings;
+    }
+
+    /**
+     * Writes the snapshot atomically to file
+     */
+    public void write(Path file) throws IOException {
+        List<byte[]> zones = new ArrayList<>(spots.size());
+        List<byte[]> orderTypes = new ArrayList<>(sessions.size());
+        int payloadBytes = 4 + 4 + 4 + bookings.size() * (4 + 4 + 8 + 8);
+        for (SpotState spot : spots) {
+            byte[] zone = bytes(spot.zone);
+            zones.add(zone);
+            payloadBytes += 4 + 4 + 4 + 2 + zone.length + 1;
+        }
+        for (ActiveSessionIndex.ActiveSession session : sessions) {
+            byte[] orderType = bytes(session.getOrderType());
+            orderTypes.add(orderType);
+            payloadBytes += 4 + 4 + 4 + 4 + 8 + 4 + 4 + 2 + orderType.length + 1;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + payloadBytes);
+
+            buffer.position(HEADER_BYTES);
+            buffer.putInt(spots.size());
+            for (int i = 0; i < spots.size(); i++) {
+                SpotState spot = spots.get(i);
+                buffer.putInt(spot.spotId).putInt(spot.lotId).putInt(spot.level);
+                putBytes(buffer, zones.get(i));
+                buffer.put((byte) (spot.occupied ? 1 : 0));
+            }
+            buffer.putInt(sessions.size());
+            for (int i = 0; i < sessions.size(); i++) {
+                ActiveSessionIndex.ActiveSession session = sessions.get(i);
+                buffer.putInt(session.getParkingInfoId()).putInt(session.getCode())
+                      .putInt(session.getUserId()).putInt(session.getSpotId())
+                      .putLong(session.getDate().toEpochDay())
+                      .putInt(session.getStartTime().toSecondOfDay())
+                      .putInt(session.getEstimatedEndTime().toSecondOfDay());
+                putBytes(buffer, orderTypes.get(i));
+                buffer.put((byte) (session.isExtended() ? 1 : 0));
+            }
+            buffer.putInt(bookings.size());
+            for (CapacityBooking booking : bookings) {
+                buffer.putInt(booking.lotId).putInt(booking.reservationCode)
+                      .putLong(booking.startSlot).putLong(booking.endSlot);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(HEADER_BYTES).limit(HEADER_BYTES + payloadBytes));
+            buffer.position(0);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(highWaterMillis).putInt(payloadBytes).putLong(crc.getValue());
+            buffer.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps and validates a snapshot file
+     *
+     * @return the snapshot, or null if the file is missing, truncated or fails its checksum
+     */
+    public static RuntimeSnapshot read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                System.out.println("⚠️ Runtime snapshot " + file + " is truncated - ignoring it");
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                System.out.println("⚠️ Runtime snapshot " + file + " has an unknown format - ignoring it");
+                return null;
+            }
+            long highWaterMillis = buffer.getLong();
+            int payloadBytes = buffer.getInt();
+            long expectedCrc = buffer.getLong();
+            if (payloadBytes < 0 || HEADER_BYTES + (long) payloadBytes > size) {
+                System.out.println("⚠️ Runtime snapshot " + file + " is truncated - ignoring it");
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(HEADER_BYTES).limit(HEADER_BYTES + payloadBytes));
+            if (crc.getValue() != expectedCrc) {
+                System.out.println("⚠️ Runtime snapshot " + file + " failed its checksum - ignoring it");
+                return null;
+            }
+
+            int spotCount = buffer.getInt();
+            List<SpotState> spots = new ArrayList<>(spotCount);
+            for (int i = 0; i < spotCount; i++) {
+                int spotId = buffer.getInt();
+                int lotId = buffer.getInt();
+                int level = buffer.getInt();
+                String zone = getString(buffer);
+                spots.add(new SpotState(spotId, lotId, level, zone, buffer.get() != 0));
+            }
+            int sessionCount = buffer.getInt();
+            List<ActiveSessionIndex.ActiveSession> sessions = new ArrayList<>(sessionCount);
+            for (int i = 0; i < sessionCount; i++) {
+                int parkingInfoId = buffer.getInt();
+                int code = buffer.getInt();
+                int userId = buffer.getInt();
+                int spotId = buffer.getInt();
+                LocalDate date = LocalDate.ofEpochDay(buffer.getLong());
+                LocalTime start = LocalTime.ofSecondOfDay(buffer.getInt());
+                LocalTime estimatedEnd = LocalTime.ofSecondOfDay(buffer.getInt());
+                String orderType = getString(buffer);
+                boolean extended = buffer.get() != 0;
+                sessions.add(new ActiveSessionIndex.ActiveSession(parkingInfoId, code, userId, spotId, date,
+                    start, estimatedEnd, orderType, extended));
+            }
+            int bookingCount = buffer.getInt();
+            List<CapacityBooking> bookings = new ArrayList<>(bookingCount);
+            for (int i = 0; i < bookingCount; i++) {
+                bookings.add(new CapacityBooking(buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong()));
+            }
+            return new RuntimeSnapshot(highWaterMillis, spots, sessions, bookings);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error reading runtime snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] value) {
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
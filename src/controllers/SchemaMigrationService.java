@@ -0,0 +1,342 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned schema migration runner for the ParkB database.
+ * Runs at server start, applies every migration newer than the version stored
+ * in the schema_version table, and verifies that the hot lookup queries use indexes.
+ */
+public class SchemaMigrationService {
+
+    private static final String VERSION_TABLE = "schema_version";
+
+    private final Connection conn;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    /**
+     * A single migration step (DDL statement or conditional index creation)
+     */
+    private interface MigrationStep {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * A numbered group of steps applied together
+     */
+    private static class Migration {
+        final int version;
+        final String description;
+        final List<MigrationStep> steps = new ArrayList<>();
+
+        Migration(int version, String description) {
+            this.version = version;
+            this.description = description;
+        }
+
+        Migration sql(String statement) {
+            steps.add(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(statement);
+                }
+            });
+            return this;
+        }
+
+        Migration index(String table, String indexName, String columns) {
+            steps.add(conn -> createIndexIfMissing(conn, table, indexName, columns));
+            return this;
+        }
+
+        Migration column(String table, String column, String definition) {
+            steps.add(conn -> addColumnIfMissing(conn, table, column, definition));
+            return this;
+        }
+    }
+
+    public SchemaMigrationService(Connection conn) {
+        this.conn = conn;
+        registerMigrations();
+    }
+
+    /**
+     * All schema versions in order. Never edit an applied migration - add a new one.
+     */
+    private void registerMigrations() {
+        migrations.add(new Migration(1, "Create core tables")
+            .sql("""
+                CREATE TABLE IF NOT EXISTS users (
+                    User_ID INT AUTO_INCREMENT PRIMARY KEY,
+                    UserName VARCHAR(50) NOT NULL,
+                    Name VARCHAR(100),
+                    Phone VARCHAR(20),
+                    Email VARCHAR(100),
+                    CarNum VARCHAR(20),
+                    UserTypeEnum ENUM('sub', 'emp', 'mng') NOT NULL DEFAULT 'sub'
+                )
+                """)
+            .sql("""
+                CREATE TABLE IF NOT EXISTS ParkingSpot (
+                    ParkingSpot_ID INT AUTO_INCREMENT PRIMARY KEY,
+                    isOccupied BOOLEAN NOT NULL DEFAULT FALSE
+                )
+                """)
+            .sql("""
+                CREATE TABLE IF NOT EXISTS ParkingInfo (
+                    ParkingInfo_ID INT AUTO_INCREMENT PRIMARY KEY,
+                    ParkingSpot_ID INT NOT NULL,
+                    User_ID INT NOT NULL,
+                    Date DATE NOT NULL,
+                    Code INT NOT NULL,
+                    Actual_start_time TIME,
+                    Actual_end_time TIME NULL,
+                    Estimated_start_time TIME,
+                    Estimated_end_time TIME,
+                    IsOrderedEnum ENUM('ordered', 'not ordered') NOT NULL DEFAULT 'not ordered',
+                    IsLate BOOLEAN NOT NULL DEFAULT FALSE,
+                    IsExtended BOOLEAN NOT NULL DEFAULT FALSE,
+                    FOREIGN KEY (ParkingSpot_ID) REFERENCES ParkingSpot(ParkingSpot_ID),
+                    FOREIGN KEY (User_ID) REFERENCES users(User_ID)
+                )
+                """)
+            .sql("""
+                CREATE TABLE IF NOT EXISTS Reservations (
+                    Reservation_code INT AUTO_INCREMENT PRIMARY KEY,
+                    User_ID INT NOT NULL,
+                    parking_ID INT,
+                    reservation_Date DATE NOT NULL,
+                    reservation_start_time TIME NULL,
+                    reservation_end_time TIME NULL,
+                    Date_Of_Placing_Order DATETIME,
+                    statusEnum ENUM('preorder', 'active', 'finished', 'cancelled', 'expire') NOT NULL DEFAULT 'preorder',
+                    assigned_parking_spot_id INT NULL,
+                    FOREIGN KEY (User_ID) REFERENCES users(User_ID)
+                )
+                """)
+            .sql("""
+                CREATE TABLE IF NOT EXISTS Reports (
+                    Report_ID INT AUTO_INCREMENT PRIMARY KEY,
+                    Report_Type VARCHAR(50) NOT NULL,
+                    Generated_Date DATETIME NOT NULL,
+                    Report_Data TEXT
+                )
+                """));
+
+        migrations.add(new Migration(2, "Indexes for hot lookup predicates")
+            .index("ParkingInfo", "idx_parkinginfo_code_open", "Code, Actual_end_time")
+            .index("users", "idx_users_username", "UserName")
+            .index("Reservations", "idx_reservations_status_date", "statusEnum, reservation_Date, reservation_start_time")
+            .index("ParkingSpot", "idx_parkingspot_occupied", "isOccupied"));
+
+        migrations.add(new Migration(3, "Parking lots, levels and zones")
+            .sql("""
+                CREATE TABLE IF NOT EXISTS ParkingLot (
+                    Lot_ID INT AUTO_INCREMENT PRIMARY KEY,
+                    Name VARCHAR(100) NOT NULL,
+                    Address VARCHAR(200),
+                    Levels INT NOT NULL DEFAULT 1
+                )
+                """)
+            .sql("INSERT IGNORE INTO ParkingLot (Lot_ID, Name, Levels) VALUES (1, 'ParkB Main', 1)")
+            .column("ParkingSpot", "Lot_ID", "INT NOT NULL DEFAULT 1")
+            .column("ParkingSpot", "Level", "INT NOT NULL DEFAULT 0")
+            .column("ParkingSpot", "Zone", "VARCHAR(10) NOT NULL DEFAULT 'A'")
+            .index("ParkingSpot", "idx_parkingspot_lot_occupied", "Lot_ID, isOccupied"));
+
+        // Lets a restart replay only the rows changed since the last runtime snapshot
+        migrations.add(new Migration(4, "Row change timestamps")
+            .column("ParkingSpot", "Updated_at",
+                "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)")
+            .column("ParkingInfo", "Updated_at",
+                "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)")
+            .index("ParkingSpot", "idx_parkingspot_updated", "Updated_at")
+            .index("ParkingInfo", "idx_parkinginfo_updated", "Updated_at"));
+
+        // One row per lease; background jobs run only on the server holding it (see LeaderLease)
+        migrations.add(new Migration(5, "Scheduler leader lease")
+            .sql("""
+                CREATE TABLE IF NOT EXISTS SchedulerLease (
+                    Lease_name VARCHAR(50) PRIMARY KEY,
+                    Owner VARCHAR(100) NULL,
+                    Expires_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+                )
+                """)
+            .sql("INSERT IGNORE INTO SchedulerLease (Lease_name) VALUES ('scheduler')"));
+
+        // Set when the pre-arrival reminder is claimed, so it goes out once across restarts and servers
+        migrations.add(new Migration(6, "Reservation reminders")
+            .column("Reservations", "Reminder_sent", "BOOLEAN NOT NULL DEFAULT FALSE"));
+
+        // Lets a restart replay only the reservations changed since the last runtime snapshot
+        migrations.add(new Migration(7, "Reservation change timestamps")
+            .column("Reservations", "Updated_at",
+                "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)")
+            .index("Reservations", "idx_reservations_updated", "Updated_at"));
+    }
+
+    /**
+     * Applies all pending migrations
+     * @return the schema version after migrating, or -1 on failure
+     */
+    public int migrate() {
+        try {
+            ensureVersionTable();
+            int current = getCurrentVersion();
+
+            for (Migration migration : migrations) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                for (MigrationStep step : migration.steps) {
+                    step.apply(conn);
+                }
+                recordVersion(migration);
+                current = migration.version;
+                System.out.println("Schema migrated to version " + migration.version + ": " + migration.description);
+            }
+
+            System.out.println("Database schema is up to date (version " + current + ")");
+            if (!verifyIndexUsage()) {
+                System.out.println("❌ Schema migration failed: hot queries are missing their indexes");
+                return -1;
+            }
+            return current;
+        } catch (SQLException e) {
+            System.out.println("Error running schema migrations: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Runs EXPLAIN on the hot gate/lookup queries and checks that the index meant for each
+     * one is among its possible keys. Checking possible_keys rather than the chosen key keeps
+     * the result independent of table size (the optimizer may scan a tiny table anyway).
+     * Called by migrate(), which fails if any index is missing.
+     * @return true if every query can resolve through its index
+     */
+    public boolean verifyIndexUsage() {
+        Map<String, String[]> hotQueries = new LinkedHashMap<>();
+        hotQueries.put("exit by parking code", new String[] { "idx_parkinginfo_code_open",
+            "SELECT * FROM ParkingInfo WHERE Code = 123456 AND Actual_end_time IS NULL" });
+        hotQueries.put("user by name", new String[] { "idx_users_username",
+            "SELECT * FROM users WHERE UserName = 'x'" });
+        hotQueries.put("preorders by date", new String[] { "idx_reservations_status_date",
+            "SELECT * FROM Reservations WHERE statusEnum = 'preorder' AND reservation_Date = CURDATE()" });
+        hotQueries.put("free spots", new String[] { "idx_parkingspot_occupied",
+            "SELECT ParkingSpot_ID FROM ParkingSpot WHERE isOccupied = false LIMIT 1" });
+
+        boolean allIndexed = true;
+        for (Map.Entry<String, String[]> entry : hotQueries.entrySet()) {
+            String index = entry.getValue()[0];
+            String possibleKeys = explainPossibleKeys(entry.getValue()[1]);
+            if (possibleKeys == null || !List.of(possibleKeys.split(",")).contains(index)) {
+                allIndexed = false;
+                System.out.println("⚠ Query '" + entry.getKey() + "' cannot use index " + index
+                    + " (possible keys: " + possibleKeys + ")");
+            } else {
+                System.out.println("Query '" + entry.getKey() + "' can use index " + index);
+            }
+        }
+        return allIndexed;
+    }
+
+    /**
+     * Returns the indexes the optimizer considers for a query (comma separated), or null if none
+     */
+    private String explainPossibleKeys(String query) {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + query)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString("possible_keys");
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error explaining query: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private void ensureVersionTable() throws SQLException {
+        String qry = "CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " (" +
+                     "version INT PRIMARY KEY, " +
+                     "description VARCHAR(200), " +
+                     "applied_at DATETIME NOT NULL)";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(qry);
+        }
+    }
+
+    private int getCurrentVersion() throws SQLException {
+        String qry = "SELECT COALESCE(MAX(version), 0) FROM " + VERSION_TABLE;
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void recordVersion(Migration migration) throws SQLException {
+        String qry = "INSERT INTO " + VERSION_TABLE + " (version, description, applied_at) VALUES (?, ?, NOW())";
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * MySQL has no ADD COLUMN IF NOT EXISTS, so check information_schema first
+     */
+    private static void addColumnIfMissing(Connection conn, String table, String column, String definition) throws SQLException {
+        String checkQry = """
+            SELECT COUNT(*) FROM information_schema.columns
+            WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?
+            """;
+        try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            System.out.println("Added column " + table + "." + column);
+        }
+    }
+
+    /**
+     * MySQL has no CREATE INDEX IF NOT EXISTS, so check information_schema first
+     */
+    private static void createIndexIfMissing(Connection conn, String table, String indexName, String columns) throws SQLException {
+        String checkQry = """
+            SELECT COUNT(*) FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?
+            """;
+        try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
+            stmt.setString(1, table);
+            stmt.setString(2, indexName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX " + indexName + " ON " + table + " (" + columns + ")");
+            System.out.println("Created index " + indexName + " on " + table + "(" + columns + ")");
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spot occupancy for every parking lot the server manages.
+ * Each lot has its own SpotOccupancyMap (bitmaps and free counter), so claims and
+ * counter updates in one lot never contend with another lot's traffic. A shard's bitmaps
+ * cover only its own lot's spot ID range, not every ID in the system.
+ * A spot-to-location table routes spot-level updates to the right shard.
+ */
+public class ShardedSpotOccupancy {
+
+    /**
+     * Where a spot is: lot, level and zone
+     */
+    public static class SpotLocation {
+        private final int spotId;
+        private final int lotId;
+        private final int level;
+        private final String zone;
+
+        SpotLocation(int spotId, int lotId, int level, String zone) {
+            this.spotId = spotId;
+            this.lotId = lotId;
+            this.level = level;
+            this.zone = zone;
+        }
+
+        public int getSpotId() {
+            return spotId;
+        }
+
+        public int getLotId() {
+            return lotId;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public String getZone() {
+            return zone;
+        }
+
+        /**
+         * Human readable label, e.g. "Spot 17 (Lot 1, Level 0, Zone A)"
+         */
+        public String label() {
+            return "Spot " + spotId + " (Lot " + lotId + ", Level " + level + ", Zone " + zone + ")";
+        }
+    }
+
+    private volatile Map<Integer, SpotOccupancyMap> lots = new TreeMap<>();
+    private volatile SpotLocation[] locations = new SpotLocation[0];
+    private volatile boolean loaded;
+
+    // Loading state, only touched under the monitor
+    private SpotLocation[] loadingLocations;
+    private boolean[] loadingOccupied;
+    private int loadingMaxSpotId;
+
+    /**
+     * Starts a reload; the previous state stays visible until markLoaded()
+     */
+    public synchronized void reset(int maxSpotId) {
+        loadingLocations = new SpotLocation[maxSpotId + 1];
+        loadingOccupied = new boolean[maxSpotId + 1];
+        loadingMaxSpotId = maxSpotId;
+    }
+
+    /**
+     * Registers a spot while loading
+     */
+    public synchronized void define(int spotId, int lotId, int level, String zone, boolean isOccupied) {
+        if (spotId < 0 || spotId > loadingMaxSpotId) {
+            return;
+        }
+        loadingLocations[spotId] = new SpotLocation(spotId, lotId, level, zone);
+        loadingOccupied[spotId] = isOccupied;
+    }
+
+    /**
+     * Builds one shard per lot, sized to that lot's lowest..highest spot ID, and publishes them
+     */
+    public synchronized void markLoaded() {
+        Map<Integer, int[]> ranges = new TreeMap<>();
+        for (SpotLocation location : loadingLocations) {
+            if (location != null) {
+                int[] range = ranges.computeIfAbsent(location.lotId, id -> new int[] { location.spotId, location.spotId });
+                range[0] = Math.min(range[0], location.spotId);
+                range[1] = Math.max(range[1], location.spotId);
+            }
+        }
+        Map<Integer, SpotOccupancyMap> shards = new TreeMap<>();
+        for (Map.Entry<Integer, int[]> range : ranges.entrySet()) {
+            SpotOccupancyMap shard = new SpotOccupancyMap();
+            shard.reset(range.getValue()[0], range.getValue()[1]);
+            shards.put(range.getKey(), shard);
+        }
+        for (SpotLocation location : loadingLocations) {
+            if (location != null) {
+                shards.get(location.lotId).define(location.spotId, loadingOccupied[location.spotId]);
+            }
+        }
+        for (SpotOccupancyMap shard : shards.values()) {
+            shard.markLoaded();
+        }
+        locations = loadingLocations;
+        lots = shards;
+        loaded = true;
+        loadingOccupied = null;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public SpotLocation getLocation(int spotId) {
+        SpotLocation[] table = locations;
+        return spotId >= 0 && spotId < table.length ? table[spotId] : null;
+    }
+
+    /**
+     * Label for a spot; falls back to "Spot <id>" for unknown spots
+     */
+    public String describe(int spotId) {
+        SpotLocation location = getLocation(spotId);
+        return location != null ? location.label() : "Spot " + spotId;
+    }
+
+    private SpotOccupancyMap shardOf(int spotId) {
+        SpotLocation location = getLocation(spotId);
+        return location != null ? lots.get(location.lotId) : null;
+    }
+
+    public boolean isKnown(int spotId) {
+        return shardOf(spotId) != null;
+    }
+
+    public boolean isFree(int spotId) {
+        SpotOccupancyMap shard = shardOf(spotId);
+        return shard != null && shard.isFree(spotId);
+    }
+
+    /**
+     * @return true if the state changed
+     */
+    public boolean setOccupied(int spotId, boolean isOccupied) {
+        SpotOccupancyMap shard = shardOf(spotId);
+        return shard != null && shard.setOccupied(spotId, isOccupied);
+    }
+
+    public boolean claim(int spotId) {
+        SpotOccupancyMap shard = shardOf(spotId);
+        return shard != null && shard.claim(spotId);
+    }
+
+    /**
+     * Atomically claims a free spot in a lot
+     *
+     * @return the spot ID, or -1 if the lot is full or unknown
+     */
+    public int claimFree(int lotId) {
+        SpotOccupancyMap shard = lots.get(lotId);
+        return shard != null ? shard.claimFree() : -1;
+    }
+
+    public int firstFree(int lotId) {
+        SpotOccupancyMap shard = lots.get(lotId);
+        return shard != null ? shard.firstFree() : -1;
+    }
+
+    public int getFreeCount(int lotId) {
+        SpotOccupancyMap shard = lots.get(lotId);
+        return shard != null ? shard.getFreeCount() : 0;
+    }
+
+    public int getTotalSpots(int lotId) {
+        SpotOccupancyMap shard = lots.get(lotId);
+        return shard != null ? shard.getTotalSpots() : 0;
+    }
+
+    /**
+     * Free spots over all lots
+     */
+    public int getFreeCount() {
+        int free = 0;
+        for (SpotOccupancyMap shard : lots.values()) {
+            free += shard.getFreeCount();
+        }
+        return free;
+    }
+
+    public int getTotalSpots() {
+        int total = 0;
+        for (SpotOccupancyMap shard : lots.values()) {
+            total += shard.getTotalSpots();
+        }
+        return total;
+    }
+
+    /**
+     * Locations of all loaded spots, in spot ID order
+     */
+    public List<SpotLocation> getLocations() {
+        List<SpotLocation> result = new ArrayList<>();
+        for (SpotLocation location : locations) {
+            if (location != null) {
+                result.add(location);
+            }
+        }
+        return result;
+    }
+
+    public List<Integer> getLotIds() {
+        return new ArrayList<>(lots.keySet());
+    }
+}
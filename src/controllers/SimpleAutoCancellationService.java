@@ -1,13 +1,20 @@
 package controllers;
 
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import services.EmailService; // 🆕 ADD THIS IMPORT
@@ -16,25 +23,46 @@ import services.EmailService; // 🆕 ADD THIS IMPORT
  * Simplified Automatic Reservation Cancellation Service
  * 15-minute rule: If a customer with "preorder" status is late by more than 15 minutes,
  * their reservation is automatically cancelled and the spot becomes available.
+ * Deadlines live in a timer wheel, armed on makeReservation and disarmed on activation/cancel.
+ * With several servers only the holder of the scheduler lease runs the service; deadlines are
+ * armed everywhere but ignored while stopped.
  * NOW INCLUDES EMAIL NOTIFICATIONS
  */
 public class SimpleAutoCancellationService {
     
     private final ParkingController parkingController;
     private final ScheduledExecutorService scheduler;
+    private final HashedTimerWheel timers;
+    private final AutoCancellationMetrics metrics = new AutoCancellationMetrics();
     private static final int LATE_THRESHOLD_MINUTES = 15;
-    private boolean isRunning = false;
+    private static final int RESYNC_HOURS = 1;
+    private static final int CATCH_UP_MINUTES = 1;
+    private static final String SWEEP_KEY = "noshow-sweep";
+    private volatile boolean isRunning = false;
+    private ScheduledFuture<?> resyncTask;
+    private ScheduledFuture<?> catchUpTask;
+    // Highest Reservation_code loaded so far - reservations placed on other servers are above it
+    private volatile int lastLoadedCode;
     
     public SimpleAutoCancellationService(ParkingController parkingController) {
         this.parkingController = parkingController;
         this.scheduler = Executors.newScheduledThreadPool(1);
+        this.timers = parkingController.getReservationTimers();
+        metrics.register();
+    }
+    
+    public AutoCancellationMetrics getMetrics() {
+        return metrics;
     }
     
     /**
      * Start the automatic cancellation service
-     * Runs every minute to check for late preorder reservations
+     * Loads the deadline (start + 15 min) of every pending preorder into the timer wheel;
+     * each one fires within a second of its deadline, and nothing queries the DB while idle.
+     * A periodic resync picks up reservations written outside this server.
+     * Can be stopped and started again as the scheduler lease moves between servers.
      */
-    public void startService() {
+    public synchronized void startService() {
         if (isRunning) {
             System.out.println("Auto-cancellation service is already running");
             return;
@@ -42,158 +70,329 @@ public class SimpleAutoCancellationService {
         
         isRunning = true;
         System.out.println("Starting automatic reservation cancellation service...");
-        System.out.println("Checking for late preorder reservations every minute (15+ min late = auto-cancel)");
+        System.out.println("Tracking preorder deadlines on a timer wheel (15+ min late = auto-cancel)");
         
-        // Schedule to run every minute
-        scheduler.scheduleAtFixedRate(() -> {
+        resyncTask = scheduler.scheduleAtFixedRate(() -> {
+            QueryStats.beginRequest("autoCancellationResync");
             try {
-                checkAndCancelLatePreorders();
+                parkingController.withConnection(() -> {
+                    loadDeadlines();
+                    return null;
+                });
             } catch (Exception e) {
+                metrics.recordError();
                 System.err.println("Error in auto-cancellation service: " + e.getMessage());
+            } finally {
+                QueryStats.endRequest();
             }
-        }, 0, 1, TimeUnit.MINUTES);
+        }, 0, RESYNC_HOURS, TimeUnit.HOURS);
+        
+        catchUpTask = scheduler.scheduleWithFixedDelay(() -> {
+            QueryStats.beginRequest("autoCancellationCatchUp");
+            try {
+                parkingController.withConnection(() -> {
+                    loadNewDeadlines();
+                    return null;
+                });
+            } catch (Exception e) {
+                metrics.recordError();
+                System.err.println("Error in auto-cancellation service: " + e.getMessage());
+            } finally {
+                QueryStats.endRequest();
+            }
+        }, CATCH_UP_MINUTES, CATCH_UP_MINUTES, TimeUnit.MINUTES);
     }
     
     /**
      * Stop the automatic cancellation service
      */
-    public void stopService() {
+    public synchronized void stopService() {
         if (!isRunning) {
             return;
         }
         
         isRunning = false;
-        scheduler.shutdown();
+        resyncTask.cancel(false);
+        catchUpTask.cancel(false);
+        timers.cancel(SWEEP_KEY);
         System.out.println("Auto-cancellation service stopped");
     }
     
     /**
-     * Main method that checks for and cancels late preorder reservations
-     * 🆕 NOW WITH EMAIL NOTIFICATIONS
+     * Arms the no-show deadline of a preorder reservation (replaces an earlier one)
+     */
+    public void scheduleDeadline(int reservationCode, LocalDateTime reservationStart) {
+        LocalDateTime deadline = reservationStart.plusMinutes(LATE_THRESHOLD_MINUTES);
+        timers.schedule(deadlineKey(reservationCode), deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+            () -> onDeadline(reservationCode));
+    }
+    
+    /**
+     * Disarms the deadline once the reservation is activated, cancelled or finished
+     */
+    public void removeDeadline(int reservationCode) {
+        timers.cancel(deadlineKey(reservationCode));
+    }
+    
+    private static String deadlineKey(int reservationCode) {
+        return "noshow-" + reservationCode;
+    }
+    
+    /**
+     * (Re)arms deadlines for all pending preorders from yesterday to the end of the booking horizon
      */
-    private void checkAndCancelLatePreorders() {
-    	String query = """
-    		    SELECT 
-    		        r.Reservation_code,
-    		        r.User_ID,
-    		        r.assigned_parking_spot_id,
-    		        u.UserName,
-    		        u.Email,
-    		        u.Name,
-    		        u.Phone,
-    		        TIMESTAMPDIFF(MINUTE, 
-    		            CONCAT(r.reservation_Date, ' ', r.reservation_start_time), 
-    		            NOW()) as minutes_late,
-    		        CONCAT(r.reservation_Date, ' ', r.reservation_start_time) as full_reservation_time
-    		    FROM Reservations r
-    		    JOIN users u ON r.User_ID = u.User_ID
-    		    WHERE r.statusEnum = 'preorder'
-    		    AND r.reservation_Date = CURDATE()
-    		    AND r.assigned_parking_spot_id IS NOT NULL
-    		    AND r.reservation_start_time IS NOT NULL
-    		    AND TIMESTAMPDIFF(MINUTE, 
-    		        CONCAT(r.reservation_Date, ' ', r.reservation_start_time), 
-    		        NOW()) >= ?
-    		    """;
+    private void loadDeadlines() throws SQLException {
+        long started = System.nanoTime();
+        // Plain range on (statusEnum, reservation_Date) - served by idx_reservations_status_date
+        String query = """
+            SELECT Reservation_code, reservation_Date, reservation_start_time
+            FROM Reservations
+            WHERE statusEnum = 'preorder'
+            AND reservation_Date BETWEEN CURDATE() - INTERVAL 1 DAY AND CURDATE() + INTERVAL 8 DAY
+            AND assigned_parking_spot_id IS NOT NULL
+            AND reservation_start_time IS NOT NULL
+            """;
+        
+        // Read the high mark first, so a reservation placed during the load is caught up later
+        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(
+                "SELECT COALESCE(MAX(Reservation_code), 0) FROM Reservations");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                lastLoadedCode = Math.max(lastLoadedCode, rs.getInt(1));
+            }
+        }
+        
+        int loaded;
+        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            loaded = scheduleDeadlines(rs);
+        }
+        metrics.recordResync(System.nanoTime() - started, loaded);
+        System.out.println("Auto-cancellation: tracking " + loaded + " preorder deadlines");
+        
+        // Anything already overdue (e.g. after downtime) is cancelled in one batch on the next tick
+        timers.schedule(SWEEP_KEY, System.currentTimeMillis(), this::sweepOverduePreorders);
+    }
+    
+    /**
+     * Arms deadlines for preorders placed since the last load, including those made through
+     * another server. A primary-key range, so it costs next to nothing when there are none.
+     */
+    private void loadNewDeadlines() throws SQLException {
+        String query = """
+            SELECT Reservation_code, reservation_Date, reservation_start_time
+            FROM Reservations
+            WHERE Reservation_code > ?
+            AND statusEnum = 'preorder'
+            AND assigned_parking_spot_id IS NOT NULL
+            AND reservation_start_time IS NOT NULL
+            """;
         
         try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query)) {
-            stmt.setInt(1, LATE_THRESHOLD_MINUTES);
-            
+            stmt.setInt(1, lastLoadedCode);
             try (ResultSet rs = stmt.executeQuery()) {
-                int cancelledCount = 0;
-                
-                while (rs.next()) {
-                    int reservationCode = rs.getInt("Reservation_code");
-                    int spotId = rs.getInt("assigned_parking_spot_id");
-                    String userName = rs.getString("UserName");
-                    String userEmail = rs.getString("Email");
-                    String fullName = rs.getString("Name");
-                    int minutesLate = rs.getInt("minutes_late");
-                    
-                    if (cancelLateReservation(reservationCode, spotId)) {
-                        cancelledCount++;
-                        
-                        // 🆕 SEND EMAIL NOTIFICATION for auto-cancellation
-                        if (userEmail != null && fullName != null) {
-                            EmailService.sendReservationCancelled(userEmail, fullName, String.valueOf(reservationCode));
-                        }
-                        
-                        System.out.println(String.format(
-                            "✅ AUTO-CANCELLED: Reservation %d for %s (Spot %d) - %d minutes late - Email sent",
-                            reservationCode, userName, spotId, minutesLate
-                        ));
-                    }
-                }
-                
-                if (cancelledCount > 0) {
-                    System.out.println(String.format(
-                        "Auto-cancellation completed: %d preorder reservations cancelled, %d spots freed, %d emails sent",
-                        cancelledCount, cancelledCount, cancelledCount
-                    ));
-                }
+                scheduleDeadlines(rs);
             }
-        } catch (SQLException e) {
-            System.err.println("Database error during auto-cancellation: " + e.getMessage());
         }
     }
     
+    private int scheduleDeadlines(ResultSet rs) throws SQLException {
+        int loaded = 0;
+        while (rs.next()) {
+            int reservationCode = rs.getInt("Reservation_code");
+            LocalDateTime start = LocalDateTime.of(rs.getDate("reservation_Date").toLocalDate(),
+                rs.getTime("reservation_start_time").toLocalTime());
+            scheduleDeadline(reservationCode, start);
+            lastLoadedCode = Math.max(lastLoadedCode, reservationCode);
+            loaded++;
+        }
+        return loaded;
+    }
+    
     /**
-     * Cancel a specific late preorder reservation and free up the parking spot
+     * Fires at a reservation's deadline. Deadlines that fire together (a morning rush, or all
+     * overdue ones right after startup) collapse into a single batch sweep on the next tick.
      */
-    private boolean cancelLateReservation(int reservationCode, int spotId) {
-        Connection conn = parkingController.getConnection();
-        
+    private void onDeadline(int reservationCode) {
+        if (!isRunning) {
+            return;
+        }
+        timers.schedule(SWEEP_KEY, System.currentTimeMillis(), this::sweepOverduePreorders);
+    }
+    
+    /**
+     * Cancels every overdue preorder in one batch and notifies the customers
+     * 🆕 NOW WITH EMAIL NOTIFICATIONS
+     */
+    private void sweepOverduePreorders() {
+        // Re-check right before acting: a paused server may have lost the lease meanwhile
+        if (!isRunning || !parkingController.isSchedulerLeader()) {
+            return;
+        }
+        QueryStats.beginRequest("autoCancellationSweep");
         try {
-            conn.setAutoCommit(false);
-            
-            // 1. Cancel the reservation (change status from preorder to cancelled)
-            String cancelQuery = """
-                UPDATE Reservations 
-                SET statusEnum = 'cancelled'
-                WHERE Reservation_code = ? AND statusEnum = 'preorder'
-                """;
-            
-            int updatedReservations = 0;
-            try (PreparedStatement stmt = conn.prepareStatement(cancelQuery)) {
-                stmt.setInt(1, reservationCode);
-                updatedReservations = stmt.executeUpdate();
-            }
+            List<CancelledReservation> cancelled = cancelOverduePreorders();
             
-            if (updatedReservations == 0) {
-                conn.rollback();
-                return false; // Reservation was already cancelled or doesn't exist
+            for (CancelledReservation reservation : cancelled) {
+                // 🆕 SEND EMAIL NOTIFICATION for auto-cancellation
+                if (reservation.email != null && reservation.name != null) {
+                    EmailService.sendReservationCancelled(reservation.email, reservation.name,
+                        String.valueOf(reservation.reservationCode));
+                }
+                
+                System.out.println(String.format(
+                    "✅ AUTO-CANCELLED: Reservation %d for %s (Spot %d) - %d minutes late - Email queued",
+                    reservation.reservationCode, reservation.userName, reservation.spotId, reservation.minutesLate
+                ));
             }
             
-            // 2. Free up the parking spot
-            String freeSpotQuery = """
-                UPDATE ParkingSpot 
-                SET isOccupied = FALSE 
-                WHERE ParkingSpot_ID = ?
-                """;
-            
-            try (PreparedStatement stmt = conn.prepareStatement(freeSpotQuery)) {
-                stmt.setInt(1, spotId);
-                stmt.executeUpdate();
+            if (!cancelled.isEmpty()) {
+                System.out.println(String.format(
+                    "Auto-cancellation completed: %d preorder reservations cancelled, %d emails queued",
+                    cancelled.size(), cancelled.size()
+                ));
             }
-            
-            conn.commit();
-            return true;
-            
         } catch (SQLException e) {
-            try {
-                conn.rollback();
-            } catch (SQLException rollbackEx) {
-                System.err.println("Failed to rollback transaction: " + rollbackEx.getMessage());
-            }
-            System.err.println("Failed to cancel reservation " + reservationCode + ": " + e.getMessage());
-            return false;
+            // Already counted as a rollback by cancelOverduePreorders
+            System.err.println("Database error during auto-cancellation: " + e.getMessage());
         } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                System.err.println("Failed to reset auto-commit: " + e.getMessage());
-            }
+            QueryStats.endRequest();
+        }
+    }
+    
+    /**
+     * A reservation cancelled by the batch, with what is needed to notify its owner
+     */
+    public static class CancelledReservation {
+        final int reservationCode;
+        final int spotId;
+        final String userName;
+        final String email;
+        final String name;
+        final long minutesLate;
+        final LocalDateTime deadline;
+        
+        CancelledReservation(int reservationCode, int spotId, String userName, String email, String name,
+                             long minutesLate, LocalDateTime deadline) {
+            this.reservationCode = reservationCode;
+            this.spotId = spotId;
+            this.userName = userName;
+            this.email = email;
+            this.name = name;
+            this.minutesLate = minutesLate;
+            this.deadline = deadline;
+        }
+        
+        public int getReservationCode() {
+            return reservationCode;
+        }
+        
+        public int getSpotId() {
+            return spotId;
+        }
+        
+        public String getEmail() {
+            return email;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getMinutesLate() {
+            return minutesLate;
+        }
+    }
+    
+    /**
+     * Cancels all preorders at least 15 minutes past their start in one transaction: a locking
+     * SELECT of the overdue set, then one set-based status UPDATE, so catching up after downtime
+     * costs the same round trips for 1 or 1000 reservations. The assigned spots were never
+     * occupied by these preorders, so there is nothing to free.
+     *
+     * @return the cancelled reservations, for notification
+     */
+    public List<CancelledReservation> cancelOverduePreorders() throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusMinutes(LATE_THRESHOLD_MINUTES);
+        
+        // Same predicate in both statements; the fixed cutoff keeps the sets identical
+        String overdue = """
+            r.statusEnum = 'preorder'
+            AND r.reservation_Date BETWEEN ? AND ?
+            AND r.assigned_parking_spot_id IS NOT NULL
+            AND r.reservation_start_time IS NOT NULL
+            AND TIMESTAMP(r.reservation_Date, r.reservation_start_time) <= ?
+            """;
+        String selectQuery = """
+            SELECT r.Reservation_code, r.assigned_parking_spot_id, r.reservation_Date, r.reservation_start_time,
+                   u.UserName, u.Email, u.Name
+            FROM Reservations r
+            JOIN users u ON r.User_ID = u.User_ID
+            WHERE """ + overdue + " FOR UPDATE";
+        String cancelQuery = """
+            UPDATE Reservations r
+            SET r.statusEnum = 'cancelled'
+            WHERE """ + overdue;
+        
+        long started = System.nanoTime();
+        // Rows read by the attempt that committed
+        int[] rows = new int[1];
+        List<CancelledReservation> result;
+        try {
+            result = parkingController.executeTransaction("autoCancelOverdue", () -> {
+                Connection conn = parkingController.getConnection();
+                List<CancelledReservation> cancelled = new ArrayList<>();
+                rows[0] = 0;
+                
+                try (PreparedStatement stmt = conn.prepareStatement(selectQuery)) {
+                    bindOverdue(stmt, cutoff);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            LocalDateTime start = LocalDateTime.of(rs.getDate("reservation_Date").toLocalDate(),
+                                rs.getTime("reservation_start_time").toLocalTime());
+                            cancelled.add(new CancelledReservation(rs.getInt("Reservation_code"),
+                                rs.getInt("assigned_parking_spot_id"), rs.getString("UserName"),
+                                rs.getString("Email"), rs.getString("Name"), Duration.between(start, now).toMinutes(),
+                                start.plusMinutes(LATE_THRESHOLD_MINUTES)));
+                        }
+                    }
+                }
+                rows[0] = cancelled.size();
+                if (cancelled.isEmpty()) {
+                    return cancelled;
+                }
+                
+                try (PreparedStatement stmt = conn.prepareStatement(cancelQuery)) {
+                    bindOverdue(stmt, cutoff);
+                    stmt.executeUpdate();
+                }
+                
+                for (CancelledReservation reservation : cancelled) {
+                    parkingController.recordEvent(ParkingEvent.Type.CANCEL, 0, reservation.reservationCode, 0,
+                        reservation.spotId, "auto-cancelled: late arrival");
+                    parkingController.reservationSettled(reservation.reservationCode);
+                }
+                return cancelled;
+            });
+        } catch (SQLException e) {
+            metrics.recordRollback();
+            throw e;
         }
+        
+        metrics.recordSweep(System.nanoTime() - started, rows[0], result.size());
+        long committedAt = System.currentTimeMillis();
+        for (CancelledReservation reservation : result) {
+            metrics.recordLag(committedAt - reservation.deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        return result;
+    }
+    
+    private static void bindOverdue(PreparedStatement stmt, LocalDateTime cutoff) throws SQLException {
+        // Yesterday too, so preorders missed during an overnight outage are caught up
+        stmt.setDate(1, Date.valueOf(cutoff.toLocalDate().minusDays(1)));
+        stmt.setDate(2, Date.valueOf(cutoff.toLocalDate()));
+        stmt.setTimestamp(3, Timestamp.valueOf(cutoff));
     }
     
     /**
@@ -206,11 +405,17 @@ public class SimpleAutoCancellationService {
             WHERE Reservation_code = ? AND statusEnum = 'preorder'
             """;
         
-        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query)) {
-            stmt.setInt(1, reservationCode);
-            int updated = stmt.executeUpdate();
+        try {
+            int updated = parkingController.withConnection(() -> {
+                try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query)) {
+                    stmt.setInt(1, reservationCode);
+                    return stmt.executeUpdate();
+                }
+            });
             
             if (updated > 0) {
+                parkingController.recordEvent(ParkingEvent.Type.ACTIVATE, 0, reservationCode, 0, 0, "");
+                parkingController.reservationSettled(reservationCode);
                 System.out.println("Reservation " + reservationCode + " activated (preorder → active)");
                 return true;
             }
@@ -226,59 +431,41 @@ public class SimpleAutoCancellationService {
      * Finish a reservation (change from active to finished when customer exits)
      */
     public boolean finishReservation(int reservationCode, int spotId) {
-        Connection conn = parkingController.getConnection();
-        
         try {
-            conn.setAutoCommit(false);
-            
-            // 1. Update reservation status to finished
-            String finishQuery = """
-                UPDATE Reservations 
-                SET statusEnum = 'finished'
-                WHERE Reservation_code = ? AND statusEnum = 'active'
-                """;
-            
-            int updated = 0;
-            try (PreparedStatement stmt = conn.prepareStatement(finishQuery)) {
-                stmt.setInt(1, reservationCode);
-                updated = stmt.executeUpdate();
-            }
-            
-            if (updated == 0) {
-                conn.rollback();
-                return false;
-            }
-            
-            // 2. Free up the parking spot
-            String freeSpotQuery = """
-                UPDATE ParkingSpot 
-                SET isOccupied = FALSE 
-                WHERE ParkingSpot_ID = ?
-                """;
+            boolean finished = parkingController.executeTransaction("finishReservation", () -> {
+                Connection conn = parkingController.getConnection();
+                
+                // 1. Update reservation status to finished
+                String finishQuery = """
+                    UPDATE Reservations 
+                    SET statusEnum = 'finished'
+                    WHERE Reservation_code = ? AND statusEnum = 'active'
+                    """;
+                
+                int updated = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(finishQuery)) {
+                    stmt.setInt(1, reservationCode);
+                    updated = stmt.executeUpdate();
+                }
+                
+                if (updated == 0) {
+                    return false;
+                }
+                parkingController.recordEvent(ParkingEvent.Type.FINISH, 0, reservationCode, 0, spotId, "");
+                
+                // 2. Free up the parking spot (keeps the in-memory occupancy map in sync)
+                parkingController.updateParkingSpotStatus(spotId, false);
+                return true;
+            });
             
-            try (PreparedStatement stmt = conn.prepareStatement(freeSpotQuery)) {
-                stmt.setInt(1, spotId);
-                stmt.executeUpdate();
+            if (finished) {
+                System.out.println("Reservation " + reservationCode + " finished and spot " + spotId + " freed");
             }
-            
-            conn.commit();
-            System.out.println("Reservation " + reservationCode + " finished and spot " + spotId + " freed");
-            return true;
+            return finished;
             
         } catch (SQLException e) {
-            try {
-                conn.rollback();
-            } catch (SQLException rollbackEx) {
-                System.err.println("Failed to rollback: " + rollbackEx.getMessage());
-            }
             System.err.println("Error finishing reservation: " + e.getMessage());
             return false;
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                System.err.println("Failed to reset auto-commit: " + e.getMessage());
-            }
         }
     }
     
@@ -301,6 +488,7 @@ public class SimpleAutoCancellationService {
      */
     public void shutdown() {
         stopService();
+        scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
                 scheduler.shutdownNow();
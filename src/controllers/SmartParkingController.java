@@ -7,6 +7,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -14,7 +15,12 @@ import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import entities.ParkingOrder;
 import entities.ParkingSubscriber;
@@ -38,16 +44,67 @@ public class SmartParkingController {
     
     protected Connection conn;
     public int successFlag;
+    
+    // Reservation and session time ranges per spot - answers conflict checks without queries
+    private final SpotIntervalIndex intervalIndex = new SpotIntervalIndex();
+    // Spots in use per 15-minute slot for the next 7 days - answers window capacity checks in O(log n)
+    private final CapacityTimeline capacityTimeline = new CapacityTimeline();
+    // "lot/zone" of each spot, used by ZONE_PACKING
+    private final Map<Integer, String> spotZones = new ConcurrentHashMap<>();
+    private volatile SpotAllocationStrategy allocationStrategy = SpotAllocationStrategy.fromProperty();
+    
+    // ParkingController, auto-cancellation and other servers write the same tables: rows changed since
+    // the last load are caught up from their Updated_at columns, and the whole index is rebuilt hourly
+    private static final int INDEX_CATCH_UP_SECONDS = 15;
+    private static final int INDEX_REBUILD_MINUTES = 60;
+    // Re-read a little before the mark so rows stamped just before it are never missed
+    private static final long INDEX_CATCH_UP_MARGIN_MILLIS = 2000;
+    private ScheduledExecutorService indexSync;
+    // Database time at which the index last matched the tables
+    private volatile Timestamp indexMark;
 
     public SmartParkingController(String dbname, String pass) {
         String connectPath = "jdbc:mysql://localhost/" + dbname + "?serverTimezone=IST";
         connectToDB(connectPath, pass);
+        if (successFlag == 1) {
+            rebuildIntervalIndex();
+            startIndexSync();
+        }
+    }
+    
+    /**
+     * Keeps the interval index in step with writes made outside this controller
+     */
+    private void startIndexSync() {
+        indexSync = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parkb-interval-index");
+            t.setDaemon(true);
+            return t;
+        });
+        indexSync.scheduleWithFixedDelay(this::catchUpIntervalIndex,
+            INDEX_CATCH_UP_SECONDS, INDEX_CATCH_UP_SECONDS, TimeUnit.SECONDS);
+        indexSync.scheduleWithFixedDelay(this::rebuildIntervalIndex,
+            INDEX_REBUILD_MINUTES, INDEX_REBUILD_MINUTES, TimeUnit.MINUTES);
+    }
+    
+    public void shutdown() {
+        if (indexSync != null) {
+            indexSync.shutdownNow();
+        }
     }
 
     public Connection getConnection() {
         return conn;
     }
 
+    public SpotAllocationStrategy getAllocationStrategy() {
+        return allocationStrategy;
+    }
+
+    public void setAllocationStrategy(SpotAllocationStrategy allocationStrategy) {
+        this.allocationStrategy = allocationStrategy;
+    }
+
     public void connectToDB(String path, String pass) {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
@@ -57,7 +114,7 @@ public class SmartParkingController {
         }
 
         try {
-            conn = DriverManager.getConnection(path, "root", pass);
+            conn = QueryStats.instrument(DriverManager.getConnection(path, "root", pass));
             System.out.println("SQL connection succeed");
             successFlag = 1;
         } catch (SQLException ex) {
@@ -210,6 +267,9 @@ public class SmartParkingController {
                 try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         int reservationCode = generatedKeys.getInt(1);
+                        // Date-only reservation: holds the spot for the whole day
+                        book(SpotIntervalIndex.reservationKey(reservationCode), parkingSpotID,
+                            resDate.atStartOfDay(), resDate.plusDays(1).atStartOfDay(), SpotIntervalIndex.Kind.RESERVATION);
                         return "Reservation confirmed. Confirmation code: " + reservationCode;
                     }
                 }
@@ -255,6 +315,8 @@ public class SmartParkingController {
             stmt.executeUpdate();
 
             updateParkingSpotStatus(spotID, true);
+            book(SpotIntervalIndex.sessionKey(parkingCode), spotID, now, estimatedEnd,
+                SpotIntervalIndex.Kind.SESSION);
             
             return "Entry successful. Parking code: " + parkingCode + ". Spot: " + spotID;
         } catch (SQLException e) {
@@ -309,6 +371,9 @@ public class SmartParkingController {
 
                         updateParkingSpotStatus(parkingSpotID, true);
                         updateReservationStatus(reservationCode, "expire");
+                        unbook(SpotIntervalIndex.reservationKey(reservationCode));
+                        book(SpotIntervalIndex.sessionKey(parkingCode), parkingSpotID, now, estimatedEnd,
+                            SpotIntervalIndex.Kind.SESSION);
                         
                         return "Entry successful with reservation. Parking code: " + parkingCode + ". Spot: " + parkingSpotID;
                     }
@@ -415,6 +480,7 @@ public class SmartParkingController {
                             updateStmt.executeUpdate();
                             
                             updateParkingSpotStatus(spotID, false);
+                            unbook(SpotIntervalIndex.sessionKey(parkingCode));
                             
                             if (isLate) {
                                 sendLateExitNotification(userID);
@@ -457,6 +523,12 @@ public class SmartParkingController {
                             updateStmt.setInt(2, parkingCode);
                             updateStmt.executeUpdate();
                             
+                            SpotIntervalIndex.Interval session = intervalIndex.get(SpotIntervalIndex.sessionKey(parkingCode));
+                            if (session != null) {
+                                extendBooking(session.getKey(),
+                                    SpotIntervalIndex.fromSlot(session.getEndSlot()).plusHours(additionalHours));
+                            }
+                            
                             return "Parking time extended by " + additionalHours + " hours until " + newEstimatedEnd;
                         }
                     }
@@ -604,6 +676,7 @@ public class SmartParkingController {
             int rowsUpdated = stmt.executeUpdate();
             
             if (rowsUpdated > 0) {
+                unbook(SpotIntervalIndex.reservationKey(reservationCode));
                 return "Reservation cancelled successfully";
             }
         } catch (SQLException e) {
@@ -760,6 +833,8 @@ public class SmartParkingController {
                 stmt.executeUpdate();
                 
                 updateSpotOccupancy(allocation.spotId, true);
+                book(SpotIntervalIndex.sessionKey(parkingCode), allocation.spotId, now, sessionEnd,
+                    SpotIntervalIndex.Kind.SESSION);
                 
                 return String.format("Spontaneous parking successful! Code: %d, Spot: %d, Duration: %d hours%s",
                                    parkingCode, allocation.spotId, allocation.allocatedHours,
@@ -822,6 +897,7 @@ public class SmartParkingController {
                             updateStmt.setTime(1, Time.valueOf(newEndTime.toLocalTime()));
                             updateStmt.setInt(2, parkingCode);
                             updateStmt.executeUpdate();
+                            extendBooking(SpotIntervalIndex.sessionKey(parkingCode), newEndTime);
                             
                             return String.format("Extension successful! Parking extended by %d hours until %s",
                                                maxExtensionHours, newEndTime.format(DateTimeFormatter.ofPattern("HH:mm")));
@@ -857,8 +933,203 @@ public class SmartParkingController {
         }
     }
 
+    /**
+     * Reloads the interval index: every spot, open sessions, and reservations from yesterday on
+     */
+    public void rebuildIntervalIndex() {
+        String spotsQuery = "SELECT ParkingSpot_ID, Lot_ID, Zone FROM ParkingSpot";
+        String reservationsQuery = """
+            SELECT Reservation_code, COALESCE(assigned_parking_spot_id, parking_ID) AS spot_id,
+                   reservation_Date, reservation_start_time, reservation_end_time
+            FROM Reservations
+            WHERE statusEnum IN ('preorder', 'active')
+            AND reservation_Date >= CURDATE() - INTERVAL 1 DAY
+            """;
+        String sessionsQuery = """
+            SELECT Code, ParkingSpot_ID, Date, Actual_start_time, Estimated_end_time
+            FROM ParkingInfo
+            WHERE Actual_end_time IS NULL
+            """;
+        
+        synchronized (intervalIndex) {
+            intervalIndex.clear();
+            capacityTimeline.clear();
+            spotZones.clear();
+            try {
+                // Read the mark first, so anything written during the load is caught up later
+                Timestamp mark = databaseNow();
+                try (PreparedStatement stmt = conn.prepareStatement(spotsQuery);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int spotId = rs.getInt("ParkingSpot_ID");
+                        intervalIndex.addSpot(spotId);
+                        spotZones.put(spotId, rs.getInt("Lot_ID") + "/" + rs.getString("Zone"));
+                    }
+                }
+                
+                try (PreparedStatement stmt = conn.prepareStatement(reservationsQuery);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        bookReservationRow(rs);
+                    }
+                }
+                
+                try (PreparedStatement stmt = conn.prepareStatement(sessionsQuery);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        bookSessionRow(rs);
+                    }
+                }
+                
+                indexMark = mark;
+                intervalIndex.markLoaded();
+                capacityTimeline.markLoaded();
+                System.out.println("Interval index loaded: " + intervalIndex.getSpotIds().size() + " spots, "
+                                 + intervalIndex.size() + " bookings");
+            } catch (SQLException e) {
+                System.out.println("Error loading interval index: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies the reservations and sessions changed since the last load or catch-up.
+     * A failure drops the index, so callers query the database until the next rebuild.
+     */
+    private void catchUpIntervalIndex() {
+        String reservationsQuery = """
+            SELECT Reservation_code, COALESCE(assigned_parking_spot_id, parking_ID) AS spot_id, statusEnum,
+                   reservation_Date, reservation_start_time, reservation_end_time
+            FROM Reservations
+            WHERE Updated_at >= ?
+            """;
+        String sessionsQuery = """
+            SELECT Code, ParkingSpot_ID, Date, Actual_start_time, Estimated_end_time, Actual_end_time
+            FROM ParkingInfo
+            WHERE Updated_at >= ?
+            """;
+        
+        synchronized (intervalIndex) {
+            if (!intervalIndex.isLoaded() || indexMark == null) {
+                rebuildIntervalIndex();
+                return;
+            }
+            Timestamp since = new Timestamp(indexMark.getTime() - INDEX_CATCH_UP_MARGIN_MILLIS);
+            try {
+                Timestamp mark = databaseNow();
+                LocalDate horizonStart = LocalDate.now().minusDays(1);
+                try (PreparedStatement stmt = conn.prepareStatement(reservationsQuery)) {
+                    stmt.setTimestamp(1, since);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            String status = rs.getString("statusEnum");
+                            boolean holdsSpot = ("preorder".equals(status) || "active".equals(status))
+                                && !rs.getDate("reservation_Date").toLocalDate().isBefore(horizonStart);
+                            if (!holdsSpot || !bookReservationRow(rs)) {
+                                unbook(SpotIntervalIndex.reservationKey(rs.getInt("Reservation_code")));
+                            }
+                        }
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(sessionsQuery)) {
+                    stmt.setTimestamp(1, since);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            if (rs.getTime("Actual_end_time") == null) {
+                                bookSessionRow(rs);
+                            } else {
+                                unbook(SpotIntervalIndex.sessionKey(rs.getInt("Code")));
+                            }
+                        }
+                    }
+                }
+                indexMark = mark;
+            } catch (SQLException e) {
+                System.out.println("Error catching up interval index: " + e.getMessage());
+                intervalIndex.clear();
+                capacityTimeline.clear();
+            }
+        }
+    }
+    
+    private Timestamp databaseNow() throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW(3)");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+    
+    /**
+     * Books a reservation row (Reservation_code, spot_id, date and times); date-only = whole day,
+     * missing end = STANDARD_BOOKING_HOURS
+     *
+     * @return false if the reservation has no spot
+     */
+    private boolean bookReservationRow(ResultSet rs) throws SQLException {
+        int spotId = rs.getInt("spot_id");
+        if (rs.wasNull()) {
+            return false;
+        }
+        LocalDate date = rs.getDate("reservation_Date").toLocalDate();
+        Time startTime = rs.getTime("reservation_start_time");
+        Time endTime = rs.getTime("reservation_end_time");
+        
+        LocalDateTime start;
+        LocalDateTime end;
+        if (startTime == null) {
+            // Date-only reservation holds the whole day
+            start = date.atStartOfDay();
+            end = start.plusDays(1);
+        } else {
+            start = LocalDateTime.of(date, startTime.toLocalTime());
+            end = endTime != null ? LocalDateTime.of(date, endTime.toLocalTime())
+                                  : start.plusHours(STANDARD_BOOKING_HOURS);
+            if (!end.isAfter(start)) {
+                end = end.plusDays(1); // crosses midnight
+            }
+        }
+        book(SpotIntervalIndex.reservationKey(rs.getInt("Reservation_code")),
+            spotId, start, end, SpotIntervalIndex.Kind.RESERVATION);
+        return true;
+    }
+    
+    /**
+     * Books an open session row (Code, ParkingSpot_ID, Date, Actual_start_time, Estimated_end_time)
+     */
+    private void bookSessionRow(ResultSet rs) throws SQLException {
+        LocalDate date = rs.getDate("Date").toLocalDate();
+        LocalDateTime start = LocalDateTime.of(date, rs.getTime("Actual_start_time").toLocalTime());
+        LocalDateTime end = LocalDateTime.of(date, rs.getTime("Estimated_end_time").toLocalTime());
+        if (!end.isAfter(start)) {
+            end = end.plusDays(1);
+        }
+        book(SpotIntervalIndex.sessionKey(rs.getInt("Code")),
+            rs.getInt("ParkingSpot_ID"), start, end, SpotIntervalIndex.Kind.SESSION);
+    }
+
     // ========== HELPER METHODS ==========
     
+    /**
+     * Records a reservation or session in both the interval index and the capacity timeline
+     */
+    private void book(String key, int spotId, LocalDateTime start, LocalDateTime end, SpotIntervalIndex.Kind kind) {
+        intervalIndex.put(key, spotId, start, end, kind);
+        capacityTimeline.add(key, start, end);
+    }
+    
+    private void unbook(String key) {
+        intervalIndex.remove(key);
+        capacityTimeline.remove(key);
+    }
+    
+    private void extendBooking(String key, LocalDateTime newEnd) {
+        SpotIntervalIndex.Interval interval = intervalIndex.get(key);
+        if (interval != null) {
+            book(key, interval.getSpotId(), SpotIntervalIndex.fromSlot(interval.getStartSlot()), newEnd, interval.getKind());
+        }
+    }
+    
     private static class SpotAllocation {
         int spotId;
         int allocatedHours;
@@ -901,6 +1172,12 @@ public class SmartParkingController {
     }
     
     private int countAvailableSpotsForWindow(LocalDateTime startTime, LocalDateTime endTime) {
+        if (capacityTimeline.isLoaded()) {
+            // Peak concurrent reservations + sessions in the window, from the in-memory timeline
+            int peakInUse = capacityTimeline.maxUsage(startTime, endTime);
+            return Math.max(0, TOTAL_PARKING_SPOTS - peakInUse);
+        }
+        // Timeline not (re)built yet - count from the tables
         try {
             int occupiedSpots = getCurrentlyOccupiedSpots();
             int reservedSpots = countReservationOverlaps(startTime, endTime);
@@ -914,13 +1191,7 @@ public class SmartParkingController {
     private int findOptimalSpotForPreBooking(LocalDateTime bookingStart, LocalDateTime bookingEnd) {
         try {
             List<Integer> availableSpots = getAllAvailableSpots(bookingStart, bookingEnd);
-            
-            if (availableSpots.isEmpty()) {
-                return -1;
-            }
-            
-            // Return first available spot (simple allocation)
-            return availableSpots.get(0);
+            return chooseSpot(availableSpots, bookingStart, bookingEnd);
             
         } catch (Exception e) {
             System.out.println("Error finding optimal spot: " + e.getMessage());
@@ -935,7 +1206,8 @@ public class SmartParkingController {
                 List<Integer> availableSpots = getAllAvailableSpots(startTime, endTime);
                 
                 if (!availableSpots.isEmpty()) {
-                    return new SpotAllocation(availableSpots.get(0), hours, hours >= PREFERRED_WINDOW_HOURS);
+                    int spotId = chooseSpot(availableSpots, startTime, endTime);
+                    return new SpotAllocation(spotId, hours, hours >= PREFERRED_WINDOW_HOURS);
                 }
             }
             
@@ -947,46 +1219,106 @@ public class SmartParkingController {
         }
     }
     
+    /**
+     * Picks one of the free spots with the configured strategy.
+     * Without the interval index all gaps look equal, so every strategy degrades to lowest ID.
+     */
+    private int chooseSpot(List<Integer> availableSpots, LocalDateTime startTime, LocalDateTime endTime) {
+        boolean indexed = intervalIndex.isLoaded();
+        long horizonSlots = CapacityTimeline.SLOTS_PER_DAY;
+        return allocationStrategy.choose(availableSpots,
+            spotId -> indexed ? intervalIndex.gapSlots(spotId, startTime, endTime, horizonSlots) : 0,
+            spotId -> spotZones.getOrDefault(spotId, ""));
+    }
+    
     private List<Integer> getAllAvailableSpots(LocalDateTime startTime, LocalDateTime endTime) throws SQLException {
-        List<Integer> availableSpots = new ArrayList<>();
+        if (intervalIndex.isLoaded()) {
+            // Served from the interval index: open sessions block their spot, so no occupancy query is needed
+            return intervalIndex.freeSpots(startTime, endTime);
+        }
+        return findFreeSpotsForWindow(startTime, endTime);
+    }
+    
+    private List<Integer> findFreeSpotsForWindow(LocalDateTime startTime, LocalDateTime endTime) throws SQLException {
+        return findFreeSpotsForWindow(startTime, endTime, 0);
+    }
+    
+    /**
+     * Set-based fallback: every spot with no overlapping reservation or open session in
+     * [startTime, endTime), in one anti-join query instead of one query per spot.
+     * Reads the tables even while the interval index is loaded.
+     *
+     * @param spotId only check this spot (its primary key bounds the anti-joins to one row), or 0 for all spots
+     */
+    public List<Integer> findFreeSpotsForWindow(LocalDateTime startTime, LocalDateTime endTime, int spotId)
+            throws SQLException {
+        List<Integer> freeSpots = new ArrayList<>();
         
-        String spotsQuery = "SELECT ParkingSpot_ID FROM ParkingSpot WHERE isOccupied = false ORDER BY ParkingSpot_ID";
+        // Reservation bounds mirror rebuildIntervalIndex: date-only = whole day, missing end = 4 hours,
+        // end before start = crosses midnight. Overstaying sessions block until they exit.
+        String query = """
+            SELECT ps.ParkingSpot_ID
+            FROM ParkingSpot ps
+            WHERE NOT EXISTS (
+                SELECT 1 FROM Reservations r
+                WHERE (r.assigned_parking_spot_id = ps.ParkingSpot_ID
+                       OR (r.assigned_parking_spot_id IS NULL AND r.parking_ID = ps.ParkingSpot_ID))
+                AND r.statusEnum IN ('preorder', 'active')
+                AND r.reservation_Date BETWEEN ? AND ?
+                AND TIMESTAMP(r.reservation_Date, COALESCE(r.reservation_start_time, '00:00:00')) < ?
+                AND CASE
+                        WHEN r.reservation_start_time IS NULL
+                            THEN TIMESTAMP(r.reservation_Date + INTERVAL 1 DAY, '00:00:00')
+                        WHEN r.reservation_end_time IS NULL
+                            THEN TIMESTAMP(r.reservation_Date, r.reservation_start_time) + INTERVAL 4 HOUR
+                        WHEN r.reservation_end_time <= r.reservation_start_time
+                            THEN TIMESTAMP(r.reservation_Date + INTERVAL 1 DAY, r.reservation_end_time)
+                        ELSE TIMESTAMP(r.reservation_Date, r.reservation_end_time)
+                    END > ?
+            )
+            AND NOT EXISTS (
+                SELECT 1 FROM ParkingInfo pi
+                WHERE pi.ParkingSpot_ID = ps.ParkingSpot_ID
+                AND pi.Actual_end_time IS NULL
+                AND TIMESTAMP(pi.Date, pi.Actual_start_time) < ?
+                AND GREATEST(
+                        CASE WHEN pi.Estimated_end_time <= pi.Actual_start_time
+                             THEN TIMESTAMP(pi.Date + INTERVAL 1 DAY, pi.Estimated_end_time)
+                             ELSE TIMESTAMP(pi.Date, pi.Estimated_end_time)
+                        END,
+                        NOW()) > ?
+            )
+            %s
+            ORDER BY ps.ParkingSpot_ID
+            """.formatted(spotId > 0 ? "AND ps.ParkingSpot_ID = ?" : "");
         
-        try (PreparedStatement stmt = conn.prepareStatement(spotsQuery)) {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            // A reservation from the previous day can run past midnight into the window
+            stmt.setDate(1, Date.valueOf(startTime.toLocalDate().minusDays(1)));
+            stmt.setDate(2, Date.valueOf(endTime.toLocalDate()));
+            stmt.setTimestamp(3, Timestamp.valueOf(endTime));
+            stmt.setTimestamp(4, Timestamp.valueOf(startTime));
+            stmt.setTimestamp(5, Timestamp.valueOf(endTime));
+            stmt.setTimestamp(6, Timestamp.valueOf(startTime));
+            if (spotId > 0) {
+                stmt.setInt(7, spotId);
+            }
+            
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int spotId = rs.getInt("ParkingSpot_ID");
-                    if (isSpotAvailableForPeriod(spotId, startTime, endTime)) {
-                        availableSpots.add(spotId);
-                    }
+                    freeSpots.add(rs.getInt("ParkingSpot_ID"));
                 }
             }
         }
         
-        return availableSpots;
+        return freeSpots;
     }
     
     private boolean isSpotAvailableForPeriod(int spotId, LocalDateTime startTime, LocalDateTime endTime) throws SQLException {
-        String conflictQuery = """
-            SELECT COUNT(*) FROM Reservations 
-            WHERE assigned_parking_spot_id = ? 
-            AND statusEnum = 'active'
-            AND NOT (reservation_Date < ? OR reservation_Date > ?)
-            """;
-        
-        try (PreparedStatement stmt = conn.prepareStatement(conflictQuery)) {
-            stmt.setInt(1, spotId);
-            stmt.setDate(2, Date.valueOf(endTime.toLocalDate()));
-            stmt.setDate(3, Date.valueOf(startTime.toLocalDate()));
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1) == 0;
-                }
-            }
+        if (intervalIndex.isLoaded()) {
+            return intervalIndex.isFree(spotId, startTime, endTime);
         }
-        
-        return false;
+        return !findFreeSpotsForWindow(startTime, endTime, spotId).isEmpty();
     }
     
     private int findMaximumExtension(int spotId, LocalDateTime currentEndTime) {
@@ -1020,20 +1352,25 @@ public class SmartParkingController {
     private String createReservationWithDateTime(int userID, int spotId, LocalDateTime startTime, LocalDateTime endTime, String type) throws SQLException {
         String insertQuery = """
             INSERT INTO Reservations 
-            (User_ID, parking_ID, reservation_Date, Date_Of_Placing_Order, statusEnum, assigned_parking_spot_id) 
-            VALUES (?, ?, ?, NOW(), 'active', ?)
+            (User_ID, parking_ID, reservation_Date, reservation_start_time, reservation_end_time,
+             Date_Of_Placing_Order, statusEnum, assigned_parking_spot_id) 
+            VALUES (?, ?, ?, ?, ?, NOW(), 'active', ?)
             """;
         
         try (PreparedStatement stmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
             stmt.setInt(1, userID);
             stmt.setInt(2, spotId);
             stmt.setDate(3, Date.valueOf(startTime.toLocalDate()));
-            stmt.setInt(4, spotId);
+            stmt.setTime(4, Time.valueOf(startTime.toLocalTime()));
+            stmt.setTime(5, Time.valueOf(endTime.toLocalTime()));
+            stmt.setInt(6, spotId);
             stmt.executeUpdate();
             
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     int reservationCode = generatedKeys.getInt(1);
+                    book(SpotIntervalIndex.reservationKey(reservationCode), spotId, startTime, endTime,
+                        SpotIntervalIndex.Kind.RESERVATION);
                     
                     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
                     return String.format("%s successful! Code: %d, Spot: %d, Time: %s to %s",
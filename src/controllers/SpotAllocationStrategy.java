@@ -0,0 +1,101 @@
+package controllers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * How SmartParkingController picks one spot out of those free for a booking window.
+ * Choosing by lowest ID scatters short bookings over the whole lot and leaves no spot
+ * with a long free window; the other strategies keep free time in large pieces.
+ * Selected with -Dbpark.allocationStrategy=FIRST_FIT|BEST_FIT|ZONE_PACKING; FIRST_FIT
+ * stays the default until the others are measured on real booking patterns.
+ */
+public enum SpotAllocationStrategy {
+
+    /**
+     * Lowest spot ID (the original behaviour)
+     */
+    FIRST_FIT {
+        @Override
+        public int choose(List<Integer> freeSpots, ToLongFunction<Integer> gapSlots, IntFunction<String> zoneOf) {
+            return freeSpots.isEmpty() ? -1 : freeSpots.get(0);
+        }
+    },
+
+    /**
+     * Spot whose free gap around the window is smallest, so large gaps stay intact
+     */
+    BEST_FIT {
+        @Override
+        public int choose(List<Integer> freeSpots, ToLongFunction<Integer> gapSlots, IntFunction<String> zoneOf) {
+            return tightest(freeSpots, gapSlots, null, zoneOf);
+        }
+    },
+
+    /**
+     * Fills the zone with the fewest free spots first, best-fit within it, so whole
+     * zones stay free for long stays
+     */
+    ZONE_PACKING {
+        @Override
+        public int choose(List<Integer> freeSpots, ToLongFunction<Integer> gapSlots, IntFunction<String> zoneOf) {
+            Map<String, Integer> freePerZone = new HashMap<>();
+            for (int spotId : freeSpots) {
+                freePerZone.merge(zoneOf.apply(spotId), 1, Integer::sum);
+            }
+            String fullestZone = null;
+            for (int spotId : freeSpots) {
+                String zone = zoneOf.apply(spotId);
+                if (fullestZone == null || freePerZone.get(zone) < freePerZone.get(fullestZone)) {
+                    fullestZone = zone;
+                }
+            }
+            return tightest(freeSpots, gapSlots, fullestZone, zoneOf);
+        }
+    };
+
+    public static final String STRATEGY_PROPERTY = "bpark.allocationStrategy";
+
+    /**
+     * @param freeSpots spots free for the window, in spot ID order
+     * @param gapSlots idle slots a spot would keep around the window
+     * @param zoneOf zone label of a spot
+     * @return the chosen spot ID, or -1 if freeSpots is empty
+     */
+    public abstract int choose(List<Integer> freeSpots, ToLongFunction<Integer> gapSlots, IntFunction<String> zoneOf);
+
+    /**
+     * Strategy from the system property, FIRST_FIT if unset or unknown
+     */
+    public static SpotAllocationStrategy fromProperty() {
+        String name = System.getProperty(STRATEGY_PROPERTY);
+        if (name != null) {
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown allocation strategy '" + name + "', using " + FIRST_FIT);
+            }
+        }
+        return FIRST_FIT;
+    }
+
+    private static int tightest(List<Integer> freeSpots, ToLongFunction<Integer> gapSlots,
+                                String zone, IntFunction<String> zoneOf) {
+        int best = -1;
+        long bestGap = Long.MAX_VALUE;
+        for (int spotId : freeSpots) {
+            if (zone != null && !zone.equals(zoneOf.apply(spotId))) {
+                continue;
+            }
+            long gap = gapSlots.applyAsLong(spotId);
+            if (gap < bestGap) {
+                best = spotId;
+                bestGap = gap;
+            }
+        }
+        return best;
+    }
+}
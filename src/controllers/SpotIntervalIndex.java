@@ -0,0 +1,288 @@
+package controllers;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory per-spot timeline of reservations and parking sessions, in 15-minute slots.
+ * Each spot keeps its intervals in a TreeMap ordered by start slot; together with the
+ * longest interval length this bounds a conflict check to the few intervals that can
+ * overlap the window, so checks take microseconds instead of a query per spot.
+ * Open sessions are kept separately because an overstaying car blocks its spot past
+ * its estimated end.
+ */
+public class SpotIntervalIndex {
+
+    public static final int SLOT_MINUTES = 15;
+
+    public enum Kind {
+        RESERVATION,
+        SESSION
+    }
+
+    /**
+     * A half-open [startSlot, endSlot) booking of one spot
+     */
+    public static final class Interval {
+        private final String key;
+        private final int spotId;
+        private final long startSlot;
+        private final long endSlot;
+        private final Kind kind;
+
+        Interval(String key, int spotId, long startSlot, long endSlot, Kind kind) {
+            this.key = key;
+            this.spotId = spotId;
+            this.startSlot = startSlot;
+            this.endSlot = endSlot;
+            this.kind = kind;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getSpotId() {
+            return spotId;
+        }
+
+        public long getStartSlot() {
+            return startSlot;
+        }
+
+        public long getEndSlot() {
+            return endSlot;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    /**
+     * Intervals of a single spot
+     */
+    private static class SpotTimeline {
+        final TreeMap<Long, List<Interval>> reservationsByStart = new TreeMap<>();
+        final List<Interval> sessions = new ArrayList<>(1);
+        long maxReservationSlots;
+    }
+
+    private final TreeMap<Integer, SpotTimeline> spots = new TreeMap<>();
+    private final Map<String, Interval> byKey = new HashMap<>();
+    private volatile boolean loaded;
+
+    public static String reservationKey(int reservationCode) {
+        return "R" + reservationCode;
+    }
+
+    public static String sessionKey(int parkingCode) {
+        return "S" + parkingCode;
+    }
+
+    public static boolean isSessionKey(String key) {
+        return key.startsWith("S");
+    }
+
+    /**
+     * Reservation code of a reservation key
+     */
+    public static int reservationCodeOf(String key) {
+        return Integer.parseInt(key.substring(1));
+    }
+
+    /**
+     * Slot containing the given time
+     */
+    public static long toSlot(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC) / 60, SLOT_MINUTES);
+    }
+
+    /**
+     * First slot boundary at or after the given time
+     */
+    public static long toSlotCeil(LocalDateTime time) {
+        long minutes = time.toEpochSecond(ZoneOffset.UTC) / 60;
+        return Math.floorDiv(minutes + SLOT_MINUTES - 1, SLOT_MINUTES);
+    }
+
+    public static LocalDateTime fromSlot(long slot) {
+        return LocalDateTime.ofEpochSecond(slot * SLOT_MINUTES * 60, 0, ZoneOffset.UTC);
+    }
+
+    public synchronized void clear() {
+        spots.clear();
+        byKey.clear();
+        loaded = false;
+    }
+
+    /**
+     * Marks the index as complete; until then callers should query the database
+     */
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Registers a spot so it is reported by freeSpots() even with an empty timeline
+     */
+    public synchronized void addSpot(int spotId) {
+        spots.computeIfAbsent(spotId, id -> new SpotTimeline());
+    }
+
+    /**
+     * Adds or replaces the interval stored under key
+     */
+    public synchronized void put(String key, int spotId, LocalDateTime start, LocalDateTime end, Kind kind) {
+        remove(key);
+        long startSlot = toSlot(start);
+        long endSlot = Math.max(toSlotCeil(end), startSlot + 1);
+        Interval interval = new Interval(key, spotId, startSlot, endSlot, kind);
+
+        SpotTimeline timeline = spots.computeIfAbsent(spotId, id -> new SpotTimeline());
+        if (kind == Kind.SESSION) {
+            timeline.sessions.add(interval);
+        } else {
+            timeline.reservationsByStart.computeIfAbsent(startSlot, s -> new ArrayList<>(1)).add(interval);
+            timeline.maxReservationSlots = Math.max(timeline.maxReservationSlots, endSlot - startSlot);
+        }
+        byKey.put(key, interval);
+    }
+
+    /**
+     * Moves the end of an existing interval (e.g. a parking extension)
+     *
+     * @return false if no interval is stored under key
+     */
+    public synchronized boolean extend(String key, LocalDateTime newEnd) {
+        Interval interval = byKey.get(key);
+        if (interval == null) {
+            return false;
+        }
+        put(key, interval.spotId, fromSlot(interval.startSlot), newEnd, interval.kind);
+        return true;
+    }
+
+    public synchronized boolean remove(String key) {
+        Interval interval = byKey.remove(key);
+        if (interval == null) {
+            return false;
+        }
+        SpotTimeline timeline = spots.get(interval.spotId);
+        if (interval.kind == Kind.SESSION) {
+            timeline.sessions.remove(interval);
+        } else {
+            List<Interval> sameStart = timeline.reservationsByStart.get(interval.startSlot);
+            sameStart.remove(interval);
+            if (sameStart.isEmpty()) {
+                timeline.reservationsByStart.remove(interval.startSlot);
+            }
+        }
+        return true;
+    }
+
+    public synchronized Interval get(String key) {
+        return byKey.get(key);
+    }
+
+    /**
+     * @return true if nothing booked on the spot overlaps [start, end)
+     */
+    public synchronized boolean isFree(int spotId, LocalDateTime start, LocalDateTime end) {
+        SpotTimeline timeline = spots.get(spotId);
+        return timeline != null && isFree(timeline, toSlot(start), toSlotCeil(end), toSlot(LocalDateTime.now()));
+    }
+
+    /**
+     * All registered spots that are free for [start, end), in spot ID order
+     */
+    public synchronized List<Integer> freeSpots(LocalDateTime start, LocalDateTime end) {
+        long startSlot = toSlot(start);
+        long endSlot = toSlotCeil(end);
+        long nowSlot = toSlot(LocalDateTime.now());
+
+        List<Integer> free = new ArrayList<>();
+        for (Map.Entry<Integer, SpotTimeline> entry : spots.entrySet()) {
+            if (isFree(entry.getValue(), startSlot, endSlot, nowSlot)) {
+                free.add(entry.getKey());
+            }
+        }
+        return free;
+    }
+
+    private static boolean isFree(SpotTimeline timeline, long startSlot, long endSlot, long nowSlot) {
+        for (Interval session : timeline.sessions) {
+            // A car still parked past its estimated end keeps blocking the spot
+            long sessionEnd = Math.max(session.endSlot, nowSlot + 1);
+            if (session.startSlot < endSlot && sessionEnd > startSlot) {
+                return false;
+            }
+        }
+
+        // Only reservations starting after (startSlot - longest reservation) can reach into the window
+        long from = startSlot - timeline.maxReservationSlots;
+        for (List<Interval> sameStart : timeline.reservationsByStart.subMap(from, false, endSlot, false).values()) {
+            for (Interval reservation : sameStart) {
+                if (reservation.endSlot > startSlot) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Idle slots the spot would be left with around [start, end): the distance back to the
+     * previous booking's end plus the distance forward to the next booking's start, each
+     * capped at horizonSlots. Smaller means the window fits the spot's free gap more tightly.
+     */
+    public synchronized long gapSlots(int spotId, LocalDateTime start, LocalDateTime end, long horizonSlots) {
+        long startSlot = toSlot(start);
+        long endSlot = toSlotCeil(end);
+        long previousEnd = startSlot - horizonSlots;
+        long nextStart = endSlot + horizonSlots;
+
+        SpotTimeline timeline = spots.get(spotId);
+        if (timeline != null) {
+            for (Interval session : timeline.sessions) {
+                if (session.endSlot <= startSlot) {
+                    previousEnd = Math.max(previousEnd, session.endSlot);
+                } else if (session.startSlot >= endSlot) {
+                    nextStart = Math.min(nextStart, session.startSlot);
+                }
+            }
+
+            // Reservations ending before the window started at most maxReservationSlots earlier
+            long from = previousEnd - timeline.maxReservationSlots;
+            for (List<Interval> sameStart : timeline.reservationsByStart.subMap(from, true, startSlot, false).values()) {
+                for (Interval reservation : sameStart) {
+                    if (reservation.endSlot <= startSlot) {
+                        previousEnd = Math.max(previousEnd, reservation.endSlot);
+                    }
+                }
+            }
+            Long next = timeline.reservationsByStart.ceilingKey(endSlot);
+            if (next != null) {
+                nextStart = Math.min(nextStart, next);
+            }
+        }
+        return (startSlot - previousEnd) + (nextStart - endSlot);
+    }
+
+    public synchronized List<Integer> getSpotIds() {
+        return new ArrayList<>(spots.keySet());
+    }
+
+    public synchronized int size() {
+        return byKey.size();
+    }
+}
@@ -0,0 +1,186 @@
+package controllers;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory copy of ParkingSpot.isOccupied, indexed by ParkingSpot_ID relative to the
+ * lowest ID of the range the map was sized for.
+ * Loaded from the database at startup and updated write-through by every spot
+ * status change, so availability checks never touch the database.
+ * Bits are flipped with CAS and the free counter moves only on an actual change.
+ * claimFree()/claim() atomically take a spot, so parallel gates never get the same one.
+ */
+public class SpotOccupancyMap {
+
+    private volatile AtomicLongArray known = new AtomicLongArray(0);
+    private volatile AtomicLongArray occupied = new AtomicLongArray(0);
+    // Spot ID stored at bit 0
+    private volatile int baseSpotId;
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final AtomicInteger totalSpots = new AtomicInteger();
+    private volatile boolean loaded;
+
+    /**
+     * Drops all state and sizes the map for spot IDs up to maxSpotId
+     */
+    public void reset(int maxSpotId) {
+        reset(0, maxSpotId);
+    }
+
+    /**
+     * Drops all state and sizes the map for spot IDs minSpotId..maxSpotId only
+     */
+    public synchronized void reset(int minSpotId, int maxSpotId) {
+        int words = (Math.max(0, maxSpotId - minSpotId) >>> 6) + 1;
+        baseSpotId = minSpotId;
+        known = new AtomicLongArray(words);
+        occupied = new AtomicLongArray(words);
+        freeCount.set(0);
+        totalSpots.set(0);
+        loaded = false;
+    }
+
+    /**
+     * Registers a spot while loading
+     */
+    public synchronized void define(int spotId, boolean isOccupied) {
+        if (!fits(spotId) || isKnown(spotId)) {
+            return;
+        }
+        int index = spotId - baseSpotId;
+        int word = index >>> 6;
+        long mask = 1L << (index & 63);
+        if (isOccupied) {
+            occupied.getAndAccumulate(word, mask, (bits, m) -> bits | m);
+        } else {
+            freeCount.incrementAndGet();
+        }
+        known.getAndAccumulate(word, mask, (bits, m) -> bits | m);
+        totalSpots.incrementAndGet();
+    }
+
+    /**
+     * Marks the map as complete; until then callers should fall back to the database
+     */
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Sets a spot's state
+     *
+     * @return true if the state changed
+     */
+    public boolean setOccupied(int spotId, boolean isOccupied) {
+        if (!isKnown(spotId)) {
+            return false;
+        }
+        AtomicLongArray bits = occupied;
+        int index = spotId - baseSpotId;
+        int word = index >>> 6;
+        long mask = 1L << (index & 63);
+        while (true) {
+            long current = bits.get(word);
+            boolean wasOccupied = (current & mask) != 0;
+            if (wasOccupied == isOccupied) {
+                return false;
+            }
+            long updated = isOccupied ? current | mask : current & ~mask;
+            if (bits.compareAndSet(word, current, updated)) {
+                if (isOccupied) {
+                    freeCount.decrementAndGet();
+                } else {
+                    freeCount.incrementAndGet();
+                }
+                return true;
+            }
+        }
+    }
+
+    public boolean isKnown(int spotId) {
+        int index = spotId - baseSpotId;
+        return fits(spotId) && (known.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    public boolean isFree(int spotId) {
+        int index = spotId - baseSpotId;
+        return isKnown(spotId) && (occupied.get(index >>> 6) & (1L << (index & 63))) == 0;
+    }
+
+    /**
+     * @return the lowest free spot ID, or -1 if none is free
+     */
+    public int firstFree() {
+        AtomicLongArray knownBits = known;
+        AtomicLongArray occupiedBits = occupied;
+        for (int word = 0; word < knownBits.length(); word++) {
+            long free = knownBits.get(word) & ~occupiedBits.get(word);
+            if (free != 0) {
+                return baseSpotId + (word << 6) + Long.numberOfTrailingZeros(free);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Atomically claims any free spot. Each call starts at a random 64-spot word so
+     * concurrent gates spread over the map instead of all racing for the lowest ID.
+     *
+     * @return the claimed spot ID, or -1 if none is free
+     */
+    public int claimFree() {
+        AtomicLongArray knownBits = known;
+        AtomicLongArray occupiedBits = occupied;
+        int words = knownBits.length();
+        if (words == 0 || freeCount.get() <= 0) {
+            return -1;
+        }
+        
+        int start = ThreadLocalRandom.current().nextInt(words);
+        for (int i = 0; i < words; i++) {
+            int word = (start + i) % words;
+            while (true) {
+                long current = occupiedBits.get(word);
+                long free = knownBits.get(word) & ~current;
+                if (free == 0) {
+                    break;
+                }
+                long mask = Long.lowestOneBit(free);
+                if (occupiedBits.compareAndSet(word, current, current | mask)) {
+                    freeCount.decrementAndGet();
+                    return baseSpotId + (word << 6) + Long.numberOfTrailingZeros(mask);
+                }
+                // Lost the race for this word - re-read and try its next free bit
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Atomically claims a specific spot
+     *
+     * @return true if the spot was free and is now ours
+     */
+    public boolean claim(int spotId) {
+        return isKnown(spotId) && setOccupied(spotId, true);
+    }
+
+    public int getFreeCount() {
+        return freeCount.get();
+    }
+
+    public int getTotalSpots() {
+        return totalSpots.get();
+    }
+
+    private boolean fits(int spotId) {
+        int index = spotId - baseSpotId;
+        return index >= 0 && (index >>> 6) < known.length();
+    }
+}
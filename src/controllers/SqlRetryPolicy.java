@@ -0,0 +1,186 @@
+package controllers;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Retries idempotent units of database work that failed for a transient reason
+ * (deadlock, lock-wait timeout, dropped connection) using jittered exponential backoff.
+ * Connection failures trigger a reconnect before the next attempt.
+ */
+public class SqlRetryPolicy {
+
+    /**
+     * A unit of work that may be re-run from the start
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Re-establishes the connection after a link failure
+     */
+    @FunctionalInterface
+    public interface Reconnector {
+        void reconnect() throws SQLException;
+    }
+
+    /**
+     * Classification of a failed statement
+     */
+    public enum FailureType {
+        DEADLOCK,
+        LOCK_TIMEOUT,
+        CONNECTION,
+        OTHER_TRANSIENT,
+        PERMANENT;
+
+        public boolean isRetryable() {
+            return this != PERMANENT;
+        }
+    }
+
+    // MySQL vendor codes
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Reconnector reconnector;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong giveUps = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    // Retries per FailureType ordinal, to tell lock contention from a flaky link
+    private final AtomicLongArray retriesByType = new AtomicLongArray(FailureType.values().length);
+
+    public SqlRetryPolicy(Reconnector reconnector) {
+        this(4, 50, 2000, reconnector);
+    }
+
+    public SqlRetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis, Reconnector reconnector) {
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.reconnector = reconnector;
+    }
+
+    /**
+     * Classifies an exception (including chained causes) by SQLState and vendor code
+     */
+    public static FailureType classify(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (!(t instanceof SQLException)) {
+                continue;
+            }
+            SQLException sqlEx = (SQLException) t;
+            String state = sqlEx.getSQLState();
+
+            if (sqlEx.getErrorCode() == ER_LOCK_DEADLOCK || "40001".equals(state)) {
+                return FailureType.DEADLOCK;
+            }
+            if (sqlEx.getErrorCode() == ER_LOCK_WAIT_TIMEOUT) {
+                return FailureType.LOCK_TIMEOUT;
+            }
+            if ((state != null && state.startsWith("08"))
+                    || sqlEx instanceof SQLRecoverableException
+                    || sqlEx instanceof SQLTransientConnectionException) {
+                return FailureType.CONNECTION;
+            }
+            if (sqlEx instanceof SQLTransientException) {
+                return FailureType.OTHER_TRANSIENT;
+            }
+        }
+        return FailureType.PERMANENT;
+    }
+
+    /**
+     * Runs the work, retrying transient failures. Permanent failures and the
+     * last transient failure are rethrown to the caller.
+     */
+    public <T> T execute(String operation, SqlWork<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.run();
+            } catch (SQLException e) {
+                FailureType type = classify(e);
+                if (!type.isRetryable()) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    giveUps.incrementAndGet();
+                    System.out.println("Giving up on " + operation + " after " + attempt + " attempts (" + type + "): " + e.getMessage());
+                    throw e;
+                }
+
+                retries.incrementAndGet();
+                retriesByType.incrementAndGet(type.ordinal());
+                System.out.println("Transient " + type + " in " + operation + " (attempt " + attempt + "), retrying: " + e.getMessage());
+                backoff(attempt);
+
+                if (type == FailureType.CONNECTION && reconnector != null) {
+                    reconnectQuietly();
+                }
+            }
+        }
+    }
+
+    /**
+     * Full jitter: sleep a random time in [0, min(max, base * 2^(attempt-1))]
+     */
+    private void backoff(int attempt) throws SQLException {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        long sleep = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry", ie);
+        }
+    }
+
+    private void reconnectQuietly() {
+        try {
+            reconnector.reconnect();
+            reconnects.incrementAndGet();
+        } catch (SQLException e) {
+            // The next attempt fails as a connection error and is retried again
+            System.out.println("Reconnect failed: " + e.getMessage());
+        }
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getGiveUpCount() {
+        return giveUps.get();
+    }
+
+    public long getReconnectCount() {
+        return reconnects.get();
+    }
+
+    /**
+     * Retries per retryable failure type as "DEADLOCK:2 LOCK_TIMEOUT:0 ..."
+     */
+    public String formatRetriesByType() {
+        StringBuilder sb = new StringBuilder();
+        for (FailureType type : FailureType.values()) {
+            if (type.isRetryable()) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(type).append(':').append(retriesByType.get(type.ordinal()));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package controllers;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import entities.ParkingSubscriber;
+
+/**
+ * Bounded LRU cache of users rows, keyed by UserName with a secondary User_ID index.
+ * Removes the repeated users lookups done for role checks, ID resolution and email details.
+ * Entries must be invalidated whenever the underlying row changes.
+ */
+public class UserCache {
+
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final LinkedHashMap<String, ParkingSubscriber> byUserName;
+    private final Map<Integer, String> userNameById = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public UserCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UserCache(int capacity) {
+        this.capacity = capacity;
+        // Access-ordered map so the least recently used user is evicted first
+        this.byUserName = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParkingSubscriber> eldest) {
+                if (size() > UserCache.this.capacity) {
+                    userNameById.remove(eldest.getValue().getSubscriberID());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached user, or null on a miss
+     */
+    public synchronized ParkingSubscriber getByUserName(String userName) {
+        ParkingSubscriber user = byUserName.get(userName);
+        record(user != null);
+        return user;
+    }
+
+    /**
+     * @return the cached user, or null on a miss
+     */
+    public synchronized ParkingSubscriber getByUserId(int userID) {
+        String userName = userNameById.get(userID);
+        ParkingSubscriber user = userName != null ? byUserName.get(userName) : null;
+        record(user != null);
+        return user;
+    }
+
+    public synchronized void put(ParkingSubscriber user) {
+        if (user == null || user.getSubscriberCode() == null) {
+            return;
+        }
+        byUserName.put(user.getSubscriberCode(), user);
+        userNameById.put(user.getSubscriberID(), user.getSubscriberCode());
+    }
+
+    /**
+     * Drops a user after its row was inserted or updated
+     */
+    public synchronized void invalidate(String userName) {
+        ParkingSubscriber removed = byUserName.remove(userName);
+        if (removed != null) {
+            userNameById.remove(removed.getSubscriberID());
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        byUserName.clear();
+        userNameById.clear();
+    }
+
+    private void record(boolean hit) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public synchronized int size() {
+        return byUserName.size();
+    }
+}
@@ -206,7 +206,16 @@ public class Message implements Serializable {
         /**
          * Cancellation response  
          */
-        CANCELLATION_RESPONSE
+        CANCELLATION_RESPONSE,
+        
+        /**
+         * List parking lots with availability
+         */
+        GET_PARKING_LOTS,
+        /**
+         * Parking lots response
+         */
+        PARKING_LOTS_RESPONSE
     }
 
     // Constructors ******************************************************
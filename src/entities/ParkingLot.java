@@ -0,0 +1,82 @@
+package entities;
+
+import java.io.Serializable;
+
+/**
+ * Represents a parking lot (garage) managed by the ParkB server.
+ * Spots belong to exactly one lot and are further grouped by level and zone.
+ */
+public class ParkingLot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int lotID;
+    private String name;
+    private String address;
+    private int levels;
+    private int totalSpots;
+    private int availableSpots;
+
+    // Constructors
+    public ParkingLot() {}
+
+    public ParkingLot(int lotID, String name, String address, int levels) {
+        this.lotID = lotID;
+        this.name = name;
+        this.address = address;
+        this.levels = levels;
+    }
+
+    // Getters and Setters
+    public int getLotID() {
+        return lotID;
+    }
+
+    public void setLotID(int lotID) {
+        this.lotID = lotID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public void setLevels(int levels) {
+        this.levels = levels;
+    }
+
+    public int getTotalSpots() {
+        return totalSpots;
+    }
+
+    public void setTotalSpots(int totalSpots) {
+        this.totalSpots = totalSpots;
+    }
+
+    public int getAvailableSpots() {
+        return availableSpots;
+    }
+
+    public void setAvailableSpots(int availableSpots) {
+        this.availableSpots = availableSpots;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + availableSpots + "/" + totalSpots + " available)";
+    }
+}
@@ -5,24 +5,29 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.net.InetAddress;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
+import controllers.AsyncParkingController;
 import controllers.ParkingController;
+import controllers.QueryStats;
 import controllers.ReportController;
+import controllers.SchemaMigrationService;
 import entities.Message;
 import entities.Message.MessageType;
-import entities.ParkingOrder;
-import entities.ParkingReport;
-import entities.ParkingSubscriber;
 import ocsf.server.AbstractServer;
 import ocsf.server.ConnectionToClient;
 import serverGUI.ServerPortFrame;
+import services.EmailService;
+import services.ServerMetrics;
 
 /**
  * ParkingServer - Main server for the ParkB automatic parking management system
@@ -39,6 +44,7 @@ public class ParkingServer extends AbstractServer {
     // Controllers (following your pattern)
     public static ParkingController parkingController;
     public static ReportController reportController;
+    public static AsyncParkingController asyncParkingController;
     public static ServerPortFrame spf;
     
     // Connection management
@@ -49,6 +55,7 @@ public class ParkingServer extends AbstractServer {
     private ScheduledExecutorService connectionPoolTimer;
     private final int POOL_SIZE = 5;
     private final int TIMER_INTERVAL = 30; // 30 seconds
+    private static final long EMAIL_DRAIN_MILLIS = 10_000;
     
     // Constructors ****************************************************
     
@@ -78,6 +85,10 @@ public class ParkingServer extends AbstractServer {
                 System.out.println("Connection Pool Status - Active connections: " + clientsMap.size());
                 cleanupInactiveConnections();
             }
+            // Without the GUI the console is the only place the gauges show up
+            if (spf == null) {
+                System.out.print("=== Server Metrics ===\n" + ServerMetrics.format());
+            }
         }, 0, TIMER_INTERVAL, TimeUnit.SECONDS);
     }
     
@@ -109,6 +120,7 @@ public class ParkingServer extends AbstractServer {
             ex.printStackTrace();
         }
         
+        // No DB work happens here: statements are counted per operation on the executors that run them
         // Handle Message objects (following your pattern)
         if (msg instanceof Message) {
             handleMessageObject((Message) msg, client);
@@ -130,24 +142,32 @@ public class ParkingServer extends AbstractServer {
             switch (message.getType()) {
             case SUBSCRIBER_LOGIN:
                 String subscriberCode = (String) message.getContent();
-                ParkingSubscriber subscriber = parkingController.getUserInfo(subscriberCode);
-                ret = new Message(MessageType.SUBSCRIBER_LOGIN_RESPONSE, subscriber);
-                client.sendToClient(serialize(ret));
+                replyMessageAsync(client, asyncParkingController.getUserInfo(subscriberCode),
+                    MessageType.SUBSCRIBER_LOGIN_RESPONSE, error -> null);
                 break;
                 
             case CHECK_PARKING_AVAILABILITY:
-                int availableSpots = parkingController.getAvailableParkingSpots();
-                ret = new Message(MessageType.PARKING_AVAILABILITY_RESPONSE, availableSpots);
-                client.sendToClient(serialize(ret));
+                // Optional lot ID as content; without it the total over all lots is returned
+                CompletableFuture<Integer> availableSpots = message.getContent() instanceof Integer
+                    ? asyncParkingController.getAvailableParkingSpots((Integer) message.getContent())
+                    : asyncParkingController.getAvailableParkingSpots();
+                replyMessageAsync(client, availableSpots, MessageType.PARKING_AVAILABILITY_RESPONSE, error -> null);
                 break;
                 
             case RESERVE_PARKING:
+                // Format: userName,reservationDate[,lotId]
                 String[] reservationData = ((String) message.getContent()).split(",");
                 String reservationUserName = reservationData[0]; // ← RENAMED
                 String reservationDate = reservationData[1];
-                String reservationResult = parkingController.makeReservation(reservationUserName, reservationDate);
-                ret = new Message(MessageType.RESERVATION_RESPONSE, reservationResult);
-                client.sendToClient(serialize(ret));
+                int reservationLot = reservationData.length > 2
+                    ? Integer.parseInt(reservationData[2].trim()) : ParkingController.DEFAULT_LOT_ID;
+                replyMessageAsync(client, asyncParkingController.makeReservation(reservationUserName, reservationDate, reservationLot),
+                    MessageType.RESERVATION_RESPONSE, error -> "ERROR: " + error);
+                break;
+                
+            case GET_PARKING_LOTS:
+                replyMessageAsync(client, asyncParkingController.getParkingLots(),
+                    MessageType.PARKING_LOTS_RESPONSE, error -> null);
                 break;
 
             case REGISTER_SUBSCRIBER:
@@ -163,53 +183,47 @@ public class ParkingServer extends AbstractServer {
                     String carNumber = regParts[4].trim();
                     String subscriberUserName = regParts[5].trim(); // ← RENAMED
                     
-                    String registrationResult = parkingController.registerNewSubscriber(
-                        attendantUserName, name, phone, email, carNumber, subscriberUserName);
-                    ret = new Message(MessageType.REGISTRATION_RESPONSE, registrationResult);
-                } else {
-                    ret = new Message(MessageType.REGISTRATION_RESPONSE, "ERROR: Invalid registration data format");
+                    replyMessageAsync(client, asyncParkingController.registerNewSubscriber(
+                        attendantUserName, name, phone, email, carNumber, subscriberUserName),
+                        MessageType.REGISTRATION_RESPONSE, error -> "ERROR: " + error);
+                    break;
                 }
+                ret = new Message(MessageType.REGISTRATION_RESPONSE, "ERROR: Invalid registration data format");
                 client.sendToClient(serialize(ret));
                 break;
 
             case REQUEST_LOST_CODE:
                 String lostCodeUserName = (String) message.getContent(); // ← RENAMED
-                String lostCodeResult = parkingController.sendLostParkingCode(lostCodeUserName);
-                ret = new Message(MessageType.LOST_CODE_RESPONSE, lostCodeResult);
-                client.sendToClient(serialize(ret));
+                replyMessageAsync(client, asyncParkingController.sendLostParkingCode(lostCodeUserName),
+                    MessageType.LOST_CODE_RESPONSE, error -> "ERROR: " + error);
                 break;
                 
             case GET_PARKING_HISTORY:
                 String historyUserName = (String) message.getContent(); // ← RENAMED
-                ArrayList<ParkingOrder> history = parkingController.getParkingHistory(historyUserName);
-                ret = new Message(MessageType.PARKING_HISTORY_RESPONSE, history);
-                client.sendToClient(serialize(ret));
+                replyMessageAsync(client, asyncParkingController.getParkingHistory(historyUserName),
+                    MessageType.PARKING_HISTORY_RESPONSE, error -> null);
                 break;
                 
             case MANAGER_GET_REPORTS:
                 String reportType = (String) message.getContent();
-                ArrayList<ParkingReport> reports = reportController.getParkingReports(reportType);
-                ret = new Message(MessageType.MANAGER_SEND_REPORTS, reports);
-                client.sendToClient(serialize(ret));
+                replyMessageAsync(client, reportController.getParkingReportsAsync(reportType),
+                    MessageType.MANAGER_SEND_REPORTS, error -> null);
                 break;
                 
             case GET_ACTIVE_PARKINGS:
-                ArrayList<ParkingOrder> activeParkings = parkingController.getActiveParkings();
-                ret = new Message(MessageType.ACTIVE_PARKINGS_RESPONSE, activeParkings);
-                client.sendToClient(serialize(ret));
+                replyMessageAsync(client, asyncParkingController.getActiveParkings(),
+                    MessageType.ACTIVE_PARKINGS_RESPONSE, error -> null);
                 break;
                 
             case UPDATE_SUBSCRIBER_INFO:
-                String updateResult = parkingController.updateSubscriberInfo((String) message.getContent());
-                ret = new Message(MessageType.UPDATE_SUBSCRIBER_RESPONSE, updateResult);
-                client.sendToClient(serialize(ret));
+                replyMessageAsync(client, asyncParkingController.updateSubscriberInfo((String) message.getContent()),
+                    MessageType.UPDATE_SUBSCRIBER_RESPONSE, error -> "ERROR: " + error);
                 break;
                 
             case GENERATE_MONTHLY_REPORTS:
                 String monthYear = (String) message.getContent();
-                ArrayList<ParkingReport> monthlyReports = reportController.generateMonthlyReports(monthYear);
-                ret = new Message(MessageType.MONTHLY_REPORTS_RESPONSE, monthlyReports);
-                client.sendToClient(serialize(ret));
+                replyMessageAsync(client, reportController.generateMonthlyReportsAsync(monthYear),
+                    MessageType.MONTHLY_REPORTS_RESPONSE, error -> null);
                 break;
                 
             case ACTIVATE_RESERVATION:
@@ -221,8 +235,10 @@ public class ParkingServer extends AbstractServer {
                     try {
                         String activateUserName = activateData[0].trim();
                         int reservationCode = Integer.parseInt(activateData[1].trim());
-                        String activateResult = parkingController.activateReservation(activateUserName, reservationCode);
-                        ret = new Message(MessageType.ACTIVATION_RESPONSE, activateResult);
+                        // Same queue as cancellations, so an activation never overtakes an earlier cancel
+                        replyMessageAsync(client, asyncParkingController.activateReservation(activateUserName, reservationCode),
+                            MessageType.ACTIVATION_RESPONSE, error -> "ERROR: " + error);
+                        break;
                     } catch (NumberFormatException e) {
                         ret = new Message(MessageType.ACTIVATION_RESPONSE, "ERROR: Invalid reservation code format");
                     }
@@ -239,8 +255,9 @@ public class ParkingServer extends AbstractServer {
                     try {
                         String cancelUserName = cancelData[0].trim();
                         int reservationCode = Integer.parseInt(cancelData[1].trim());
-                        String cancelResult = parkingController.cancelReservation(cancelUserName, reservationCode);
-                        ret = new Message(MessageType.CANCELLATION_RESPONSE, cancelResult);
+                        replyMessageAsync(client, asyncParkingController.cancelReservation(cancelUserName, reservationCode),
+                            MessageType.CANCELLATION_RESPONSE, error -> "ERROR: " + error);
+                        break;
                     } catch (NumberFormatException e) {
                         ret = new Message(MessageType.CANCELLATION_RESPONSE, "ERROR: Invalid reservation code format");
                     }
@@ -270,53 +287,60 @@ public class ParkingServer extends AbstractServer {
                 break;
                 
             case "login:":
-                String loginResult = parkingController.checkLogin(arr[1], arr.length > 2 ? arr[2] : "");
-                client.sendToClient("login: " + loginResult);
+                replyAsync(client, asyncParkingController.checkLogin(arr[1], arr.length > 2 ? arr[2] : ""),
+                    loginResult -> "login: " + loginResult);
                 break;
                 
             case "LoggedOut":
-                parkingController.logoutUser(arr[1]);
+                // No reply expected; only report a failure in the log
+                asyncParkingController.logoutUser(arr[1]).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        System.out.println("Async operation failed: " + errorMessage(error));
+                    }
+                });
                 break;
                 
             case "getParkingSpots":
-                int availableSpots = parkingController.getAvailableParkingSpots();
-                client.sendToClient("availableSpots " + availableSpots);
+                replyAsync(client, asyncParkingController.getAvailableParkingSpots(),
+                    availableSpots -> "availableSpots " + availableSpots);
                 break;
                 
             case "enterParking":
-                String enterResult = parkingController.enterParking(arr[1]);
-                client.sendToClient("enterResult " + enterResult);
+                // Format: enterParking userName [lotId]
+                int entryLot = arr.length > 2 ? Integer.parseInt(arr[2]) : ParkingController.DEFAULT_LOT_ID;
+                replyAsync(client, asyncParkingController.enterParking(arr[1], entryLot),
+                    enterResult -> "enterResult " + enterResult);
                 break;
                 
             case "enterWithReservation":
-                String reservationResult = parkingController.enterParkingWithReservation(Integer.parseInt(arr[1]));
-                client.sendToClient("reservationResult " + reservationResult);
+                replyAsync(client, asyncParkingController.enterParkingWithReservation(Integer.parseInt(arr[1])),
+                    reservationResult -> "reservationResult " + reservationResult);
                 break;
                 
             case "exitParking":
-                String exitResult = parkingController.exitParking(arr[1]);
-                client.sendToClient("exitResult " + exitResult);
+                replyAsync(client, asyncParkingController.exitParking(arr[1]),
+                    exitResult -> "exitResult " + exitResult);
                 break;
                 
             case "extendParking":
-                String extendResult = parkingController.extendParkingTime(arr[1], Integer.parseInt(arr[2]));
-                client.sendToClient("extendResult " + extendResult);
+                replyAsync(client, asyncParkingController.extendParkingTime(arr[1], Integer.parseInt(arr[2])),
+                    extendResult -> "extendResult " + extendResult);
                 break;
                 
             case "getLostCode":
-                String lostCode = parkingController.sendLostParkingCode(arr[1]);
-                client.sendToClient("parkingCode " + lostCode);
+                replyAsync(client, asyncParkingController.sendLostParkingCode(arr[1]),
+                    lostCode -> "parkingCode " + lostCode);
                 break;
                 
             case "makeReservation":
                 // Format: makeReservation userName reservationDate
-                String makeReservationResult = parkingController.makeReservation(arr[1], arr[2]);
-                client.sendToClient("reservationResult " + makeReservationResult);
+                replyAsync(client, asyncParkingController.makeReservation(arr[1], arr[2]),
+                    makeReservationResult -> "reservationResult " + makeReservationResult);
                 break;
                 
             case "cancelReservation":
-                String cancelResult = parkingController.cancelReservation(Integer.parseInt(arr[1]));
-                client.sendToClient("cancelResult " + cancelResult);
+                replyAsync(client, asyncParkingController.cancelReservation(Integer.parseInt(arr[1])),
+                    cancelResult -> "cancelResult " + cancelResult);
                 break;
                 
             case "getReports":
@@ -338,6 +362,51 @@ public class ParkingServer extends AbstractServer {
         }
     }
 
+    /**
+     * Sends the result of an async DB operation once it completes, without holding
+     * the request thread (or the server lock) while the query runs.
+     * A failure is answered in the string protocol: "error <message>".
+     */
+    private <T> void replyAsync(ConnectionToClient client, CompletableFuture<T> future,
+                                Function<T, Object> toReply) {
+        replyAsync(client, future, toReply, error -> "error " + error);
+    }
+
+    /**
+     * Message-protocol variant: the result (or errorContent of the failure message) is sent
+     * as the content of a responseType Message, so the client always gets the reply it waits for
+     */
+    private <T extends Serializable> void replyMessageAsync(ConnectionToClient client, CompletableFuture<T> future,
+                                                            MessageType responseType,
+                                                            Function<String, Serializable> errorContent) {
+        replyAsync(client, future, result -> serialize(new Message(responseType, result)),
+            error -> serialize(new Message(responseType, errorContent.apply(error))));
+    }
+
+    private <T> void replyAsync(ConnectionToClient client, CompletableFuture<T> future,
+                                Function<T, Object> toReply, Function<String, Object> toErrorReply) {
+        future.whenComplete((result, error) -> {
+            try {
+                if (error != null) {
+                    System.out.println("Async operation failed: " + errorMessage(error));
+                    client.sendToClient(toErrorReply.apply(errorMessage(error)));
+                } else {
+                    client.sendToClient(toReply.apply(result));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Message of the operation's own exception rather than the CompletionException wrapping it
+     */
+    private static String errorMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage();
+    }
+
     /**
      * Serializes a Message object to byte array (following your pattern)
      */
@@ -375,8 +444,24 @@ public class ParkingServer extends AbstractServer {
      */
     protected void serverStarted() {
         System.out.println("ParkB Server listening for connections on port " + getPort());
+        asyncParkingController = new AsyncParkingController(parkingController);
+        // Bring the schema (tables + lookup indexes) up to date before anything queries it
+        SchemaMigrationService migrations = new SchemaMigrationService(parkingController.getConnection());
+        if (migrations.migrate() < 0) {
+            // Failed DDL or a missing lookup index - don't serve gates on a schema we can't vouch for
+            System.out.println("❌ Database schema is not usable - the server will not accept clients");
+            stopListening();
+            return;
+        }
         // Initialize parking spots if needed
         parkingController.initializeParkingSpots();
+        // Rebuild in-memory state (live parking codes) from the database
+        parkingController.loadRuntimeState();
+        // Background jobs (auto-cancellation, monthly reports) run on whichever server holds the lease
+        parkingController.startLeaderElection();
+        if (reportController != null) {
+            reportController.scheduleMonthlyReports(parkingController.getLeaderLease());
+        }
     }
 
     /**
@@ -393,9 +478,20 @@ public class ParkingServer extends AbstractServer {
             System.out.println("Auto-cancellation service shut down successfully");
         }
         
+        if (reportController != null) {
+            reportController.shutdown();
+        }
+        if (asyncParkingController != null) {
+            asyncParkingController.shutdown();
+        }
+        
         if (connectionPoolTimer != null) {
             connectionPoolTimer.shutdown();
         }
+        // Give queued notifications (e.g. last cancellations) a chance to go out
+        EmailService.getOutbox().shutdown(EMAIL_DRAIN_MILLIS);
+        
+        System.out.println("Most expensive queries this run:\n" + QueryStats.format(10));
     }
 
     /**
@@ -497,10 +593,17 @@ public class ParkingServer extends AbstractServer {
         if (parkingController != null) {
             parkingController.shutdown();
         }
+        if (reportController != null) {
+            reportController.shutdown();
+        }
+        if (asyncParkingController != null) {
+            asyncParkingController.shutdown();
+        }
         
         if (connectionPoolTimer != null) {
             connectionPoolTimer.shutdown();
         }
+        EmailService.getOutbox().shutdown(EMAIL_DRAIN_MILLIS);
         try {
             close();
         } catch (IOException e) {
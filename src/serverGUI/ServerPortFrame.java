@@ -2,6 +2,9 @@ package serverGUI;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -16,8 +19,11 @@ import javafx.stage.Stage;
 import ocsf.server.ConnectionToClient;
 import server.ParkingServer;
 import controllers.ParkingController;
+import controllers.LeaderLease;
 import controllers.ReportController;
 import server.ServerUI;
+import services.EmailService;
+import services.ServerMetrics;
 
 /**
  * ServerPortFrame provides the GUI interface for managing the ParkB server.
@@ -36,6 +42,12 @@ public class ServerPortFrame extends Application {
     private TextArea txtClientConnection;
 
     ServerPortFrame controller;
+    
+    // All ServerMetrics gauges shown above the client list, refreshed in place
+    private static final String METRICS_HEADER = "=== Server Metrics ===\n";
+    private static final String CLIENTS_MARKER = "Waiting for clients";
+    private static final int METRICS_REFRESH_SECONDS = 10;
+    private ScheduledExecutorService metricsRefresher;
 
     @Override
     public void start(Stage primaryStage) throws Exception {
@@ -66,7 +78,9 @@ public class ServerPortFrame extends Application {
                 
                 // Initialize controllers with auto-configured credentials
                 ParkingServer.parkingController = new ParkingController(dbName, dbPassword);
-                ParkingServer.reportController = new ReportController(dbName, dbPassword);
+                // One replica connection and lag monitor for both controllers
+                ParkingServer.reportController = new ReportController(dbName, dbPassword,
+                    ParkingServer.parkingController.getReplicaRouter());
                 
                 if (ParkingServer.parkingController.successFlag == 1) {
                     // Start the server
@@ -76,6 +90,7 @@ public class ServerPortFrame extends Application {
                     
                     // Show connection info with auto-cancellation status
                     showSystemInfo();
+                    startMetricsRefresh();
                 } else {
                     controller.textMessage.setText("Database connection failed! Check MySQL server.");
                 }
@@ -97,6 +112,7 @@ public class ServerPortFrame extends Application {
             ParkingServer.parkingController.shutdown();
             System.out.println("Auto-cancellation service stopped during shutdown");
         }
+        EmailService.getOutbox().shutdown(10_000);
         
         System.exit(0);
     }
@@ -116,9 +132,9 @@ public class ServerPortFrame extends Application {
             if (controller != null && controller.txtClientConnection != null) {
                 String currentText = controller.txtClientConnection.getText();
                 if (currentText.contains("=== ParkB Server")) {
-                    // Keep the system info and append connections
-                    controller.txtClientConnection.setText(currentText.split("Waiting for clients")[0] + 
-                        "Client Connections:\n" + toPrint);
+                    // Keep the system info (and the marker the metrics refresh relies on) and append connections
+                    controller.txtClientConnection.setText(currentText.split(CLIENTS_MARKER)[0] + 
+                        CLIENTS_MARKER + " to connect...\nClient Connections:\n" + toPrint);
                 } else {
                     controller.txtClientConnection.setText(toPrint);
                 }
@@ -138,18 +154,32 @@ public class ServerPortFrame extends Application {
             systemInfo += "Username: root\n";
             systemInfo += "Server IP: " + ParkingServer.serverIp + "\n";
             systemInfo += "Port: " + ParkingServer.DEFAULT_PORT + "\n";
-            systemInfo += "Parking Spots: 100 (Auto-initialized)\n";
+            systemInfo += "Parking Spots: per lot in spots.total.lot* below (auto-initialized per ParkingLot)\n";
+            
+            // Read replica routing for reports/history
+            ReportController reports = ParkingServer.reportController;
+            if (reports != null && reports.getReplicaRouter().isReplicaConfigured()) {
+                systemInfo += "Read Replica: CONFIGURED (lag in replica.lagSeconds below)\n";
+            } else {
+                systemInfo += "Read Replica: none (reports use primary)\n";
+            }
             
             // Add auto-cancellation status
-            systemInfo += "Auto-Cancellation: ACTIVE (15-min rule)\n";
+            systemInfo += "Auto-Cancellation: ACTIVE on the scheduler leader (15-min rule)\n";
+            LeaderLease lease = ParkingServer.parkingController.getLeaderLease();
+            if (lease != null) {
+                systemInfo += "Scheduler Node: " + lease.getNodeId()
+                    + (lease.isLeader() ? " (LEADER)" : " (standby)") + "\n";
+            }
             systemInfo += "Reservation Flow: preorder → active → finished\n";
             systemInfo += "Late Policy: Auto-cancel after 15 minutes\n";
+            systemInfo += "Overstay Detection: ON (vehicles past their end in overstay.current below)\n";
+            systemInfo += "Email Outbox: async (queue depth, high water, sent and dropped in email.* below)\n";
             
             systemInfo += "Auto-start: SUCCESS\n";
             systemInfo += "Status: Ready to accept client connections\n";
             systemInfo += "================================\n\n";
-            systemInfo += "Monitor console for auto-cancellation messages:\n";
-            systemInfo += "✅ AUTO-CANCELLED: Reservation X for UserY\n\n";
+            systemInfo += formatMetrics();
             systemInfo += "Waiting for clients to connect...\n";
             
             if (controller != null && controller.txtClientConnection != null) {
@@ -157,4 +187,36 @@ public class ServerPortFrame extends Application {
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Every registered gauge as a text block ending with a blank line
+     */
+    private static String formatMetrics() {
+        return METRICS_HEADER + ServerMetrics.format() + "\n";
+    }
+
+    /**
+     * Periodically rewrites the metrics block, leaving the system info and client list as they are
+     */
+    private void startMetricsRefresh() {
+        metricsRefresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parkb-gui-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        metricsRefresher.scheduleWithFixedDelay(() -> {
+            String metrics = formatMetrics();
+            Platform.runLater(() -> {
+                if (controller == null || controller.txtClientConnection == null) {
+                    return;
+                }
+                String text = controller.txtClientConnection.getText();
+                int start = text.indexOf(METRICS_HEADER);
+                int end = text.indexOf(CLIENTS_MARKER);
+                if (start >= 0 && end > start) {
+                    controller.txtClientConnection.setText(text.substring(0, start) + metrics + text.substring(end));
+                }
+            });
+        }, METRICS_REFRESH_SECONDS, METRICS_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+}
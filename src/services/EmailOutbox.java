@@ -0,0 +1,211 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded in-process outbox for outgoing email. Callers enqueue and return at once; a small
+ * pool of worker threads does the SMTP round trips, so a slow mail server never holds up a
+ * gate operation (which runs inside the server's synchronized message handler).
+ *
+ * When the queue is full the overflow policy decides what gives. The outbox lives in memory
+ * only: mail still queued when the process dies is lost, as it was when sending failed before.
+ */
+public class EmailOutbox {
+
+    public static final String CAPACITY_PROPERTY = "bpark.emailQueueCapacity";
+    public static final String WORKERS_PROPERTY = "bpark.emailWorkers";
+    public static final String OVERFLOW_PROPERTY = "bpark.emailOverflowPolicy";
+
+    /**
+     * What to do with a new email when the queue is full
+     */
+    public enum OverflowPolicy {
+        /** Drop the new email */
+        DROP_NEWEST,
+        /** Evict the oldest queued email to make room (fresh notifications matter most) */
+        DROP_OLDEST,
+        /** Send on the caller's thread - no mail is lost, but the caller waits for SMTP */
+        CALLER_RUNS;
+
+        public static OverflowPolicy fromProperty() {
+            String value = System.getProperty(OVERFLOW_PROPERTY);
+            if (value == null) {
+                return DROP_OLDEST;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown email overflow policy '" + value + "' - using DROP_OLDEST");
+                return DROP_OLDEST;
+            }
+        }
+    }
+
+    /**
+     * One queued email; the worker builds and sends it
+     */
+    static final class OutboundEmail {
+        final EmailService.NotificationType type;
+        final String recipientEmail;
+        final String customerName;
+        final Object[] additionalData;
+        final long enqueuedAtMillis = System.currentTimeMillis();
+
+        OutboundEmail(EmailService.NotificationType type, String recipientEmail, String customerName,
+                      Object[] additionalData) {
+            this.type = type;
+            this.recipientEmail = recipientEmail;
+            this.customerName = customerName;
+            this.additionalData = additionalData;
+        }
+    }
+
+    private final BlockingQueue<OutboundEmail> queue;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Predicate<OutboundEmail> sender;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong highWater = new AtomicLong();
+    private final AtomicLong lastQueueMillis = new AtomicLong();
+
+    /**
+     * @param sender delivers one email, returning false on failure
+     */
+    EmailOutbox(int capacity, int workerCount, OverflowPolicy overflowPolicy, Predicate<OutboundEmail> sender) {
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.sender = sender;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "parkb-email-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        ServerMetrics.register("email.queueDepth", queue::size);
+        ServerMetrics.register("email.queueCapacity", () -> capacity);
+        ServerMetrics.register("email.overflowPolicy", this::getOverflowPolicy);
+        ServerMetrics.register("email.queueHighWater", highWater::get);
+        ServerMetrics.register("email.lastQueueMillis", lastQueueMillis::get);
+        ServerMetrics.register("email.enqueued", enqueued::sum);
+        ServerMetrics.register("email.sent", sent::sum);
+        ServerMetrics.register("email.failed", failed::sum);
+        ServerMetrics.register("email.dropped", dropped::sum);
+    }
+
+    /**
+     * Outbox configured from system properties (capacity 1000, 2 workers, DROP_OLDEST by default)
+     */
+    static EmailOutbox fromSystemProperties(Predicate<OutboundEmail> sender) {
+        return new EmailOutbox(Integer.getInteger(CAPACITY_PROPERTY, 1000), Integer.getInteger(WORKERS_PROPERTY, 2),
+            OverflowPolicy.fromProperty(), sender);
+    }
+
+    /**
+     * Queues an email without waiting for SMTP (except under CALLER_RUNS with a full queue)
+     *
+     * @return true if the email was queued or sent, false if it was dropped
+     */
+    boolean enqueue(OutboundEmail email) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        enqueued.increment();
+        while (!queue.offer(email)) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    dropped.increment();
+                    System.out.println("⚠️ Email outbox full - dropped " + email.type + " to " + email.recipientEmail);
+                    return false;
+                case DROP_OLDEST:
+                    OutboundEmail evicted = queue.poll();
+                    if (evicted != null) {
+                        dropped.increment();
+                        System.out.println("⚠️ Email outbox full - dropped oldest " + evicted.type + " to "
+                            + evicted.recipientEmail);
+                    }
+                    break;
+                case CALLER_RUNS:
+                default:
+                    deliver(email);
+                    return true;
+            }
+        }
+        highWater.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Stops accepting mail and gives the workers up to timeoutMillis to drain the queue
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!queue.isEmpty()) {
+            System.out.println("⚠️ Email outbox shut down with " + queue.size() + " unsent emails");
+        }
+    }
+
+    private void work() {
+        while (running || !queue.isEmpty()) {
+            OutboundEmail email;
+            try {
+                email = queue.poll(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (email != null) {
+                lastQueueMillis.set(System.currentTimeMillis() - email.enqueuedAtMillis);
+                deliver(email);
+            }
+        }
+    }
+
+    private void deliver(OutboundEmail email) {
+        try {
+            if (sender.test(email)) {
+                sent.increment();
+            } else {
+                failed.increment();
+            }
+        } catch (RuntimeException e) {
+            failed.increment();
+            System.out.println("Email worker failed: " + e.getMessage());
+        }
+    }
+}
@@ -36,14 +36,33 @@ public class EmailService {
         PARKING_CODE_RECOVERY,
         EXTENSION_CONFIRMATION,
         PARKING_EXPIRED,
-        WELCOME_MESSAGE
+        WELCOME_MESSAGE,
+        RESERVATION_REMINDER
     }
     
+    // SMTP runs on the outbox workers, never on the caller's thread
+    private static final EmailOutbox outbox = EmailOutbox.fromSystemProperties(
+        email -> deliver(email.type, email.recipientEmail, email.customerName, email.additionalData));
+    
     /**
-     * Main method to send any type of email notification (Hebrew only)
+     * Main method to send any type of email notification (Hebrew only).
+     * Queues the email and returns immediately; delivery happens on the outbox workers.
+     * @return true if the email was queued, false if the outbox dropped it
      */
     public static boolean sendNotification(NotificationType type, String recipientEmail, 
                                          String customerName, Object... additionalData) {
+        return outbox.enqueue(new EmailOutbox.OutboundEmail(type, recipientEmail, customerName, additionalData));
+    }
+    
+    public static EmailOutbox getOutbox() {
+        return outbox;
+    }
+    
+    /**
+     * Builds and sends one email over SMTP (blocking, up to the connect/read timeouts)
+     */
+    private static boolean deliver(NotificationType type, String recipientEmail, 
+                                   String customerName, Object... additionalData) {
         try {
             Session session = createEmailSession();
             MimeMessage message = new MimeMessage(session);
@@ -107,6 +126,12 @@ public class EmailService {
         return sendNotification(NotificationType.WELCOME_MESSAGE, recipientEmail, customerName, username);
     }
     
+    public static boolean sendReservationReminder(String recipientEmail, String customerName,
+                                                  String reservationCode, String startTime, String spotNumber) {
+        return sendNotification(NotificationType.RESERVATION_REMINDER, recipientEmail, customerName,
+                              reservationCode, startTime, spotNumber);
+    }
+    
     /**
      * Create email session with Gmail SMTP configuration
      */
@@ -173,6 +198,12 @@ public class EmailService {
                 String welcomeUsername = (String) additionalData[0];
                 return createWelcomeContent(customerName, welcomeUsername);
                 
+            case RESERVATION_REMINDER:
+                String reminderCode = (String) additionalData[0];
+                String reminderStart = (String) additionalData[1];
+                String reminderSpot = (String) additionalData[2];
+                return createReminderContent(customerName, reminderCode, reminderStart, reminderSpot, currentDate, currentTime);
+                
             default:
                 return createDefaultContent(customerName);
         }
@@ -322,6 +353,26 @@ public class EmailService {
         return new EmailContent(subject, content);
     }
     
+    /**
+     * Create pre-arrival reservation reminder content
+     */
+    private static EmailContent createReminderContent(String customerName, String reservationCode, String startTime,
+                                                      String spotNumber, String date, String time) {
+        String subject = "תזכורת: הזמנת החניה שלך מתחילה ב-" + startTime;
+        String content = createEmailTemplate(customerName, date, time,
+            "תזכורת להזמנת חניה",
+            "שלום " + customerName + ",",
+            "הזמנת החניה שלך מתחילה בקרוב.<br><br>" +
+            "<strong>קוד הזמנה:</strong> " + reservationCode + "<br>" +
+            "<strong>שעת התחלה:</strong> " + startTime + "<br>" +
+            "<strong>מקום חניה:</strong> " + spotNumber + "<br><br>" +
+            "אנא הגע עם קוד ההזמנה למכונת הכניסה.",
+            "<strong>חשוב:</strong> הגעה מאוחרת מעל 15 דקות תגרום לביטול אוטומטי של ההזמנה.",
+            "#d1ecf1", "#17a2b8"
+        );
+        return new EmailContent(subject, content);
+    }
+    
     /**
      * Create welcome message content
      */
@@ -0,0 +1,54 @@
+package services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * ServerMetrics is the server-wide metrics surface for ParkB.
+ * Components register named gauges once; the GUI and console read a snapshot.
+ */
+public class ServerMetrics {
+
+    private static final Map<String, Supplier<?>> gauges = new LinkedHashMap<>();
+
+    /**
+     * Registers (or replaces) a named gauge
+     */
+    public static synchronized void register(String name, Supplier<?> gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Removes a gauge, e.g. when its owner shuts down
+     */
+    public static synchronized void unregister(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Reads every registered gauge
+     */
+    public static synchronized Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<?>> entry : gauges.entrySet()) {
+            try {
+                values.put(entry.getKey(), entry.getValue().get());
+            } catch (Exception e) {
+                values.put(entry.getKey(), "error: " + e.getMessage());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Formats the snapshot as one "name: value" line per gauge
+     */
+    public static String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> entry : snapshot().entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+}